@@ -0,0 +1,248 @@
+/*
+ * Copyright (c) 2014 T-Systems Multimedia Solutions GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.tsystems.mms.apm.performancesignature;
+
+import de.tsystems.mms.apm.performancesignature.util.PerfSigUtils;
+import hudson.XmlFile;
+import hudson.model.Run;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.lang.exception.ExceptionUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.logging.Logger;
+
+/**
+ * Index of the PDF reports and sessions stored in the report directory of a build.
+ * The entries are added while the artifacts are collected, so the pages and downloads don't have to list
+ * and filter the report directory. Builds recorded with older versions are indexed once from the directory.
+ */
+public final class PerfSigArtifactManifest {
+    static final String MANIFEST_FILE = "artifacts.xml";
+    private static final Logger LOGGER = Logger.getLogger(PerfSigArtifactManifest.class.getName());
+    private static final Map<Run<?, ?>, PerfSigArtifactManifest> MANIFESTS = new WeakHashMap<Run<?, ?>, PerfSigArtifactManifest>();
+    private static final String CHECKSUM_EXTENSION = ".md5";
+
+    private final List<Artifact> artifacts = new ArrayList<Artifact>();
+    private int nextId = 1;
+    private transient File directory;
+
+    private PerfSigArtifactManifest() {
+    }
+
+    public static PerfSigArtifactManifest get(final Run<?, ?> run) throws IOException {
+        synchronized (MANIFESTS) {
+            PerfSigArtifactManifest manifest = MANIFESTS.get(run);
+            if (manifest == null) {
+                manifest = load(run);
+                MANIFESTS.put(run, manifest);
+            }
+            return manifest;
+        }
+    }
+
+    private static PerfSigArtifactManifest load(final Run<?, ?> run) throws IOException {
+        final File directory = PerfSigUtils.getReportDirectory(run);
+        final XmlFile xmlFile = new XmlFile(new File(directory, MANIFEST_FILE));
+        if (xmlFile.exists()) {
+            try {
+                final PerfSigArtifactManifest manifest = (PerfSigArtifactManifest) xmlFile.read();
+                manifest.directory = directory;
+                return manifest;
+            } catch (IOException e) {
+                LOGGER.warning("could not read the artifact manifest of " + run + ", indexing the report directory: "
+                        + ExceptionUtils.getFullStackTrace(e));
+            }
+        }
+
+        final PerfSigArtifactManifest manifest = new PerfSigArtifactManifest();
+        manifest.directory = directory;
+        manifest.index(run);
+        return manifest;
+    }
+
+    /**
+     * builds the manifest of a build recorded before the manifest existed, the test case of a file is the
+     * longest test case name contained in the file name
+     */
+    private void index(final Run<?, ?> run) throws IOException {
+        final List<String> testCases = new ArrayList<String>();
+        final PerfSigBuildAction buildAction = PerfSigBuildAction.getBuildAction(run);
+        if (buildAction != null) {
+            for (PerfSigBuildAction.ReportSummary summary : buildAction.getReportSummaries()) {
+                testCases.add(summary.getName());
+            }
+        }
+        final File[] files = directory.listFiles();
+        if (files == null) return;
+        Arrays.sort(files);
+        for (File file : files) {
+            final Type type = Type.of(file.getName());
+            if (type == null) continue;
+            String testCase = null;
+            for (String name : testCases) {
+                if (file.getName().contains(name) && (testCase == null || name.length() > testCase.length())) {
+                    testCase = name;
+                }
+            }
+            addArtifact(type, testCase, file);
+        }
+        save();
+    }
+
+    /**
+     * registers a stored artifact, an artifact with the same file name is replaced
+     */
+    public synchronized Artifact add(final Type type, final String testCase, final File file) throws IOException {
+        final Artifact artifact = addArtifact(type, testCase, file);
+        save();
+        return artifact;
+    }
+
+    private Artifact addArtifact(final Type type, final String testCase, final File file) throws IOException {
+        final File checksumFile = new File(file.getPath() + CHECKSUM_EXTENSION);
+        final String checksum = checksumFile.exists() ? FileUtils.readFileToString(checksumFile, "UTF-8").trim() : null;
+        for (ListIterator<Artifact> iterator = artifacts.listIterator(); iterator.hasNext(); ) {
+            final Artifact existing = iterator.next();
+            if (existing.fileName.equals(file.getName())) {
+                final Artifact artifact = new Artifact(existing.id, type, testCase, file, checksum);
+                iterator.set(artifact);
+                return artifact;
+            }
+        }
+        final Artifact artifact = new Artifact(nextId++, type, testCase, file, checksum);
+        artifacts.add(artifact);
+        return artifact;
+    }
+
+    private void save() throws IOException {
+        new XmlFile(new File(directory, MANIFEST_FILE)).write(this);
+    }
+
+    /**
+     * @param testCase null for the artifacts of all test cases
+     */
+    public synchronized List<Artifact> getArtifacts(final Type type, final String testCase) {
+        final List<Artifact> result = new ArrayList<Artifact>();
+        for (Artifact artifact : artifacts) {
+            if (artifact.type == type && (testCase == null || artifact.belongsTo(testCase))) {
+                result.add(artifact);
+            }
+        }
+        return result;
+    }
+
+    public synchronized Artifact getArtifact(final int id) {
+        for (Artifact artifact : artifacts) {
+            if (artifact.id == id) return artifact;
+        }
+        return null;
+    }
+
+    File getFile(final Artifact artifact) {
+        return new File(directory, artifact.fileName);
+    }
+
+    public enum Type {
+        SINGLE_REPORT("Singlereport", ".pdf", "application/pdf"),
+        COMPARISON_REPORT("Comparisonreport", ".pdf", "application/pdf"),
+        SESSION("", ".dts", "application/octet-stream");
+
+        private final String prefix, extension, contentType;
+
+        Type(final String prefix, final String extension, final String contentType) {
+            this.prefix = prefix;
+            this.extension = extension;
+            this.contentType = contentType;
+        }
+
+        static Type of(final String fileName) {
+            for (Type type : values()) {
+                if (fileName.startsWith(type.prefix) && fileName.endsWith(type.extension)) return type;
+            }
+            return null;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+    }
+
+    public static final class Artifact {
+        private final int id;
+        private final Type type;
+        private final String testCase, fileName, checksum;
+        private final long length, lastModified;
+
+        Artifact(final int id, final Type type, final String testCase, final File file, final String checksum) {
+            this.id = id;
+            this.type = type;
+            this.testCase = testCase;
+            this.fileName = file.getName();
+            this.length = file.length();
+            this.lastModified = file.lastModified();
+            this.checksum = checksum;
+        }
+
+        /**
+         * artifacts of old builds without known test case are assigned by their file name
+         */
+        boolean belongsTo(final String name) {
+            return testCase == null ? fileName.contains(name) : testCase.equals(name);
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public Type getType() {
+            return type;
+        }
+
+        public String getTestCase() {
+            return testCase;
+        }
+
+        public String getName() {
+            return fileName;
+        }
+
+        /**
+         * @return the file name without extension, as shown on the pages
+         */
+        public String getBaseName() {
+            return FilenameUtils.removeExtension(fileName);
+        }
+
+        public long getLength() {
+            return length;
+        }
+
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        /**
+         * @return hex encoded MD5 checksum of the file, null if unknown
+         */
+        public String getChecksum() {
+            return checksum;
+        }
+    }
+}
@@ -17,23 +17,67 @@
 package de.tsystems.mms.apm.performancesignature;
 
 import de.tsystems.mms.apm.performancesignature.dynatrace.model.DashboardReport;
+import de.tsystems.mms.apm.performancesignature.dynatrace.model.DashboardReportSerializer;
+import de.tsystems.mms.apm.performancesignature.dynatrace.model.IncidentChart;
+import de.tsystems.mms.apm.performancesignature.dynatrace.model.IncidentViolation;
+import de.tsystems.mms.apm.performancesignature.util.PerfSigUtils;
 import hudson.model.Action;
 import hudson.model.Run;
+import hudson.model.RunAction;
+import org.apache.commons.lang.exception.ExceptionUtils;
+import org.kohsuke.stapler.Stapler;
 import org.kohsuke.stapler.StaplerProxy;
+import org.kohsuke.stapler.StaplerRequest;
 
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.SoftReference;
 import java.lang.ref.WeakReference;
-import java.util.Collection;
-import java.util.Collections;
-import java.util.List;
+import java.util.*;
+import java.util.logging.Logger;
 
-public class PerfSigBuildAction extends PerfSigBaseAction implements StaplerProxy {
-    private final List<DashboardReport> dashboardReports;
+/**
+ * The dashboard reports of a build are kept in a binary file inside the report directory,
+ * build.xml only contains a small summary. The reports are loaded on demand and held softly.
+ */
+public class PerfSigBuildAction extends PerfSigBaseAction implements StaplerProxy, RunAction {
+    static final String DASHBOARD_REPORTS_FILE = "dashboardReports.bin";
+    private static final Logger LOGGER = Logger.getLogger(PerfSigBuildAction.class.getName());
     private transient Run<?, ?> run;
+    private List<ReportSummary> reportSummaries;
+    /**
+     * only used by builds recorded with older versions, migrated to the report file as soon as the run is known
+     */
+    @Deprecated
+    private List<DashboardReport> dashboardReports;
+    private transient SoftReference<List<DashboardReport>> dashboardReportsCache;
     private transient WeakReference<PerfSigBuildActionResultsDisplay> buildActionResultsDisplay;
 
-    public PerfSigBuildAction(final Run<?, ?> run, final List<DashboardReport> dashboardReports) {
+    public PerfSigBuildAction(final Run<?, ?> run, final List<DashboardReport> dashboardReports) throws IOException {
         this.run = run;
-        this.dashboardReports = dashboardReports;
+        DashboardReportSerializer.write(getDashboardReportsFile(), dashboardReports);
+        this.reportSummaries = createReportSummaries(dashboardReports);
+        this.dashboardReportsCache = new SoftReference<List<DashboardReport>>(dashboardReports);
+    }
+
+    /**
+     * the run is not stored in build.xml and {@link #onLoad()} doesn't know it, restore it before the action is used.
+     * Code which gets the action directly from the run has to expect {@link #getBuild()} to return null.
+     */
+    static PerfSigBuildAction getBuildAction(final Run<?, ?> run) {
+        PerfSigBuildAction buildAction = run.getAction(PerfSigBuildAction.class);
+        if (buildAction != null && buildAction.getBuild() == null) {
+            buildAction.onAttached(run);
+        }
+        return buildAction;
+    }
+
+    private static List<ReportSummary> createReportSummaries(final List<DashboardReport> dashboardReports) {
+        List<ReportSummary> summaries = new ArrayList<ReportSummary>(dashboardReports.size());
+        for (DashboardReport dashboardReport : dashboardReports) {
+            summaries.add(new ReportSummary(dashboardReport));
+        }
+        return summaries;
     }
 
     public PerfSigBuildActionResultsDisplay getBuildActionResultsDisplay() {
@@ -50,24 +94,138 @@ public class PerfSigBuildAction extends PerfSigBaseAction implements StaplerProx
         return buildDisplay;
     }
 
+    /**
+     * the action is bound to the url of its build, so the run of a loaded build is restored from the request
+     */
     public PerfSigBuildActionResultsDisplay getTarget() {
+        if (getBuild() == null) {
+            final StaplerRequest request = Stapler.getCurrentRequest();
+            final Run ancestor = request == null ? null : request.findAncestorObject(Run.class);
+            if (ancestor != null && ancestor.getActions().contains(this)) {
+                onAttached(ancestor);
+            }
+        }
         return getBuildActionResultsDisplay();
     }
 
     @Override
     protected String getTitle() {
-        return run.getDisplayName() + " PerfSig";
+        final Run<?, ?> build = getBuild();
+        return build == null ? "PerfSig" : build.getDisplayName() + " PerfSig";
     }
 
-    public Run<?, ?> getBuild() {
+    public synchronized Run<?, ?> getBuild() {
         return this.run;
     }
 
-    public List<DashboardReport> getDashboardReports() {
-        return this.dashboardReports;
+    public synchronized List<ReportSummary> getReportSummaries() {
+        if (reportSummaries == null) {
+            return createReportSummaries(getDashboardReports());
+        }
+        return Collections.unmodifiableList(reportSummaries);
+    }
+
+    public synchronized List<DashboardReport> getDashboardReports() {
+        if (dashboardReports != null) {
+            migrateDashboardReports();
+            if (dashboardReports != null) return dashboardReports;
+        }
+
+        List<DashboardReport> reports = dashboardReportsCache == null ? null : dashboardReportsCache.get();
+        if (reports == null) {
+            try {
+                reports = DashboardReportSerializer.read(getDashboardReportsFile());
+                dashboardReportsCache = new SoftReference<List<DashboardReport>>(reports);
+            } catch (IOException e) {
+                LOGGER.severe("could not load dashboard reports of " + run + ": " + ExceptionUtils.getFullStackTrace(e));
+                return new ArrayList<DashboardReport>();
+            }
+        }
+        return reports;
+    }
+
+    private File getDashboardReportsFile() throws IOException {
+        if (run == null) {
+            throw new IOException("the build of the dashboard reports is unknown");
+        }
+        return new File(PerfSigUtils.getReportDirectory(run), DASHBOARD_REPORTS_FILE);
+    }
+
+    /**
+     * moves the reports of builds recorded with older versions out of build.xml
+     */
+    private void migrateDashboardReports() {
+        if (dashboardReports == null || run == null) return;
+        try {
+            DashboardReportSerializer.write(getDashboardReportsFile(), dashboardReports);
+            reportSummaries = createReportSummaries(dashboardReports);
+            dashboardReportsCache = new SoftReference<List<DashboardReport>>(dashboardReports);
+            dashboardReports = null;
+            run.save();
+        } catch (IOException e) {
+            LOGGER.severe("could not migrate dashboard reports of " + run + ": " + ExceptionUtils.getFullStackTrace(e));
+        }
+    }
+
+    public synchronized void onLoad() {
+        migrateDashboardReports();
+    }
+
+    public synchronized void onAttached(final Run run) {
+        this.run = run;
+        migrateDashboardReports();
+    }
+
+    public void onBuildComplete() {
     }
 
     public Collection<? extends Action> getProjectActions() {
-        return Collections.singleton(new PerfSigProjectAction(run.getParent()));
+        final Run<?, ?> build = getBuild();
+        if (build == null) {
+            return Collections.emptyList();
+        }
+        return Collections.singleton(PerfSigProjectState.get(build.getParent()).getProjectAction());
+    }
+
+    /**
+     * the part of a dashboard report which is stored inside build.xml
+     */
+    public static class ReportSummary {
+        private final String name;
+        private final boolean unitTest;
+        private final int severeIncidents, warningIncidents;
+
+        public ReportSummary(final DashboardReport dashboardReport) {
+            this.name = dashboardReport.getName();
+            this.unitTest = dashboardReport.isUnitTest();
+            int numSevere = 0, numWarning = 0;
+            if (dashboardReport.getIncidents() != null) {
+                for (IncidentChart incident : dashboardReport.getIncidents()) {
+                    if (incident.getViolations() == null) continue;
+                    for (IncidentViolation violation : incident.getViolations()) {
+                        if (violation.getSeverity() == IncidentChart.Severity.SEVERE) numSevere++;
+                        else if (violation.getSeverity() == IncidentChart.Severity.WARNING) numWarning++;
+                    }
+                }
+            }
+            this.severeIncidents = numSevere;
+            this.warningIncidents = numWarning;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public boolean isUnitTest() {
+            return unitTest;
+        }
+
+        public int getSevereIncidents() {
+            return severeIncidents;
+        }
+
+        public int getWarningIncidents() {
+            return warningIncidents;
+        }
     }
 }
@@ -18,16 +18,16 @@ package de.tsystems.mms.apm.performancesignature;
 
 import de.tsystems.mms.apm.performancesignature.dynatrace.model.DashboardReport;
 import de.tsystems.mms.apm.performancesignature.dynatrace.model.Measure;
-import de.tsystems.mms.apm.performancesignature.dynatrace.model.Measurement;
+import de.tsystems.mms.apm.performancesignature.dynatrace.model.MeasurementSeries;
 import de.tsystems.mms.apm.performancesignature.util.PerfSigUtils;
-import hudson.FilePath;
 import hudson.model.ModelObject;
 import hudson.model.Run;
 import hudson.util.ChartUtil;
-import org.apache.commons.io.IOUtils;
-import org.apache.commons.io.filefilter.RegexFileFilter;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
 import org.apache.commons.lang.ArrayUtils;
 import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.math.NumberUtils;
 import org.jfree.chart.ChartFactory;
 import org.jfree.chart.JFreeChart;
 import org.jfree.chart.axis.DateAxis;
@@ -46,17 +46,18 @@ import org.jfree.data.xy.XYSeriesCollection;
 import org.kohsuke.stapler.StaplerRequest;
 import org.kohsuke.stapler.StaplerResponse;
 
-import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletResponse;
 import java.awt.*;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.URLDecoder;
 import java.text.SimpleDateFormat;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 
 public class PerfSigBuildActionResultsDisplay implements ModelObject {
+    private static final String[] TIME_UNITS = {"ns", "ms", "s", "min", "h"};
     private final transient PerfSigBuildAction buildAction;
     private final transient List<DashboardReport> currentDashboardReports;
 
@@ -82,11 +83,14 @@ public class PerfSigBuildActionResultsDisplay implements ModelObject {
     }
 
     public DashboardReport getPreviousDashboardReport(final String dashboard) {
+        if (getBuild() == null) {
+            return null;
+        }
         Run<?, ?> previousBuild = getBuild().getPreviousNotFailedBuild();
         if (previousBuild == null) {
             return null;
         }
-        PerfSigBuildAction prevBuildAction = previousBuild.getAction(PerfSigBuildAction.class);
+        PerfSigBuildAction prevBuildAction = PerfSigBuildAction.getBuildAction(previousBuild);
         if (prevBuildAction == null) {
             return null;
         }
@@ -110,17 +114,80 @@ public class PerfSigBuildActionResultsDisplay implements ModelObject {
             return;
         }
 
+        final String chartDashlet = request.getParameter(Messages.PerfSigBuildActionResultsDisplay_ReqParamChartDashlet());
+        if (getBuild() == null || chartDashlet == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND, "requested resource not found");
+            return;
+        }
+
+        final boolean percentile = chartDashlet.contains(Messages.PerfSigBuildActionResultsDisplay_Percentile());
+
+        PerfSigChartCache.generateGraph(request, response, getBuild().getParent(), new PerfSigChartCache.ChartProducer() {
+                    public JFreeChart createChart() throws IOException {
+                        if (percentile) {
+                            return createXYLineChart(request, buildXYDataSet(request));
+                        } else {
+                            return createTimeSeriesChart(request, buildTimeSeriesDataSet(request));
+                        }
+                    }
+                }, PerfSigUtils.calcDefaultSize(), String.valueOf(getBuild().getNumber()),
+                request.getParameter(Messages.PerfSigBuildActionResultsDisplay_ReqParamTestCase()), chartDashlet,
+                request.getParameter(Messages.PerfSigBuildActionResultsDisplay_ReqParamMeasure()),
+                request.getParameter(Messages.PerfSigBuildActionResultsDisplay_ReqParamUnit()),
+                request.getParameter(Messages.PerfSigBuildActionResultsDisplay_ReqParamColor()), request.getParameter("downsample"));
+    }
+
+    /**
+     * series data of a measure chart, rendered in the browser: timestamps (percentiles for percentile charts) and values
+     */
+    public void doSummarizerData(final StaplerRequest request, final StaplerResponse response) throws IOException {
         if (getBuild() != null && request.checkIfModified(getBuild().getTimestamp(), response))
             return;
 
+        final String measure = request.getParameter(Messages.PerfSigBuildActionResultsDisplay_ReqParamMeasure());
         final String chartDashlet = request.getParameter(Messages.PerfSigBuildActionResultsDisplay_ReqParamChartDashlet());
-        final boolean percentile = chartDashlet.contains(Messages.PerfSigBuildActionResultsDisplay_Percentile());
+        final String testCase = request.getParameter(Messages.PerfSigBuildActionResultsDisplay_ReqParamTestCase());
+        final DashboardReport dashboardReport = getDashBoardReport(testCase);
+        final Measure m = dashboardReport == null || chartDashlet == null ? null : dashboardReport.getMeasure(chartDashlet, measure);
+        if (m == null || m.getMeasurementSeries() == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND, "requested resource not found");
+            return;
+        }
 
-        if (percentile) {
-            ChartUtil.generateGraph(request, response, createXYLineChart(request, buildXYDataSet(request)), PerfSigUtils.calcDefaultSize());
-        } else {
-            ChartUtil.generateGraph(request, response, createTimeSeriesChart(request, buildTimeSeriesDataSet(request)), PerfSigUtils.calcDefaultSize());
+        final boolean percentile = chartDashlet.contains(Messages.PerfSigBuildActionResultsDisplay_Percentile());
+        final MeasurementSeries series = m.getMeasurementSeries();
+        final int[] indices = downsample(request, series, percentile ? "average" : m.getAggregation());
+        final int count = indices == null ? series.size() : indices.length;
+        final JSONArray x = new JSONArray(), values = new JSONArray();
+        for (int k = 0; k < count; k++) {
+            final int i = indices == null ? k : indices[k];
+            x.add(series.getTimestamp(i));
+            values.add(PerfSigUtils.toJSONValue(percentile ? series.getAvg(i) : series.getMetricValue(i, m.getAggregation())));
         }
+
+        final String title = PerfSigUtils.generateTitle(measure, chartDashlet);
+        final JSONObject jsonObject = new JSONObject();
+        jsonObject.put("title", percentile ? title.replaceAll("\\d+\\w", "") : title);
+        jsonObject.put("unit", m.getUnit());
+        jsonObject.put("color", StringUtils.isBlank(m.getColor()) ? Messages.PerfSigBuildActionResultsDisplay_DefaultColor()
+                : URLDecoder.decode(m.getColor(), "UTF-8"));
+        jsonObject.put("percentile", percentile);
+        jsonObject.put("bar", !percentile && !ArrayUtils.contains(TIME_UNITS, m.getUnit()));
+        jsonObject.put("x", x);
+        jsonObject.put("values", values);
+        PerfSigUtils.writeJSON(response, jsonObject);
+    }
+
+    /**
+     * the series is downsampled to one measurement per pixel of the requested width unless the request
+     * contains downsample=false
+     *
+     * @return indices of the measurements to draw, null for all measurements
+     */
+    private static int[] downsample(final StaplerRequest request, final MeasurementSeries series, final String aggregation) {
+        if ("false".equalsIgnoreCase(request.getParameter("downsample"))) return null;
+        final int width = NumberUtils.toInt(request.getParameter("width"), PerfSigUtils.calcDefaultSize().width);
+        return series.downsample(StringUtils.defaultString(aggregation), PerfSigUtils.getDownsampleThreshold(width));
     }
 
     private XYDataset buildXYDataSet(final StaplerRequest request) {
@@ -131,10 +198,14 @@ public class PerfSigBuildActionResultsDisplay implements ModelObject {
 
         final DashboardReport dashboardReport = getDashBoardReport(testCase);
         final Measure m = dashboardReport.getMeasure(chartDashlet, measure);
-        if (m == null || m.getMeasurements() == null) return null;
-
-        for (Measurement measurement : m.getMeasurements()) {
-            xySeries.add(measurement.getTimestamp(), measurement.getAvg());
+        if (m == null || m.getMeasurementSeries() == null) return null;
+
+        final MeasurementSeries series = m.getMeasurementSeries();
+        final int[] indices = downsample(request, series, "average");
+        final int count = indices == null ? series.size() : indices.length;
+        for (int k = 0; k < count; k++) {
+            final int i = indices == null ? k : indices[k];
+            xySeries.add(series.getTimestamp(i), series.getAvg(i));
         }
 
         return new XYSeriesCollection(xySeries);
@@ -148,10 +219,14 @@ public class PerfSigBuildActionResultsDisplay implements ModelObject {
 
         final DashboardReport dashboardReport = getDashBoardReport(testCase);
         final Measure m = dashboardReport.getMeasure(chartDashlet, measure);
-        if (m == null || m.getMeasurements() == null) return null;
-
-        for (Measurement measurement : m.getMeasurements()) {
-            timeSeries.add(new Second(new Date(measurement.getTimestamp())), measurement.getMetricValue(m.getAggregation()));
+        if (m == null || m.getMeasurementSeries() == null) return null;
+
+        final MeasurementSeries series = m.getMeasurementSeries();
+        final int[] indices = downsample(request, series, m.getAggregation());
+        final int count = indices == null ? series.size() : indices.length;
+        for (int k = 0; k < count; k++) {
+            final int i = indices == null ? k : indices[k];
+            timeSeries.add(new Second(new Date(series.getTimestamp(i))), series.getMetricValue(i, m.getAggregation()));
         }
         return new TimeSeriesCollection(timeSeries);
     }
@@ -200,10 +275,9 @@ public class PerfSigBuildActionResultsDisplay implements ModelObject {
         else
             URLDecoder.decode(req.getParameter(Messages.PerfSigBuildActionResultsDisplay_ReqParamColor()), "UTF-8");
 
-        String[] timeUnits = {"ns", "ms", "s", "min", "h"};
         JFreeChart chart;
 
-        if (ArrayUtils.contains(timeUnits, unit)) {
+        if (ArrayUtils.contains(TIME_UNITS, unit)) {
             chart = ChartFactory.createTimeSeriesChart(PerfSigUtils.generateTitle(measure, chartDashlet), // title
                     "time", // domain axis label
                     unit,
@@ -247,56 +321,67 @@ public class PerfSigBuildActionResultsDisplay implements ModelObject {
         return chart;
     }
 
-    public void doGetSingleReport(final StaplerRequest request, final StaplerResponse response) throws IOException, InterruptedException {
-        serveFile("Singlereport", request, response);
+    public void doGetSingleReport(final StaplerRequest request, final StaplerResponse response) throws IOException {
+        serveFile(PerfSigArtifactManifest.Type.SINGLE_REPORT, request, response);
     }
 
-    public void doGetComparisonReport(final StaplerRequest request, final StaplerResponse response) throws IOException, InterruptedException {
-        serveFile("Comparisonreport", request, response);
+    public void doGetComparisonReport(final StaplerRequest request, final StaplerResponse response) throws IOException {
+        serveFile(PerfSigArtifactManifest.Type.COMPARISON_REPORT, request, response);
     }
 
-    public void doGetSession(final StaplerRequest request, final StaplerResponse response) throws IOException, InterruptedException {
-        serveFile("", request, response);
+    public void doGetSession(final StaplerRequest request, final StaplerResponse response) throws IOException {
+        serveFile(PerfSigArtifactManifest.Type.SESSION, request, response);
     }
 
-    private void serveFile(final String type, final StaplerRequest request, final StaplerResponse response) throws IOException, InterruptedException {
-        String testCase = request.getParameter("testCase");
-        String numberString = request.getParameter("number");
-        int number = 0;
+    /**
+     * @param type     one of the {@link PerfSigArtifactManifest.Type} names
+     * @param testCase null for the artifacts of all test cases
+     * @return the artifacts listed in the manifest of the build
+     */
+    public List<PerfSigArtifactManifest.Artifact> getArtifacts(final String type, final String testCase) throws IOException {
+        if (getBuild() == null) {
+            return Collections.emptyList();
+        }
+        return PerfSigArtifactManifest.get(getBuild()).getArtifacts(PerfSigArtifactManifest.Type.valueOf(type), testCase);
+    }
 
-        FilePath filePath = new FilePath(PerfSigUtils.getReportDirectory(getBuild()));
-        if (StringUtils.isBlank(testCase)) testCase = "";
-        String extension = StringUtils.isBlank(type) ? ".dts" : ".pdf";
-        List<FilePath> files = filePath.list(new RegexFileFilter(type + ".*" + testCase + ".*" + extension));
-        if (files.isEmpty()) {
+    /**
+     * serves an artifact by its manifest id, e.g. artifact/3, with support for byte ranges
+     */
+    public void doArtifact(final StaplerRequest request, final StaplerResponse response) throws IOException {
+        final String id = StringUtils.strip(request.getRestOfPath(), "/");
+        if (getBuild() == null) {
             response.sendError(404, "requested resource not found");
             return;
         }
-
-        try {
-            number = Integer.parseInt(numberString);
-        } catch (NumberFormatException ignored) {
+        final PerfSigArtifactManifest manifest = PerfSigArtifactManifest.get(getBuild());
+        final PerfSigArtifactManifest.Artifact artifact = NumberUtils.isDigits(id) ? manifest.getArtifact(NumberUtils.toInt(id)) : null;
+        if (artifact == null) {
+            response.sendError(404, "requested resource not found");
+            return;
         }
+        serveArtifact(manifest, artifact, request, response);
+    }
 
-        FilePath requestedFile = number > 0 ? files.get(number) : files.get(0);
-        if (requestedFile == null) {
+    private void serveFile(final PerfSigArtifactManifest.Type type, final StaplerRequest request, final StaplerResponse response) throws IOException {
+        final String testCase = request.getParameter("testCase");
+        if (getBuild() == null) {
             response.sendError(404, "requested resource not found");
             return;
         }
-        InputStream inStream = requestedFile.read();
-        // gets MIME type of the file
-        String mimeType = requestedFile.getName().contains("pdf") ? "application/pdf" : "application/octet-stream";// set to binary type if MIME mapping not found
-
-        try {
-            // forces download
-            String headerKey = "Content-Disposition";
-            String headerValue = String.format("attachment; filename=\"%s\"", requestedFile.getName());
-            response.setHeader(headerKey, headerValue);
-            response.serveFile(request, inStream, requestedFile.lastModified(), requestedFile.length(), "mime-type:" + mimeType);
-        } catch (ServletException e) {
-            e.printStackTrace();
-        } finally {
-            IOUtils.closeQuietly(inStream);
+        final PerfSigArtifactManifest manifest = PerfSigArtifactManifest.get(getBuild());
+        final List<PerfSigArtifactManifest.Artifact> artifacts = manifest.getArtifacts(type, StringUtils.isBlank(testCase) ? null : testCase);
+        final int number = NumberUtils.toInt(request.getParameter("number"));
+        if (number < 0 || number >= artifacts.size()) {
+            response.sendError(404, "requested resource not found");
+            return;
         }
+        serveArtifact(manifest, artifacts.get(number), request, response);
+    }
+
+    private void serveArtifact(final PerfSigArtifactManifest manifest, final PerfSigArtifactManifest.Artifact artifact,
+                               final StaplerRequest request, final StaplerResponse response) throws IOException {
+        final String etag = artifact.getChecksum() != null ? artifact.getChecksum() : artifact.getLength() + "-" + artifact.getLastModified();
+        PerfSigRangeResponse.serve(request, response, manifest.getFile(artifact), artifact.getType().getContentType(), '"' + etag + '"');
     }
 }
@@ -0,0 +1,212 @@
+/*
+ * Copyright (c) 2014 T-Systems Multimedia Solutions GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.tsystems.mms.apm.performancesignature;
+
+import de.tsystems.mms.apm.performancesignature.util.PerfSigUtils;
+import hudson.model.Job;
+import hudson.model.Run;
+import hudson.util.Area;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.StringUtils;
+import org.jfree.chart.JFreeChart;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Keeps the rendered images of the charts, so a page with many charts does not render every chart
+ * again on each reload. Images missing in the cache are rendered by the {@link PerfSigChartRenderer}.
+ * The cache is bounded by the total size of the images and evicts the least recently used ones first.
+ * The key contains the number of the last completed build, so a new build never hits an old image;
+ * entries of a job are additionally dropped when a build completes or the grid configuration changes.
+ */
+public final class PerfSigChartCache {
+    /**
+     * maximum size of all cached images in bytes, can be changed with the system property
+     * de.tsystems.mms.apm.performancesignature.PerfSigChartCache.maxSize
+     */
+    static final long MAX_SIZE = Long.getLong(PerfSigChartCache.class.getName() + ".maxSize", 16 * 1024 * 1024);
+    private static final Map<String, Entry> ENTRIES = new LinkedHashMap<String, Entry>(64, 0.75f, true);
+    private static long size;
+
+    private PerfSigChartCache() {
+    }
+
+    /**
+     * sends the image of the chart identified by the given parameters, either from the cache or freshly rendered.
+     * The image size is taken from the width and height request parameters like {@link hudson.util.Graph} does.
+     * With format=svg a vector image is sent instead. It is always rendered with the default width and the aspect
+     * ratio of the requested size, so all display sizes of a chart share one image which the browser scales.
+     */
+    public static void generateGraph(final StaplerRequest request, final StaplerResponse response, final Job<?, ?> job,
+                                     final ChartProducer chartProducer, final Area defaultSize, final String... keyParts) throws IOException {
+        final PerfSigChartRenderer.Format format = "svg".equalsIgnoreCase(request.getParameter("format"))
+                ? PerfSigChartRenderer.Format.SVG : PerfSigChartRenderer.Format.PNG;
+        final int requestedWidth = getSize(request, "width", defaultSize.width);
+        final int requestedHeight = getSize(request, "height", defaultSize.height);
+        final int width = format == PerfSigChartRenderer.Format.SVG ? defaultSize.width : requestedWidth;
+        final int height = format == PerfSigChartRenderer.Format.SVG
+                ? Math.max(1, (int) Math.round((double) defaultSize.width * requestedHeight / requestedWidth)) : requestedHeight;
+        final Run<?, ?> lastCompletedBuild = job.getLastCompletedBuild();
+
+        final StringBuilder key = new StringBuilder(job.getFullName());
+        for (String keyPart : keyParts) {
+            key.append('\u0000').append(StringUtils.defaultString(keyPart));
+        }
+        key.append('\u0000').append(format).append('\u0000').append(width).append('x').append(height)
+                .append('\u0000').append(lastCompletedBuild == null ? 0 : lastCompletedBuild.getNumber());
+
+        Entry entry = get(key.toString());
+        if (entry == null) {
+            try {
+                entry = new Entry(job.getFullName(), format,
+                        PerfSigChartRenderer.render(key.toString(), chartProducer, format, width, height));
+            } catch (PerfSigChartRenderer.RejectedException e) {
+                response.setHeader("Retry-After", String.valueOf(Math.max(1, PerfSigChartRenderer.MAX_QUEUE_TIME / 1000)));
+                response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, e.getMessage());
+                return;
+            } catch (Error e) {
+                // same handling as hudson.util.Graph, headless servers without fonts can't render charts
+                if (e.getMessage() != null && e.getMessage().contains("Probable fatal error:No fonts found")) {
+                    response.sendRedirect2(request.getContextPath() + "/images/headless.png");
+                    return;
+                }
+                throw e;
+            }
+            put(key.toString(), entry);
+        }
+
+        // gzipped images are sent decompressed to clients without gzip support, each encoding has its own entity tag
+        boolean uncompressed = false;
+        if (entry.format.isGzipped()) {
+            response.setHeader("Vary", "Accept-Encoding");
+            final String acceptEncoding = request.getHeader("Accept-Encoding");
+            uncompressed = acceptEncoding == null || !acceptEncoding.contains("gzip");
+        }
+        final String etag = uncompressed ? entry.etag.substring(0, entry.etag.length() - 1) + "-identity\"" : entry.etag;
+        response.setHeader("ETag", etag);
+        final String ifNoneMatch = request.getHeader("If-None-Match");
+        if (ifNoneMatch != null) {
+            // If-Modified-Since is ignored if the request has entity tags
+            if (PerfSigUtils.matchesETag(ifNoneMatch, etag)) {
+                response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                return;
+            }
+        } else if (request.checkIfModified(entry.lastModified, response)) {
+            return;
+        }
+
+        response.setContentType(entry.format.getContentType());
+        if (uncompressed) {
+            sendUncompressed(response, entry.image);
+            return;
+        }
+        if (entry.format.isGzipped()) {
+            response.setHeader("Content-Encoding", "gzip");
+        }
+        response.setContentLength(entry.image.length);
+        final OutputStream out = response.getOutputStream();
+        try {
+            out.write(entry.image);
+        } finally {
+            out.close();
+        }
+    }
+
+    private static void sendUncompressed(final StaplerResponse response, final byte[] gzipped) throws IOException {
+        final InputStream in = new GZIPInputStream(new ByteArrayInputStream(gzipped));
+        final OutputStream out = response.getOutputStream();
+        try {
+            IOUtils.copy(in, out);
+        } finally {
+            IOUtils.closeQuietly(in);
+            out.close();
+        }
+    }
+
+    /**
+     * drops all images of the given job, e.g. after a build completed or the grid configuration was changed
+     */
+    public static synchronized void invalidate(final Job<?, ?> job) {
+        final String jobName = job.getFullName();
+        for (Iterator<Entry> iterator = ENTRIES.values().iterator(); iterator.hasNext(); ) {
+            Entry entry = iterator.next();
+            if (entry.jobName.equals(jobName)) {
+                size -= entry.image.length;
+                iterator.remove();
+            }
+        }
+    }
+
+    private static synchronized Entry get(final String key) {
+        return ENTRIES.get(key);
+    }
+
+    private static synchronized void put(final String key, final Entry entry) {
+        if (entry.image.length > MAX_SIZE) return;
+        final Entry previous = ENTRIES.put(key, entry);
+        if (previous != null) size -= previous.image.length;
+        size += entry.image.length;
+
+        for (Iterator<Entry> iterator = ENTRIES.values().iterator(); size > MAX_SIZE && iterator.hasNext(); ) {
+            Entry eldest = iterator.next();
+            size -= eldest.image.length;
+            iterator.remove();
+        }
+    }
+
+    private static int getSize(final StaplerRequest request, final String parameter, final int defaultValue) {
+        final String value = request.getParameter(parameter);
+        if (StringUtils.isBlank(value)) return defaultValue;
+        try {
+            return Math.max(1, Math.min(Integer.parseInt(value), 4096));
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    public interface ChartProducer {
+        JFreeChart createChart() throws IOException;
+    }
+
+    private static final class Entry {
+        private final String jobName;
+        private final PerfSigChartRenderer.Format format;
+        private final byte[] image;
+        private final String etag;
+        private final long lastModified;
+
+        private Entry(final String jobName, final PerfSigChartRenderer.Format format, final byte[] image) {
+            this.jobName = jobName;
+            this.format = format;
+            this.image = image;
+            this.etag = '"' + DigestUtils.md5Hex(image) + '"';
+            // HTTP dates have a resolution of one second
+            this.lastModified = System.currentTimeMillis() / 1000 * 1000;
+        }
+    }
+}
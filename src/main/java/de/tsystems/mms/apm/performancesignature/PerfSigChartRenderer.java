@@ -0,0 +1,309 @@
+/*
+ * Copyright (c) 2014 T-Systems Multimedia Solutions GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.tsystems.mms.apm.performancesignature;
+
+import de.tsystems.mms.apm.performancesignature.util.SVGGraphics2D;
+import org.jfree.chart.JFreeChart;
+
+import javax.imageio.ImageIO;
+import java.awt.geom.Rectangle2D;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Renders the chart images of the plugin on a bounded pool of background threads instead of the request threads,
+ * so many open chart pages can't saturate the request threads and CPU of the master.
+ * A render request waits at most {@link #MAX_QUEUE_TIME} for a thread, if the queue is full or the time is over the
+ * request is rejected with a {@link RejectedException}. Concurrent requests for the same image share one render.
+ */
+final class PerfSigChartRenderer {
+    static final int THREADS = Integer.getInteger(PerfSigChartRenderer.class.getName() + ".threads",
+            Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+    static final int QUEUE_SIZE = Integer.getInteger(PerfSigChartRenderer.class.getName() + ".queueSize", 32);
+    static final long MAX_QUEUE_TIME = Long.getLong(PerfSigChartRenderer.class.getName() + ".maxQueueTime", 10000);
+    private static final ConcurrentMap<String, RenderTask> PENDING = new ConcurrentHashMap<String, RenderTask>();
+    private static final AtomicInteger IN_FLIGHT = new AtomicInteger();
+    private static final AtomicLong RENDERED = new AtomicLong();
+    private static final AtomicLong SHARED = new AtomicLong();
+    private static final AtomicLong REJECTED = new AtomicLong();
+    private static final Latencies RENDER_TIMES = new Latencies();
+    private static final Latencies QUEUE_TIMES = new Latencies();
+    private static final ThreadPoolExecutor EXECUTOR = new ThreadPoolExecutor(Math.max(1, THREADS), Math.max(1, THREADS),
+            60, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(Math.max(1, QUEUE_SIZE)), new ThreadFactory() {
+        private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+        public Thread newThread(final Runnable r) {
+            Thread thread = new Thread(r, "PerfSig chart renderer #" + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    static {
+        EXECUTOR.allowCoreThreadTimeOut(true);
+    }
+
+    private PerfSigChartRenderer() {
+    }
+
+    /**
+     * @return number of renders waiting for a thread
+     */
+    static int getQueued() {
+        return EXECUTOR.getQueue().size();
+    }
+
+    /**
+     * @return number of renders in progress
+     */
+    static int getInFlight() {
+        return IN_FLIGHT.get();
+    }
+
+    /**
+     * @return number of rendered images
+     */
+    static long getRendered() {
+        return RENDERED.get();
+    }
+
+    /**
+     * @return number of requests which were answered by the render of another request
+     */
+    static long getShared() {
+        return SHARED.get();
+    }
+
+    /**
+     * @return number of requests rejected because the queue was full or the queue time was exceeded
+     */
+    static long getRejected() {
+        return REJECTED.get();
+    }
+
+    /**
+     * @return render times of the last renders in ms, see {@link Latencies#getPercentile(double)}
+     */
+    static Latencies getRenderTimes() {
+        return RENDER_TIMES;
+    }
+
+    /**
+     * @return times the last renders waited for a thread in ms
+     */
+    static Latencies getQueueTimes() {
+        return QUEUE_TIMES;
+    }
+
+    /**
+     * renders the chart on the render pool and waits for the result
+     *
+     * @param key identifies the image, concurrent requests with the same key share one render
+     */
+    static byte[] render(final String key, final PerfSigChartCache.ChartProducer chartProducer, final Format format, final int width,
+                         final int height) throws IOException {
+        final RenderTask task = new RenderTask(key, chartProducer, format, width, height);
+        final RenderTask running = PENDING.putIfAbsent(key, task);
+        if (running != null) {
+            SHARED.incrementAndGet();
+            return get(running, false);
+        }
+        try {
+            EXECUTOR.execute(task);
+        } catch (RejectedExecutionException e) {
+            PENDING.remove(key, task);
+            REJECTED.incrementAndGet();
+            throw new RejectedException("chart render queue is full");
+        }
+        return get(task, true);
+    }
+
+    private static byte[] get(final RenderTask task, final boolean owner) throws IOException {
+        try {
+            if (owner) {
+                try {
+                    return task.get(MAX_QUEUE_TIME, TimeUnit.MILLISECONDS);
+                } catch (TimeoutException e) {
+                    if (task.claimed.compareAndSet(false, true)) {
+                        // still waiting for a thread, give up the place in the queue
+                        task.cancel(false);
+                        EXECUTOR.remove(task);
+                        REJECTED.incrementAndGet();
+                        throw new RejectedException("chart render waited longer than " + MAX_QUEUE_TIME + " ms");
+                    }
+                }
+            }
+            return task.get();
+        } catch (CancellationException e) {
+            throw new RejectedException("chart render waited longer than " + MAX_QUEUE_TIME + " ms");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while waiting for the chart render", e);
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof CancellationException) {
+                throw new RejectedException("chart render waited longer than " + MAX_QUEUE_TIME + " ms");
+            }
+            if (cause instanceof IOException) throw (IOException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new IOException(cause);
+        }
+    }
+
+    private static byte[] toPNG(final JFreeChart chart, final int width, final int height) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(16 * 1024);
+        ImageIO.write(chart.createBufferedImage(width, height), "PNG", out);
+        return out.toByteArray();
+    }
+
+    private static byte[] toSVG(final JFreeChart chart, final int width, final int height) throws IOException {
+        final SVGGraphics2D g2 = new SVGGraphics2D(width, height);
+        try {
+            chart.draw(g2, new Rectangle2D.Double(0, 0, width, height));
+        } finally {
+            g2.dispose();
+        }
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(8 * 1024);
+        final GZIPOutputStream gzip = new GZIPOutputStream(out);
+        try {
+            gzip.write(g2.getSVGDocument().getBytes("UTF-8"));
+        } finally {
+            gzip.close();
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * output formats of the charts, PNG images for a fixed size or SVG images which are scaled by the browser.
+     * SVG images are compressed with gzip, the text compresses to a fraction of the PNG size.
+     */
+    enum Format {
+        PNG("image/png", false), SVG("image/svg+xml;charset=UTF-8", true);
+
+        private final String contentType;
+        private final boolean gzipped;
+
+        Format(final String contentType, final boolean gzipped) {
+            this.contentType = contentType;
+            this.gzipped = gzipped;
+        }
+
+        String getContentType() {
+            return contentType;
+        }
+
+        boolean isGzipped() {
+            return gzipped;
+        }
+    }
+
+    private static final class RenderTask extends FutureTask<byte[]> {
+        private final String key;
+        /**
+         * set by the thread which either renders the image or gives up waiting for it
+         */
+        private final AtomicBoolean claimed;
+
+        private RenderTask(final String key, final PerfSigChartCache.ChartProducer chartProducer, final Format format, final int width,
+                           final int height) {
+            this(key, chartProducer, format, width, height, new AtomicBoolean(), System.currentTimeMillis());
+        }
+
+        private RenderTask(final String key, final PerfSigChartCache.ChartProducer chartProducer, final Format format, final int width,
+                           final int height, final AtomicBoolean claimed, final long queued) {
+            super(new Callable<byte[]>() {
+                public byte[] call() throws IOException {
+                    if (!claimed.compareAndSet(false, true)) {
+                        throw new CancellationException();
+                    }
+                    final long started = System.currentTimeMillis();
+                    QUEUE_TIMES.record(started - queued);
+                    IN_FLIGHT.incrementAndGet();
+                    try {
+                        final JFreeChart chart = chartProducer.createChart();
+                        final byte[] image = format == Format.SVG ? toSVG(chart, width, height) : toPNG(chart, width, height);
+                        RENDERED.incrementAndGet();
+                        return image;
+                    } finally {
+                        IN_FLIGHT.decrementAndGet();
+                        RENDER_TIMES.record(System.currentTimeMillis() - started);
+                    }
+                }
+            });
+            this.key = key;
+            this.claimed = claimed;
+        }
+
+        @Override
+        protected void done() {
+            PENDING.remove(key, this);
+        }
+    }
+
+    /**
+     * the request was not rendered because the render pool is busy, the client should retry later
+     */
+    static final class RejectedException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        RejectedException(final String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * the last {@link #SIZE} recorded durations
+     */
+    static final class Latencies {
+        private static final int SIZE = 1024;
+        private final long[] values = new long[SIZE];
+        private long count;
+
+        synchronized void record(final long value) {
+            values[(int) (count++ % SIZE)] = value;
+        }
+
+        /**
+         * @return number of recorded durations since the start, including the ones no longer kept
+         */
+        synchronized long getCount() {
+            return count;
+        }
+
+        /**
+         * @param percentile between 0 and 100
+         * @return the duration below which the given percentage of the kept durations lie, 0 if none was recorded
+         */
+        long getPercentile(final double percentile) {
+            final long[] sorted;
+            synchronized (this) {
+                sorted = Arrays.copyOf(values, (int) Math.min(count, SIZE));
+            }
+            if (sorted.length == 0) return 0;
+            Arrays.sort(sorted);
+            final int index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+            return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+        }
+    }
+}
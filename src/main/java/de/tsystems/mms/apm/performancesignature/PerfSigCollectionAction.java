@@ -0,0 +1,199 @@
+/*
+ * Copyright (c) 2014 T-Systems Multimedia Solutions GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.tsystems.mms.apm.performancesignature;
+
+import de.tsystems.mms.apm.performancesignature.util.PerfSigUtils;
+import hudson.model.*;
+import org.apache.commons.io.FileUtils;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Date;
+
+/**
+ * State of the deferred report collection of a build, see {@link PerfSigCollectionQueue}.
+ * The action is shown in the build menu while the collection is pending or after it failed.
+ */
+public class PerfSigCollectionAction implements RunAction {
+    static final String LOG_FILE = "collection.log";
+    private final String projectName;
+    private final int buildNumber;
+    private State state;
+    private String message;
+    private long queued, started, finished;
+    private transient Run<?, ?> run;
+
+    PerfSigCollectionAction(final Run<?, ?> run) {
+        this.run = run;
+        this.projectName = run.getParent().getFullName();
+        this.buildNumber = run.getNumber();
+        queued();
+    }
+
+    /**
+     * @return the collection action of the build, added if missing
+     */
+    static PerfSigCollectionAction get(final Run<?, ?> run) {
+        synchronized (run) {
+            PerfSigCollectionAction action = run.getAction(PerfSigCollectionAction.class);
+            if (action == null) {
+                action = new PerfSigCollectionAction(run);
+                run.addAction(action);
+            }
+            return action;
+        }
+    }
+
+    public String getIconFileName() {
+        return getState() == State.COMPLETED ? null : "/plugin/" + Messages.PerfSigBaseAction_UrlName() + "/images/icon.png";
+    }
+
+    public String getDisplayName() {
+        return Messages.PerfSigCollectionAction_DisplayName();
+    }
+
+    public String getUrlName() {
+        return "performance-signature-collection";
+    }
+
+    public synchronized Run<?, ?> getBuild() {
+        if (run == null) {
+            Item item = PerfSigUtils.getInstanceOrDie().getItemByFullName(projectName);
+            if (item instanceof Job) {
+                run = ((Job<?, ?>) item).getBuildByNumber(buildNumber);
+            }
+        }
+        return run;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * @return the reason of a failed collection
+     */
+    public synchronized String getMessage() {
+        return message;
+    }
+
+    public synchronized Date getQueued() {
+        return new Date(queued);
+    }
+
+    public synchronized Date getStarted() {
+        return started == 0 ? null : new Date(started);
+    }
+
+    public synchronized Date getFinished() {
+        return finished == 0 ? null : new Date(finished);
+    }
+
+    public boolean isPending() {
+        final State current = getState();
+        return current == State.QUEUED || current == State.RUNNING;
+    }
+
+    public boolean isFailed() {
+        return getState() == State.FAILED;
+    }
+
+    /**
+     * @return true if the collection failed and the current user may build the project
+     */
+    public boolean isRetryAllowed() {
+        final Run<?, ?> build = getBuild();
+        return isFailed() && build != null && build.getParent().hasPermission(Item.BUILD);
+    }
+
+    synchronized void queued() {
+        state = State.QUEUED;
+        message = null;
+        queued = System.currentTimeMillis();
+        started = finished = 0;
+    }
+
+    synchronized void started() {
+        state = State.RUNNING;
+        started = System.currentTimeMillis();
+    }
+
+    synchronized void completed() {
+        state = State.COMPLETED;
+        finished = System.currentTimeMillis();
+    }
+
+    synchronized void failed(final String reason) {
+        state = State.FAILED;
+        message = reason;
+        finished = System.currentTimeMillis();
+    }
+
+    File getLogFile() throws IOException {
+        return new File(PerfSigUtils.getReportDirectory(getBuild()), LOG_FILE);
+    }
+
+    /**
+     * @return the console output of the collection
+     */
+    public String getLog() throws IOException {
+        final File logFile = getLogFile();
+        return logFile.exists() ? FileUtils.readFileToString(logFile, "UTF-8") : "";
+    }
+
+    /**
+     * queues a failed collection again, requires the build permission of the project
+     */
+    public void doRetry(final StaplerRequest request, final StaplerResponse response) throws IOException {
+        final Run<?, ?> build = getBuild();
+        if (!"POST".equals(request.getMethod()) || !(build instanceof AbstractBuild)) {
+            response.sendError(400, "retry has to be requested with POST");
+            return;
+        }
+        build.getParent().checkPermission(Item.BUILD);
+        if (isFailed()) {
+            final AbstractBuild<?, ?> abstractBuild = (AbstractBuild<?, ?>) build;
+            final PerfSigRecorder recorder = abstractBuild.getProject().getPublishersList().get(PerfSigRecorder.class);
+            if (recorder == null) {
+                response.sendError(404, "the project has no Performance Signature publisher");
+                return;
+            }
+            PerfSigCollectionQueue.submit(abstractBuild, recorder);
+        }
+        response.sendRedirect(".");
+    }
+
+    public synchronized void onLoad() {
+        // the queue does not survive a restart
+        if (state == State.QUEUED || state == State.RUNNING) {
+            failed(Messages.PerfSigCollectionAction_Interrupted());
+        }
+    }
+
+    public synchronized void onAttached(final Run r) {
+        this.run = r;
+    }
+
+    public void onBuildComplete() {
+    }
+
+    public enum State {
+        QUEUED, RUNNING, COMPLETED, FAILED
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2014 T-Systems Multimedia Solutions GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.tsystems.mms.apm.performancesignature;
+
+import hudson.model.AbstractBuild;
+import hudson.model.StreamBuildListener;
+import org.apache.commons.lang.exception.ExceptionUtils;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * Background workers on the master which collect the reports of builds using the deferred collection
+ * of the {@link PerfSigRecorder}, so the build executor is given back as soon as the session names are known.
+ * The state of each collection is kept in the {@link PerfSigCollectionAction} of the build,
+ * the console output goes into a log file in the report directory.
+ */
+final class PerfSigCollectionQueue {
+    static final int THREADS = Integer.getInteger(PerfSigCollectionQueue.class.getName() + ".threads", 2);
+    private static final Logger LOGGER = Logger.getLogger(PerfSigCollectionQueue.class.getName());
+    private static final AtomicInteger QUEUED = new AtomicInteger();
+    private static final AtomicInteger RUNNING = new AtomicInteger();
+    private static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(Math.max(1, THREADS), new ThreadFactory() {
+        private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+        public Thread newThread(final Runnable r) {
+            Thread thread = new Thread(r, "PerfSig deferred collection #" + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private PerfSigCollectionQueue() {
+    }
+
+    /**
+     * @return number of collections waiting for a worker
+     */
+    static int getQueued() {
+        return QUEUED.get();
+    }
+
+    /**
+     * @return number of collections in progress
+     */
+    static int getRunning() {
+        return RUNNING.get();
+    }
+
+    static void submit(final AbstractBuild<?, ?> build, final PerfSigRecorder recorder) throws IOException {
+        final PerfSigCollectionAction action = PerfSigCollectionAction.get(build);
+        action.queued();
+        build.save();
+        QUEUED.incrementAndGet();
+        EXECUTOR.execute(new Runnable() {
+            public void run() {
+                QUEUED.decrementAndGet();
+                RUNNING.incrementAndGet();
+                try {
+                    collect(build, recorder, action);
+                } finally {
+                    RUNNING.decrementAndGet();
+                }
+            }
+        });
+    }
+
+    private static void collect(final AbstractBuild<?, ?> build, final PerfSigRecorder recorder, final PerfSigCollectionAction action) {
+        action.started();
+        StreamBuildListener listener = null;
+        try {
+            final File logFile = action.getLogFile();
+            listener = new StreamBuildListener(new FileOutputStream(logFile, true), Charset.forName("UTF-8"));
+            listener.getLogger().println(String.format(Messages.PerfSigCollectionQueue_Started(), build.getFullDisplayName()));
+            recorder.collect(build, null, listener);
+            listener.getLogger().println(Messages.PerfSigCollectionQueue_Finished());
+            action.completed();
+            PerfSigProjectState.get(build.getParent()).completed(build);
+        } catch (Exception e) {
+            LOGGER.warning("deferred collection of " + build + " failed: " + ExceptionUtils.getFullStackTrace(e));
+            if (listener != null) {
+                listener.getLogger().println(ExceptionUtils.getFullStackTrace(e));
+            }
+            action.failed(e.getMessage() == null ? e.getClass().getSimpleName() : e.getMessage());
+        } finally {
+            if (listener != null) {
+                listener.getLogger().close();
+            }
+            try {
+                build.save();
+            } catch (IOException e) {
+                LOGGER.severe("could not save " + build + ": " + ExceptionUtils.getFullStackTrace(e));
+            }
+            PerfSigChartCache.invalidate(build.getParent());
+        }
+    }
+}
@@ -0,0 +1,280 @@
+/*
+ * Copyright (c) 2014 T-Systems Multimedia Solutions GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.tsystems.mms.apm.performancesignature;
+
+import hudson.model.Job;
+import hudson.util.AtomicFileWriter;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONException;
+import net.sf.json.JSONObject;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.exception.ExceptionUtils;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.util.*;
+import java.util.logging.Logger;
+
+/**
+ * Grid configuration of the project page, one "gridconfig-&lt;dashboard&gt;.json" file per dashboard in the job directory.
+ * The parsed tiles are kept in memory and indexed by id, the files are only read again if their modification
+ * date or size changed. The modification dates are checked at most once per {@link #CHECK_INTERVAL}, so the
+ * requests of one page view are answered without file access. Saving replaces the file atomically.
+ */
+public final class PerfSigGridConfiguration {
+    static final long CHECK_INTERVAL = Long.getLong(PerfSigGridConfiguration.class.getName() + ".checkInterval", 2000);
+    private static final Logger LOGGER = Logger.getLogger(PerfSigGridConfiguration.class.getName());
+    private static final Map<Job<?, ?>, PerfSigGridConfiguration> CONFIGURATIONS = new WeakHashMap<Job<?, ?>, PerfSigGridConfiguration>();
+    private static final String PREFIX = "gridconfig-", EXTENSION = ".json";
+
+    private final File directory;
+    private final Map<String, DashboardGrid> grids = new TreeMap<String, DashboardGrid>();
+    private final Map<String, Tile> tilesById = new HashMap<String, Tile>();
+    private long lastCheck;
+
+    private PerfSigGridConfiguration(final File directory) {
+        this.directory = directory;
+    }
+
+    public static PerfSigGridConfiguration get(final Job<?, ?> job) {
+        final File directory = job.getConfigFile().getFile().getParentFile();
+        synchronized (CONFIGURATIONS) {
+            PerfSigGridConfiguration configuration = CONFIGURATIONS.get(job);
+            if (configuration == null || !configuration.directory.equals(directory)) {
+                configuration = new PerfSigGridConfiguration(directory);
+                CONFIGURATIONS.put(job, configuration);
+            }
+            return configuration;
+        }
+    }
+
+    /**
+     * @return the tiles of the dashboard, null if the dashboard has no grid configuration yet
+     */
+    public synchronized List<Tile> getTiles(final String dashboard) {
+        refresh();
+        final DashboardGrid grid = grids.get(dashboard);
+        return grid == null ? null : grid.tiles;
+    }
+
+    /**
+     * @return the tile with this id from the grid configuration of any dashboard, null if unknown
+     */
+    public synchronized Tile getTile(final String id) {
+        refresh();
+        return id == null ? null : tilesById.get(id);
+    }
+
+    /**
+     * @return the grid configuration of the dashboard as stored, null if the dashboard has none yet
+     */
+    public synchronized String getJSON(final String dashboard) {
+        refresh();
+        final DashboardGrid grid = grids.get(dashboard);
+        return grid == null ? null : grid.json;
+    }
+
+    public synchronized void save(final String dashboard, final List<Tile> tiles) throws IOException {
+        final JSONArray array = new JSONArray();
+        for (Tile tile : tiles) {
+            array.add(tile.toJSONObject());
+        }
+        final String json = array.toString();
+        final File file = getFile(dashboard);
+        final AtomicFileWriter writer = new AtomicFileWriter(file);
+        try {
+            writer.write(json);
+            writer.commit();
+        } finally {
+            writer.abort();
+        }
+        grids.put(dashboard, new DashboardGrid(file, Collections.unmodifiableList(new ArrayList<Tile>(tiles)), json));
+        index();
+    }
+
+    private File getFile(final String dashboard) {
+        return new File(directory, PREFIX + dashboard + EXTENSION);
+    }
+
+    private void refresh() {
+        final long now = System.currentTimeMillis();
+        if (now - lastCheck < CHECK_INTERVAL && now >= lastCheck) return;
+        lastCheck = now;
+
+        final File[] files = directory.listFiles(new FilenameFilter() {
+            public boolean accept(final File dir, final String name) {
+                return name.startsWith(PREFIX) && name.endsWith(EXTENSION);
+            }
+        });
+        boolean changed = false;
+        final Set<String> dashboards = new HashSet<String>();
+        if (files != null) {
+            for (File file : files) {
+                final String dashboard = StringUtils.removeEnd(StringUtils.removeStart(file.getName(), PREFIX), EXTENSION);
+                dashboards.add(dashboard);
+                final DashboardGrid grid = grids.get(dashboard);
+                if (grid == null || grid.lastModified != file.lastModified() || grid.length != file.length()) {
+                    grids.put(dashboard, load(file));
+                    changed = true;
+                }
+            }
+        }
+        changed |= grids.keySet().retainAll(dashboards);
+        if (changed) index();
+    }
+
+    private DashboardGrid load(final File file) {
+        final List<Tile> tiles = new ArrayList<Tile>();
+        String json = "[]";
+        try {
+            json = FileUtils.readFileToString(file);
+            final JSONArray array = JSONArray.fromObject(json);
+            for (int i = 0; i < array.size(); i++) {
+                tiles.add(Tile.fromJSONObject(array.getJSONObject(i)));
+            }
+        } catch (IOException e) {
+            LOGGER.severe("could not read grid configuration " + file + ": " + ExceptionUtils.getFullStackTrace(e));
+        } catch (JSONException e) {
+            LOGGER.severe("invalid grid configuration " + file + ": " + ExceptionUtils.getFullStackTrace(e));
+        }
+        return new DashboardGrid(file, Collections.unmodifiableList(tiles), json);
+    }
+
+    private void index() {
+        tilesById.clear();
+        for (DashboardGrid grid : grids.values()) {
+            for (Tile tile : grid.tiles) {
+                if (!tilesById.containsKey(tile.id)) tilesById.put(tile.id, tile);
+            }
+        }
+    }
+
+    private static final class DashboardGrid {
+        private final long lastModified, length;
+        private final List<Tile> tiles;
+        private final String json;
+
+        private DashboardGrid(final File file, final List<Tile> tiles, final String json) {
+            this.lastModified = file.lastModified();
+            this.length = file.length();
+            this.tiles = tiles;
+            this.json = json;
+        }
+    }
+
+    /**
+     * one chart of the grid, either a measure or the unit test overview
+     */
+    public static final class Tile {
+        public static final String UNITTEST_OVERVIEW = "unittest_overview";
+
+        private final String id, dashboard, chartDashlet, measure, description, aggregation, customName, customBuildCount;
+        private final int col, row;
+        private final boolean show;
+
+        public Tile(final String id, final String dashboard, final String chartDashlet, final String measure, final String description,
+                    final String aggregation, final String customName, final String customBuildCount, final int col, final int row,
+                    final boolean show) {
+            this.id = id;
+            this.dashboard = dashboard;
+            this.chartDashlet = StringUtils.defaultString(chartDashlet);
+            this.measure = StringUtils.defaultString(measure);
+            this.description = StringUtils.defaultString(description);
+            this.aggregation = StringUtils.defaultString(aggregation);
+            this.customName = StringUtils.defaultString(customName);
+            this.customBuildCount = StringUtils.defaultString(customBuildCount);
+            this.col = col;
+            this.row = row;
+            this.show = show;
+        }
+
+        /**
+         * for json version &lt; 2.1 the aggregation is missing
+         */
+        static Tile fromJSONObject(final JSONObject obj) {
+            return new Tile(obj.getString("id"), obj.optString("dashboard"), obj.optString("chartDashlet"), obj.optString("measure"),
+                    obj.optString("description"), obj.optString("aggregation"), obj.optString("customName"),
+                    obj.optString("customBuildCount"), obj.optInt("col", 1), obj.optInt("row", 1), obj.optBoolean("show", true));
+        }
+
+        JSONObject toJSONObject() {
+            final JSONObject obj = new JSONObject();
+            obj.put("id", id);
+            obj.put("col", col);
+            obj.put("row", row);
+            obj.put("dashboard", dashboard);
+            obj.put("chartDashlet", chartDashlet);
+            obj.put("measure", measure);
+            obj.put("description", description);
+            obj.put("show", show);
+            obj.put("aggregation", aggregation);
+            obj.put("customName", customName);
+            obj.put("customBuildCount", customBuildCount);
+            return obj;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getDashboard() {
+            return dashboard;
+        }
+
+        public String getChartDashlet() {
+            return chartDashlet;
+        }
+
+        public String getMeasure() {
+            return measure;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+
+        public String getAggregation() {
+            return aggregation;
+        }
+
+        public String getCustomName() {
+            return customName;
+        }
+
+        public String getCustomBuildCount() {
+            return customBuildCount;
+        }
+
+        public int getCol() {
+            return col;
+        }
+
+        public int getRow() {
+            return row;
+        }
+
+        public boolean isShow() {
+            return show;
+        }
+
+        public boolean isUnitTestOverview() {
+            return UNITTEST_OVERVIEW.equals(id);
+        }
+    }
+}
@@ -0,0 +1,275 @@
+/*
+ * Copyright (c) 2014 T-Systems Multimedia Solutions GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.tsystems.mms.apm.performancesignature;
+
+import de.tsystems.mms.apm.performancesignature.dynatrace.model.ChartDashlet;
+import de.tsystems.mms.apm.performancesignature.dynatrace.model.DashboardReport;
+import de.tsystems.mms.apm.performancesignature.dynatrace.model.Measure;
+import hudson.XmlFile;
+import hudson.model.Job;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.exception.ExceptionUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.logging.Logger;
+
+/**
+ * Stable ids of the measures of a job, one for each (dashboard, chart dashlet, measure, custom name) tuple.
+ * The id is assigned once when the tuple is seen first and kept in the job directory, the grid configuration
+ * and the chart urls refer to measures by this id. Ids of new tuples are the MD5 hash used by older versions,
+ * so existing grid configurations stay valid.
+ * <p>
+ * The registry is synchronized with the dashboard reports of the latest build, measures missing there are marked
+ * as removed and are reactivated if they show up again.
+ */
+public final class PerfSigMeasureRegistry {
+    static final String REGISTRY_FILE = "perfsig-measures.xml";
+    private static final Logger LOGGER = Logger.getLogger(PerfSigMeasureRegistry.class.getName());
+    private static final Map<Job<?, ?>, PerfSigMeasureRegistry> REGISTRIES = new WeakHashMap<Job<?, ?>, PerfSigMeasureRegistry>();
+
+    private final List<Entry> entries = new ArrayList<Entry>();
+    private int syncedBuild;
+    private transient File file;
+    private transient Map<String, Entry> byId;
+    private transient Map<String, Entry> byKey;
+
+    private PerfSigMeasureRegistry() {
+    }
+
+    public static PerfSigMeasureRegistry get(final Job<?, ?> job) {
+        final File file = new File(job.getRootDir(), REGISTRY_FILE);
+        synchronized (REGISTRIES) {
+            PerfSigMeasureRegistry registry = REGISTRIES.get(job);
+            if (registry == null || !registry.file.equals(file)) {
+                registry = load(file);
+                REGISTRIES.put(job, registry);
+            }
+            return registry;
+        }
+    }
+
+    private static PerfSigMeasureRegistry load(final File file) {
+        final XmlFile xmlFile = new XmlFile(file);
+        PerfSigMeasureRegistry registry = null;
+        if (xmlFile.exists()) {
+            try {
+                registry = (PerfSigMeasureRegistry) xmlFile.read();
+            } catch (IOException e) {
+                LOGGER.severe("could not read measure registry " + file + ": " + ExceptionUtils.getFullStackTrace(e));
+            }
+        }
+        if (registry == null) {
+            registry = new PerfSigMeasureRegistry();
+        }
+        registry.file = file;
+        registry.index();
+        return registry;
+    }
+
+    private static String key(final String dashboard, final String chartDashlet, final String measure, final String customName) {
+        return dashboard + '\u0000' + chartDashlet + '\u0000' + measure + '\u0000' + StringUtils.defaultString(customName);
+    }
+
+    private void index() {
+        byId = new HashMap<String, Entry>();
+        byKey = new HashMap<String, Entry>();
+        for (Entry entry : entries) {
+            byId.put(entry.id, entry);
+            byKey.put(key(entry.dashboard, entry.chartDashlet, entry.measure, entry.customName), entry);
+        }
+    }
+
+    /**
+     * registers the measures of the dashboard reports of a build, does nothing if the reports of this
+     * or a later build were already synchronized
+     *
+     * @param buildNumber number of the build the reports belong to
+     */
+    public synchronized void sync(final int buildNumber, final List<DashboardReport> dashboardReports) {
+        if (buildNumber <= syncedBuild) return;
+        final Set<Entry> seen = new HashSet<Entry>();
+        for (DashboardReport dashboardReport : dashboardReports) {
+            if (dashboardReport.getChartDashlets() == null) continue;
+            for (ChartDashlet chartDashlet : dashboardReport.getChartDashlets()) {
+                if (chartDashlet.getMeasures() == null) continue;
+                for (Measure measure : chartDashlet.getMeasures()) {
+                    final Entry entry = register(dashboardReport.getName(), chartDashlet.getName(), measure.getName(), "");
+                    entry.description = chartDashlet.getDescription();
+                    entry.lastSeen = buildNumber;
+                    if (entry.firstSeen == 0) entry.firstSeen = buildNumber;
+                    seen.add(entry);
+                }
+            }
+        }
+        for (Entry entry : entries) {
+            if (StringUtils.isEmpty(entry.customName)) entry.removed = !seen.contains(entry);
+        }
+        // a custom named item follows the state of its measure
+        for (Entry entry : entries) {
+            if (StringUtils.isNotEmpty(entry.customName)) updateFromMeasure(entry);
+        }
+        syncedBuild = buildNumber;
+        save();
+    }
+
+    /**
+     * the registry is synchronized again with the next build if the synchronized build was deleted
+     */
+    public synchronized void buildDeleted(final int buildNumber) {
+        if (buildNumber == syncedBuild) syncedBuild = 0;
+    }
+
+    private void updateFromMeasure(final Entry entry) {
+        final Entry measureEntry = byKey.get(key(entry.dashboard, entry.chartDashlet, entry.measure, ""));
+        if (measureEntry == null || measureEntry == entry) return;
+        entry.description = measureEntry.description;
+        entry.firstSeen = measureEntry.firstSeen;
+        entry.lastSeen = measureEntry.lastSeen;
+        entry.removed = measureEntry.removed;
+    }
+
+    /**
+     * @return id of the measure, registered if unknown
+     */
+    public String getId(final String dashboard, final String chartDashlet, final String measure) {
+        return getId(dashboard, chartDashlet, measure, "");
+    }
+
+    /**
+     * @param customName custom name of a grid item, a measure can be shown several times with different names
+     * @return id of the measure, registered if unknown, the registration is kept in memory until the next {@link #save()}
+     */
+    public synchronized String getId(final String dashboard, final String chartDashlet, final String measure, final String customName) {
+        final int size = entries.size();
+        final Entry entry = register(dashboard, chartDashlet, measure, customName);
+        if (entries.size() != size) {
+            updateFromMeasure(entry);
+        }
+        return entry.id;
+    }
+
+    private Entry register(final String dashboard, final String chartDashlet, final String measure, final String customName) {
+        final String key = key(dashboard, chartDashlet, measure, customName);
+        Entry entry = byKey.get(key);
+        if (entry == null) {
+            String id = DigestUtils.md5Hex(dashboard + chartDashlet + measure + StringUtils.defaultString(customName));
+            if (byId.containsKey(id)) {
+                // the concatenated names of two different tuples are equal
+                id = DigestUtils.md5Hex(key);
+            }
+            entry = new Entry(id, dashboard, chartDashlet, measure, StringUtils.defaultString(customName));
+            entries.add(entry);
+            byId.put(id, entry);
+            byKey.put(key, entry);
+        }
+        return entry;
+    }
+
+    /**
+     * @return the measure with this id, null if unknown
+     */
+    public synchronized Entry getEntry(final String id) {
+        return id == null ? null : byId.get(id);
+    }
+
+    /**
+     * @return the measures of a dashboard without custom name, in the order they were registered
+     */
+    public synchronized List<Entry> getEntries(final String dashboard, final boolean includeRemoved) {
+        final List<Entry> result = new ArrayList<Entry>();
+        for (Entry entry : entries) {
+            if (entry.dashboard.equals(dashboard) && StringUtils.isEmpty(entry.customName) && (includeRemoved || !entry.removed)) {
+                result.add(entry);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * writes the registry to the job directory
+     */
+    public synchronized void save() {
+        try {
+            new XmlFile(file).write(this);
+        } catch (IOException e) {
+            LOGGER.severe("could not write measure registry " + file + ": " + ExceptionUtils.getFullStackTrace(e));
+        }
+    }
+
+    public static final class Entry {
+        private final String id, dashboard, chartDashlet, measure, customName;
+        private String description;
+        private int firstSeen, lastSeen;
+        private boolean removed;
+
+        private Entry(final String id, final String dashboard, final String chartDashlet, final String measure, final String customName) {
+            this.id = id;
+            this.dashboard = dashboard;
+            this.chartDashlet = chartDashlet;
+            this.measure = measure;
+            this.customName = customName;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getDashboard() {
+            return dashboard;
+        }
+
+        public String getChartDashlet() {
+            return chartDashlet;
+        }
+
+        public String getMeasure() {
+            return measure;
+        }
+
+        public String getCustomName() {
+            return customName;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+
+        /**
+         * @return number of the first build containing the measure, 0 if unknown
+         */
+        public int getFirstSeen() {
+            return firstSeen;
+        }
+
+        /**
+         * @return number of the last build containing the measure, 0 if unknown
+         */
+        public int getLastSeen() {
+            return lastSeen;
+        }
+
+        /**
+         * @return true if the measure is not part of the dashboard of the latest build
+         */
+        public boolean isRemoved() {
+            return removed;
+        }
+    }
+}
@@ -41,8 +41,6 @@ import java.io.PrintStream;
 import java.util.List;
 
 public class PerfSigMemoryDump extends Builder {
-    private static final int waitForDumpTimeout = 60000;
-    private static final int waitForDumpPollingInterval = 5000;
     private final String dynatraceProfile, agent, host;
     private String type;
     private boolean lockSession, captureStrings, capturePrimitives, autoPostProcess, dogc;
@@ -84,13 +82,13 @@ public class PerfSigMemoryDump extends Builder {
                         this.lockSession, this.captureStrings, this.capturePrimitives, this.autoPostProcess, this.dogc);
                 if (StringUtils.isBlank(memoryDump))
                     throw new RESTErrorException("memory dump wasn't taken");
-                int timeout = waitForDumpTimeout;
-                boolean dumpFinished = connection.memoryDumpStatus(memoryDump).isResultValueTrue();
-                while ((!dumpFinished) && (timeout > 0)) {
-                    Thread.sleep(waitForDumpPollingInterval);
-                    timeout -= waitForDumpPollingInterval;
-                    dumpFinished = connection.memoryDumpStatus(memoryDump).isResultValueTrue();
-                }
+                final String dump = memoryDump;
+                boolean dumpFinished = PerfSigWait.await(build, logger, "memory dump " + memoryDump, serverConfiguration.getDumpTimeout() * 1000L,
+                        new PerfSigWait.Probe() {
+                            public boolean isReady() throws IOException {
+                                return connection.memoryDumpStatus(dump).isResultValueTrue();
+                            }
+                        });
                 if (dumpFinished) {
                     logger.println(String.format(Messages.PerfSigMemoryDump_SuccessfullyCreatedMemoryDump(), agent.getName()));
                     return true;
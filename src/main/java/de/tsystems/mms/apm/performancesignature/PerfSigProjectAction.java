@@ -20,10 +20,7 @@ import de.tsystems.mms.apm.performancesignature.dynatrace.model.ChartDashlet;
 import de.tsystems.mms.apm.performancesignature.dynatrace.model.DashboardReport;
 import de.tsystems.mms.apm.performancesignature.dynatrace.model.Measure;
 import de.tsystems.mms.apm.performancesignature.dynatrace.model.TestRun;
-import de.tsystems.mms.apm.performancesignature.model.MeasureNameHelper;
 import de.tsystems.mms.apm.performancesignature.util.PerfSigUtils;
-import hudson.FilePath;
-import hudson.model.AbstractBuild;
 import hudson.model.Job;
 import hudson.model.ProminentProjectAction;
 import hudson.model.Run;
@@ -36,9 +33,9 @@ import hudson.util.DataSetBuilder;
 import hudson.util.ShiftedCategoryAxis;
 import net.sf.json.JSONArray;
 import net.sf.json.JSONObject;
-import org.apache.commons.codec.digest.DigestUtils;
-import org.apache.commons.io.filefilter.RegexFileFilter;
 import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.exception.ExceptionUtils;
+import org.apache.commons.lang.math.NumberUtils;
 import org.jfree.chart.ChartFactory;
 import org.jfree.chart.JFreeChart;
 import org.jfree.chart.axis.CategoryAxis;
@@ -52,17 +49,32 @@ import org.jfree.data.category.CategoryDataset;
 import org.kohsuke.stapler.StaplerRequest;
 import org.kohsuke.stapler.StaplerResponse;
 
+import javax.servlet.http.HttpServletResponse;
+
 import java.awt.*;
-import java.io.File;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
+import java.math.BigDecimal;
 import java.net.URLDecoder;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.SortedMap;
+import java.util.logging.Logger;
 
 public class PerfSigProjectAction extends PerfSigBaseAction implements ProminentProjectAction {
+    private static final Logger LOGGER = Logger.getLogger(PerfSigProjectAction.class.getName());
+    /**
+     * series of the unit test overview in the order of the values of {@link PerfSigTrendStore#getTestRunTrend(int)}
+     */
+    private static final String[] TEST_RUN_SERIES = {"failed", "degraded", "improved", "passed", "volatile", "invalidated"};
+    private static final Color[] TEST_RUN_COLORS = {ColorPalette.RED, new Color(0xFF, 0x99, 0x99), new Color(0x00, 0xFF, 0x00),
+            ColorPalette.BLUE, ColorPalette.YELLOW, ColorPalette.GREY};
     private final Job<?, ?> job;
 
     public PerfSigProjectAction(final Job<?, ?> job) {
@@ -93,89 +105,148 @@ public class PerfSigProjectAction extends PerfSigBaseAction implements Prominent
             return;
         }
 
-        final String id = request.getParameter("id");
-        final JSONArray jsonArray = JSONArray.fromObject(getDashboardConfiguration());
+        final PerfSigGridConfiguration.Tile tile = getRequestedTile(request);
+        if (tile != null) {
+            generateSummarizerGraph(request, response, tile);
+        }
+    }
 
-        if (request.getParameterMap().get("customName") == null && request.getParameterMap().get("customBuildCount") == null) {
-            for (int i = 0; i < jsonArray.size(); i++) {
-                final JSONObject obj = jsonArray.getJSONObject(i);
-                if (obj.getString("id").equals(id)) {
-                    //for json version < 2.1 put a empty aggregation value to avoid missing json object
-                    if (!obj.has("aggregation")) obj.put("aggregation", "");
-                    ChartUtil.generateGraph(request, response, createChart(obj, buildDataSet(obj)), PerfSigUtils.calcDefaultSize());
-                    return;
+    /**
+     * series data of a measure chart, rendered in the browser: build numbers and values, oldest build first
+     */
+    public void doSummarizerData(final StaplerRequest request, final StaplerResponse response) throws IOException {
+        final PerfSigGridConfiguration.Tile tile = getRequestedTile(request);
+        if (tile == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND, "unknown chart " + request.getParameter("id"));
+            return;
+        }
+        PerfSigUtils.writeJSON(response, getMeasureJSON(tile, getMeasureTrend(tile)));
+    }
+
+    /**
+     * series data of several tiles of the grid in one response, the trends of all measures are read in one pass
+     * over the builds. Unknown ids are listed as missing.
+     */
+    public void doGridData(final StaplerRequest request, final StaplerResponse response) throws IOException {
+        final String[] ids = request.getParameterValues("id");
+        final PerfSigGridConfiguration configuration = PerfSigGridConfiguration.get(job);
+        final List<PerfSigGridConfiguration.Tile> tiles = new ArrayList<PerfSigGridConfiguration.Tile>();
+        final List<PerfSigTrendStore.MeasureQuery> queries = new ArrayList<PerfSigTrendStore.MeasureQuery>();
+        final JSONArray missing = new JSONArray();
+        JSONObject testRun = null;
+        if (ids != null) {
+            for (String id : new LinkedHashSet<String>(Arrays.asList(ids))) {
+                final PerfSigGridConfiguration.Tile tile = configuration.getTile(id);
+                if (tile == null) {
+                    missing.add(id);
+                } else if (tile.isUnitTestOverview()) {
+                    testRun = getTestRunJSON(tile.getCustomBuildCount(), tile.getCustomName());
+                } else {
+                    tiles.add(tile);
+                    queries.add(new PerfSigTrendStore.MeasureQuery(tile.getDashboard(), tile.getChartDashlet(), tile.getMeasure(),
+                            tile.getAggregation(), getBuildCount(tile.getCustomBuildCount())));
                 }
             }
-        } else {
-            for (DashboardReport dashboardReport : getLastDashboardReports())
-                for (ChartDashlet chartDashlet : dashboardReport.getChartDashlets())
-                    for (Measure measure : chartDashlet.getMeasures())
-                        if (id.equals(DigestUtils.md5Hex(dashboardReport.getName() + chartDashlet.getName() + measure.getName()))) {
-                            final JSONObject jsonObject = new JSONObject();
-                            jsonObject.put("id", id);
-                            jsonObject.put("dashboard", dashboardReport.getName());
-                            jsonObject.put("chartDashlet", chartDashlet.getName());
-                            jsonObject.put("measure", measure.getName());
-                            jsonObject.put("customName", request.getParameter("customName"));
-                            jsonObject.put("customBuildCount", request.getParameter("customBuildCount"));
-                            jsonObject.put("aggregation", request.getParameter("aggregation"));
-
-                            ChartUtil.generateGraph(request, response, createChart(jsonObject, buildDataSet(jsonObject)), PerfSigUtils.calcDefaultSize());
-                            return;
-                        }
         }
+
+        final List<List<PerfSigTrendStore.TrendPoint>> trends = PerfSigTrendStore.get(job).getMeasureTrends(queries);
+        final JSONArray charts = new JSONArray();
+        if (testRun != null) charts.add(testRun);
+        for (int i = 0; i < tiles.size(); i++) {
+            charts.add(getMeasureJSON(tiles.get(i), trends.get(i)));
+        }
+        final JSONObject jsonObject = new JSONObject();
+        jsonObject.put("charts", charts);
+        jsonObject.put("missing", missing);
+        PerfSigUtils.writeJSON(response, jsonObject);
     }
 
-    private CategoryDataset buildDataSet(final JSONObject jsonObject) throws IOException {
-        String dashboard = jsonObject.getString("dashboard");
-        String chartDashlet = jsonObject.getString("chartDashlet");
-        String measure = jsonObject.getString("measure");
-        String buildCount = jsonObject.getString("customBuildCount");
-        String aggregation = jsonObject.getString("aggregation");
-        int customBuildCount = 0, i = 0;
+    /**
+     * @param points the trend of the measure, newest build first
+     */
+    private JSONObject getMeasureJSON(final PerfSigGridConfiguration.Tile tile, final List<PerfSigTrendStore.TrendPoint> points)
+            throws UnsupportedEncodingException {
+        final JSONArray builds = new JSONArray(), values = new JSONArray();
+        for (int i = points.size() - 1; i >= 0; i--) {
+            builds.add(points.get(i).getNumber());
+            values.add(PerfSigUtils.toJSONValue(points.get(i).getValue()));
+        }
 
-        if (StringUtils.isNotBlank(buildCount)) customBuildCount = Integer.parseInt(buildCount);
+        final Measure m = PerfSigProjectState.get(job).getMeasure(tile.getDashboard(), tile.getChartDashlet(), tile.getMeasure());
+        final JSONObject jsonObject = new JSONObject();
+        jsonObject.put("id", tile.getId());
+        jsonObject.put("title", getChartTitle(tile));
+        jsonObject.put("unit", getUnit(tile, m));
+        jsonObject.put("color", getColor(m));
+        jsonObject.put("builds", builds);
+        jsonObject.put("values", values);
+        return jsonObject;
+    }
 
-        Map<Run<?, ?>, DashboardReport> dashboardReports = getDashBoardReports(dashboard);
-        DataSetBuilder<String, ChartUtil.NumberOnlyBuildLabel> dsb = new DataSetBuilder<String, ChartUtil.NumberOnlyBuildLabel>();
+    private static int getBuildCount(final String customBuildCount) {
+        return NumberUtils.toInt(customBuildCount, 0);
+    }
 
-        for (Map.Entry<Run<?, ?>, DashboardReport> dashboardReport : dashboardReports.entrySet()) {
-            double metricValue = 0;
-            if (dashboardReport.getValue().getChartDashlets() != null) {
-                Measure m = dashboardReport.getValue().getMeasure(chartDashlet, measure);
-                if (m != null)
-                    metricValue = StringUtils.isBlank(aggregation) ? m.getMetricValue() : m.getMetricValue(aggregation);
-            }
-            i++;
-            dsb.add(metricValue, chartDashlet, new ChartUtil.NumberOnlyBuildLabel((AbstractBuild<?, ?>) dashboardReport.getKey()));
-            if (customBuildCount != 0 && i == customBuildCount) break;
+    /**
+     * the chart is either a tile of the grid configuration or, if a custom name or build count is given, a measure
+     * with the chart settings of the request
+     */
+    private PerfSigGridConfiguration.Tile getRequestedTile(final StaplerRequest request) {
+        final String id = request.getParameter("id");
+
+        if (request.getParameterMap().get("customName") == null && request.getParameterMap().get("customBuildCount") == null) {
+            return PerfSigGridConfiguration.get(job).getTile(id);
         }
-        return dsb.build();
+        final PerfSigMeasureRegistry.Entry entry = getMeasureRegistry().getEntry(id);
+        if (entry == null) return null;
+        return new PerfSigGridConfiguration.Tile(id, entry.getDashboard(), entry.getChartDashlet(),
+                entry.getMeasure(), entry.getDescription(), request.getParameter("aggregation"), request.getParameter("customName"),
+                request.getParameter("customBuildCount"), 1, 1, true);
     }
 
-    private JFreeChart createChart(final JSONObject jsonObject, final CategoryDataset dataset) throws UnsupportedEncodingException {
-        final String measure = jsonObject.getString(Messages.PerfSigProjectAction_ReqParamMeasure());
-        final String chartDashlet = jsonObject.getString("chartDashlet");
-        final String testCase = jsonObject.getString("dashboard");
-        final String customMeasureName = jsonObject.getString("customName");
-        final String aggregation = jsonObject.getString("aggregation");
+    private void generateSummarizerGraph(final StaplerRequest request, final StaplerResponse response, final PerfSigGridConfiguration.Tile tile)
+            throws IOException {
+        PerfSigChartCache.generateGraph(request, response, job, new PerfSigChartCache.ChartProducer() {
+                    public JFreeChart createChart() throws IOException {
+                        return PerfSigProjectAction.this.createChart(tile, buildDataSet(tile));
+                    }
+                }, PerfSigUtils.calcDefaultSize(), tile.getId(), tile.getCustomName(),
+                tile.getCustomBuildCount(), tile.getAggregation());
+    }
 
-        String unit = "", color = Messages.PerfSigProjectAction_DefaultColor();
+    private List<PerfSigTrendStore.TrendPoint> getMeasureTrend(final PerfSigGridConfiguration.Tile tile) {
+        return PerfSigTrendStore.get(job).getMeasureTrend(tile.getDashboard(), tile.getChartDashlet(), tile.getMeasure(),
+                tile.getAggregation(), getBuildCount(tile.getCustomBuildCount()));
+    }
 
-        for (DashboardReport dr : getLastDashboardReports()) {
-            if (dr.getName().equals(testCase)) {
-                final Measure m = dr.getMeasure(chartDashlet, measure);
-                if (m != null) {
-                    unit = aggregation.equalsIgnoreCase("Count") ? "num" : m.getUnit();
-                    color = URLDecoder.decode(m.getColor(), "UTF-8");
-                }
-                break;
-            }
+    private CategoryDataset buildDataSet(final PerfSigGridConfiguration.Tile tile) throws IOException {
+        DataSetBuilder<String, BuildNumberLabel> dsb = new DataSetBuilder<String, BuildNumberLabel>();
+        for (PerfSigTrendStore.TrendPoint point : getMeasureTrend(tile)) {
+            dsb.add(point.getValue(), tile.getChartDashlet(), new BuildNumberLabel(point.getNumber()));
         }
+        return dsb.build();
+    }
+
+    private String getChartTitle(final PerfSigGridConfiguration.Tile tile) {
+        if (StringUtils.isBlank(tile.getCustomName()))
+            return PerfSigUtils.generateTitle(tile.getMeasure(), tile.getChartDashlet());
+        return tile.getCustomName();
+    }
+
+    private static String getUnit(final PerfSigGridConfiguration.Tile tile, final Measure m) {
+        if (m == null) return "";
+        return tile.getAggregation().equalsIgnoreCase("Count") ? "num" : m.getUnit();
+    }
+
+    private static String getColor(final Measure m) throws UnsupportedEncodingException {
+        return m == null ? Messages.PerfSigProjectAction_DefaultColor() : URLDecoder.decode(m.getColor(), "UTF-8");
+    }
 
-        String title = customMeasureName;
-        if (StringUtils.isBlank(customMeasureName))
-            title = PerfSigUtils.generateTitle(measure, chartDashlet);
+    private JFreeChart createChart(final PerfSigGridConfiguration.Tile tile, final CategoryDataset dataset) throws UnsupportedEncodingException {
+        final Measure m = PerfSigProjectState.get(job).getMeasure(tile.getDashboard(), tile.getChartDashlet(), tile.getMeasure());
+        final String unit = getUnit(tile, m);
+        final String color = getColor(m);
+        final String title = getChartTitle(tile);
 
         final JFreeChart chart = ChartFactory.createBarChart(title, // title
                 "build", // category axis label
@@ -222,42 +293,77 @@ public class PerfSigProjectAction extends PerfSigBaseAction implements Prominent
 
         //get customName and customBuildCount from persisted json
         if (request.getParameterMap().get("customName") == null && request.getParameterMap().get("customBuildCount") == null) {
-            final JSONArray jsonArray = JSONArray.fromObject(getDashboardConfiguration());
-            for (int i = 0; i < jsonArray.size(); i++) {
-                final JSONObject obj = jsonArray.getJSONObject(i);
-                if (obj.getString("id").equals("unittest_overview")) {
-                    ChartUtil.generateGraph(request, response, createTestRunChart(buildTestRunDataSet(obj.getString("customBuildCount")),
-                            obj.getString("customName")), PerfSigUtils.calcDefaultSize());
-                    return;
-                }
+            final PerfSigGridConfiguration.Tile tile = PerfSigGridConfiguration.get(job).getTile(PerfSigGridConfiguration.Tile.UNITTEST_OVERVIEW);
+            if (tile != null) {
+                generateTestRunGraph(request, response, tile.getCustomBuildCount(), tile.getCustomName());
             }
         } else { //generate test run graph with GET parameters
-            ChartUtil.generateGraph(request, response, createTestRunChart(buildTestRunDataSet(request.getParameter("customBuildCount")),
-                    request.getParameter("customName")), PerfSigUtils.calcDefaultSize());
+            generateTestRunGraph(request, response, request.getParameter("customBuildCount"), request.getParameter("customName"));
         }
     }
 
-    private CategoryDataset buildTestRunDataSet(final String customBuildCount) {
-        final DataSetBuilder<String, ChartUtil.NumberOnlyBuildLabel> dsb = new DataSetBuilder<String, ChartUtil.NumberOnlyBuildLabel>();
-        int buildCount = 0, i = 0;
-        if (StringUtils.isNotBlank(customBuildCount))
-            buildCount = Integer.parseInt(customBuildCount);
+    /**
+     * series data of the unit test overview, rendered in the browser: build numbers and one series per test state,
+     * oldest build first
+     */
+    public void doTestRunData(final StaplerRequest request, final StaplerResponse response) throws IOException {
+        String customBuildCount = request.getParameter("customBuildCount"), customName = request.getParameter("customName");
+        if (customName == null && customBuildCount == null) {
+            final PerfSigGridConfiguration.Tile tile = PerfSigGridConfiguration.get(job).getTile(PerfSigGridConfiguration.Tile.UNITTEST_OVERVIEW);
+            if (tile != null) {
+                customBuildCount = tile.getCustomBuildCount();
+                customName = tile.getCustomName();
+            }
+        }
+        PerfSigUtils.writeJSON(response, getTestRunJSON(customBuildCount, customName));
+    }
 
-        for (Run<?, ?> run : job.getBuilds()) {
-            PerfSigTestDataWrapper testDataWrapper = run.getAction(PerfSigTestDataWrapper.class);
-            if (testDataWrapper != null && testDataWrapper.getTestRuns() != null) {
-                TestRun testRun = TestRun.mergeTestRuns(testDataWrapper.getTestRuns());
-                if (testRun != null) {
-                    dsb.add(testRun.getNumFailed(), "failed", new ChartUtil.NumberOnlyBuildLabel((AbstractBuild<?, ?>) run));
-                    dsb.add(testRun.getNumDegraded(), "degraded", new ChartUtil.NumberOnlyBuildLabel((AbstractBuild<?, ?>) run));
-                    dsb.add(testRun.getNumImproved(), "improved", new ChartUtil.NumberOnlyBuildLabel((AbstractBuild<?, ?>) run));
-                    dsb.add(testRun.getNumPassed(), "passed", new ChartUtil.NumberOnlyBuildLabel((AbstractBuild<?, ?>) run));
-                    dsb.add(testRun.getNumVolatile(), "volatile", new ChartUtil.NumberOnlyBuildLabel((AbstractBuild<?, ?>) run));
-                    dsb.add(testRun.getNumInvalidated(), "invalidated", new ChartUtil.NumberOnlyBuildLabel((AbstractBuild<?, ?>) run));
-                }
+    private JSONObject getTestRunJSON(final String customBuildCount, final String customName) {
+        final SortedMap<Integer, int[]> trend = PerfSigTrendStore.get(job).getTestRunTrend(getBuildCount(customBuildCount));
+        final List<Integer> numbers = new ArrayList<Integer>(trend.keySet());
+        Collections.reverse(numbers);
+        final JSONArray series = new JSONArray();
+        for (int i = 0; i < TEST_RUN_SERIES.length; i++) {
+            final JSONArray values = new JSONArray();
+            for (Integer number : numbers) {
+                values.add(trend.get(number)[i]);
             }
-            i++;
-            if (buildCount != 0 && i == buildCount) break;
+            final JSONObject serie = new JSONObject();
+            serie.put("name", TEST_RUN_SERIES[i]);
+            serie.put("color", PerfSigUtils.toHex(TEST_RUN_COLORS[i]));
+            serie.put("values", values);
+            series.add(serie);
+        }
+
+        final JSONObject jsonObject = new JSONObject();
+        jsonObject.put("id", PerfSigGridConfiguration.Tile.UNITTEST_OVERVIEW);
+        jsonObject.put("title", StringUtils.isNotBlank(customName) ? customName : "UnitTest overview");
+        jsonObject.put("unit", "num");
+        jsonObject.put("builds", JSONArray.fromObject(numbers));
+        jsonObject.put("series", series);
+        return jsonObject;
+    }
+
+    private void generateTestRunGraph(final StaplerRequest request, final StaplerResponse response, final String customBuildCount,
+                                      final String customName) throws IOException {
+        PerfSigChartCache.generateGraph(request, response, job, new PerfSigChartCache.ChartProducer() {
+            public JFreeChart createChart() {
+                return createTestRunChart(buildTestRunDataSet(customBuildCount), customName);
+            }
+        }, PerfSigUtils.calcDefaultSize(), PerfSigGridConfiguration.Tile.UNITTEST_OVERVIEW, customName, customBuildCount);
+    }
+
+    private CategoryDataset buildTestRunDataSet(final String customBuildCount) {
+        final DataSetBuilder<String, BuildNumberLabel> dsb = new DataSetBuilder<String, BuildNumberLabel>();
+        for (Map.Entry<Integer, int[]> entry : PerfSigTrendStore.get(job).getTestRunTrend(getBuildCount(customBuildCount)).entrySet()) {
+            final BuildNumberLabel label = new BuildNumberLabel(entry.getKey());
+            final int[] testRun = entry.getValue();
+            dsb.add(testRun[0], "failed", label);
+            dsb.add(testRun[1], "degraded", label);
+            dsb.add(testRun[2], "improved", label);
+            dsb.add(testRun[3], "passed", label);
+            dsb.add(testRun[4], "volatile", label);
+            dsb.add(testRun[5], "invalidated", label);
         }
         return dsb.build();
     }
@@ -311,17 +417,14 @@ public class PerfSigProjectAction extends PerfSigBaseAction implements Prominent
     }
 
     public List<DashboardReport> getLastDashboardReports() {
-        final Run<?, ?> tb = job.getLastSuccessfulBuild();
+        return PerfSigProjectState.get(job).getLastDashboardReports();
+    }
 
-        Run<?, ?> b = job.getLastBuild();
-        while (b != null) {
-            PerfSigBuildAction a = b.getAction(PerfSigBuildAction.class);
-            if (a != null && (!b.isBuilding())) return a.getDashboardReports();
-            if (b == tb)
-                return new ArrayList<DashboardReport>();
-            b = b.getPreviousBuild();
-        }
-        return new ArrayList<DashboardReport>();
+    /**
+     * @return the measure registry of the job, in sync with the dashboard reports of the last build
+     */
+    private PerfSigMeasureRegistry getMeasureRegistry() {
+        return PerfSigProjectState.get(job).getMeasureRegistry();
     }
 
     public TestRun getTestRun(final Run<?, ?> run) {
@@ -344,89 +447,73 @@ public class PerfSigProjectAction extends PerfSigBaseAction implements Prominent
         return null;
     }
 
-    public Map<Run<?, ?>, DashboardReport> getDashBoardReports(final String tc) {
-        final Map<Run<?, ?>, DashboardReport> dashboardReports = new HashMap<Run<?, ?>, DashboardReport>();
+    /**
+     * @param type name of a {@link PerfSigArtifactManifest.Type}
+     */
+    public List<PerfSigArtifactManifest.Artifact> getArtifacts(final Run<?, ?> build, final String type, final String testCase)
+            throws IOException {
+        return PerfSigArtifactManifest.get(build).getArtifacts(PerfSigArtifactManifest.Type.valueOf(type), testCase);
+    }
+
+    /**
+     * rows of the overview table for the newest {@link PerfSigTrendStore#DEFAULT_BUILD_LIMIT} builds, the measure values
+     * and test runs are read from the trend store.
+     * The values are ordered like the columns of {@link #getFilteredChartDashlets(DashboardReport)}.
+     */
+    public List<TrendRow> getTrendRows(final DashboardReport lastDashboardReport) throws IOException, InterruptedException {
+        final List<TrendRow> rows = new ArrayList<TrendRow>();
         if (job == null) {
-            return dashboardReports;
-        }
-        for (Run<?, ?> currentRun : job.getBuilds()) {
-            final PerfSigBuildAction perfSigBuildAction = currentRun.getAction(PerfSigBuildAction.class);
-            if (perfSigBuildAction != null) {
-                DashboardReport dashboardReport = perfSigBuildAction.getBuildActionResultsDisplay().getDashBoardReport(tc);
-                if (dashboardReport == null) {
-                    dashboardReport = new DashboardReport(tc);
-                }
-                dashboardReports.put(currentRun, dashboardReport);
+            return rows;
+        }
+        final List<ConfiguredMeasure> configuredMeasures = getConfiguredMeasures(lastDashboardReport);
+        for (PerfSigTrendStore.BuildRow buildRow : PerfSigTrendStore.get(job).getBuildRows(lastDashboardReport.getName(), null,
+                PerfSigTrendStore.DEFAULT_BUILD_LIMIT)) {
+            final List<BigDecimal> rowValues = new ArrayList<BigDecimal>(configuredMeasures.size());
+            for (ConfiguredMeasure configuredMeasure : configuredMeasures) {
+                Double value = buildRow.getValues().get(PerfSigTrendStore.getMeasureKey(configuredMeasure.chartDashlet.getName(),
+                        configuredMeasure.measure.getName()));
+                rowValues.add(value == null ? null : PerfSigUtils.round(value, 2));
             }
+            rows.add(new TrendRow(buildRow, rowValues));
         }
-        return dashboardReports;
+        return rows;
     }
 
-    private FilePath getJsonConfigFilePath() {
-        final FilePath configPath = new FilePath(job.getConfigFile().getFile());
-        return configPath.getParent();
-    }
-
-    private String getDashboardConfiguration() throws IOException, InterruptedException {
-        final List<FilePath> fileList = getJsonConfigFilePath().list(new RegexFileFilter("gridconfig-.*.json"));
-        final StringBuilder sb = new StringBuilder("[");
-        for (FilePath file : fileList) {
-            final String tmp = file.readToString();
-            sb.append(tmp.substring(1, tmp.length() - 1)).append(",");
+    /**
+     * @return the grid configuration of the dashboard, created from the dashboard report of the last build if missing
+     */
+    private List<PerfSigGridConfiguration.Tile> getGridTiles(final String dashboard) throws IOException {
+        final PerfSigGridConfiguration configuration = PerfSigGridConfiguration.get(job);
+        List<PerfSigGridConfiguration.Tile> tiles = configuration.getTiles(dashboard);
+        if (tiles == null) {
+            tiles = createGridTiles(dashboard);
+            configuration.save(dashboard, tiles);
         }
-        sb.setLength(sb.length() - 1);
-        sb.append("]");
-        return sb.toString();
-    }
-
-    private String getDashboardConfiguration(final String dashboard) throws IOException, InterruptedException {
-        final FilePath input = new FilePath(new File(getJsonConfigFilePath() + File.separator + "gridconfig-" + dashboard + ".json"));
-        if (!input.exists()) input.write(createJSONConfigString(dashboard), null);
-        return input.readToString();
+        return tiles;
     }
 
     public void doGetDashboardConfiguration(final StaplerRequest request, final StaplerResponse response) throws IOException, InterruptedException {
         final String dashboard = request.getParameter("dashboard");
         if (StringUtils.isBlank(dashboard)) return;
-        String output = getDashboardConfiguration(dashboard);
-        response.getOutputStream().print(output);
+        getGridTiles(dashboard);
+        response.getOutputStream().print(PerfSigGridConfiguration.get(job).getJSON(dashboard));
     }
 
-    private String createJSONConfigString(final String dashboard) {
+    private List<PerfSigGridConfiguration.Tile> createGridTiles(final String dashboard) {
         int col = 1, row = 1;
-        JSONArray array = new JSONArray();
+        final List<PerfSigGridConfiguration.Tile> tiles = new ArrayList<PerfSigGridConfiguration.Tile>();
+        final PerfSigMeasureRegistry registry = getMeasureRegistry();
         for (DashboardReport dashboardReport : getLastDashboardReports()) {
             if (!dashboardReport.getName().equals(dashboard)) continue;
             if (dashboardReport.isUnitTest()) {
-                JSONObject obj = new JSONObject();
-                obj.put("id", "unittest_overview");
-                obj.put("col", col++);
-                obj.put("row", row);
-                obj.put("dashboard", dashboardReport.getName());
-                obj.put("chartDashlet", "");
-                obj.put("measure", "");
-                obj.put("show", true);
-                obj.put("customName", "");
-                obj.put("customBuildCount", 0);
-
-                array.add(obj);
+                tiles.add(new PerfSigGridConfiguration.Tile(PerfSigGridConfiguration.Tile.UNITTEST_OVERVIEW, dashboardReport.getName(),
+                        "", "", "", "", "", "0", col++, row, true));
             }
             for (ChartDashlet chartDashlet : dashboardReport.getChartDashlets()) {
                 for (Measure measure : chartDashlet.getMeasures()) {
-                    JSONObject obj = new JSONObject();
-                    obj.put("id", DigestUtils.md5Hex(dashboardReport.getName() + chartDashlet.getName() + measure.getName()));
-                    obj.put("col", col++);
-                    obj.put("row", row);
-                    obj.put("dashboard", dashboardReport.getName());
-                    obj.put("chartDashlet", chartDashlet.getName());
-                    obj.put("measure", measure.getName());
-                    obj.put("description", chartDashlet.getDescription());
-                    obj.put("show", true);
-                    obj.put("aggregation", measure.getAggregation());
-                    obj.put("customName", "");
-                    obj.put("customBuildCount", 0);
-
-                    array.add(obj);
+                    tiles.add(new PerfSigGridConfiguration.Tile(registry.getId(dashboardReport.getName(), chartDashlet.getName(), measure.getName()),
+                            dashboardReport.getName(), chartDashlet.getName(), measure.getName(), chartDashlet.getDescription(),
+                            measure.getAggregation(), "", "0", col++, row, true));
 
                     if (col > 3) {
                         col = 1;
@@ -435,65 +522,56 @@ public class PerfSigProjectAction extends PerfSigBaseAction implements Prominent
                 }
             }
         }
-        return array.toString();
+        return tiles;
     }
 
     public void doSetDashboardConfiguration(final StaplerRequest request, final StaplerResponse response) {
         final String dashboard = request.getParameter("dashboard");
         final String data = request.getParameter("data");
-        if (StringUtils.isBlank(dashboard) || StringUtils.isBlank("data")) return;
-
-        final Map<String, MeasureNameHelper> map = new HashMap<String, MeasureNameHelper>();
-        //generate a map to link between id and chartname
-        for (DashboardReport dashboardReport : getLastDashboardReports())
-            if (dashboardReport.getName().equals(dashboard))
-                for (ChartDashlet chartDashlet : dashboardReport.getChartDashlets())
-                    for (Measure measure : chartDashlet.getMeasures())
-                        map.put(DigestUtils.md5Hex(dashboardReport.getName() + chartDashlet.getName() + measure.getName()),
-                                new MeasureNameHelper(chartDashlet.getName(), measure.getName(), chartDashlet.getDescription()));
+        if (StringUtils.isBlank(dashboard) || StringUtils.isBlank(data)) return;
 
+        final PerfSigMeasureRegistry registry = getMeasureRegistry();
         try {
             final JSONArray gridConfiguration = JSONArray.fromObject(data);
-            final JSONArray dashboardConfiguration = JSONArray.fromObject(getDashboardConfiguration(dashboard));
+            final List<PerfSigGridConfiguration.Tile> dashboardConfiguration = getGridTiles(dashboard);
+            final List<PerfSigGridConfiguration.Tile> tiles = new ArrayList<PerfSigGridConfiguration.Tile>();
             //go through all configured grid items
             for (int i = 0; i < gridConfiguration.size(); i++) {
                 final JSONObject obj = gridConfiguration.getJSONObject(i);
-                final MeasureNameHelper tmp = map.get(obj.getString("id"));
-                if (tmp != null) { //item needs some more information
-                    obj.put("id", DigestUtils.md5Hex(dashboard + tmp.getChartDashlet() + tmp.getMeasure() + obj.getString("customName")));
-                    obj.put("chartDashlet", tmp.getChartDashlet());
-                    obj.put("measure", tmp.getMeasure());
-                    obj.put("description", tmp.getDescription());
+                final PerfSigMeasureRegistry.Entry entry = registry.getEntry(obj.getString("id"));
+                if (entry != null && entry.getDashboard().equals(dashboard) && StringUtils.isEmpty(entry.getCustomName())) {
+                    //new item, needs some more information
+                    obj.put("id", registry.getId(dashboard, entry.getChartDashlet(), entry.getMeasure(), obj.getString("customName")));
+                    obj.put("chartDashlet", entry.getChartDashlet());
+                    obj.put("measure", entry.getMeasure());
+                    obj.put("description", entry.getDescription());
                 } else {
                     //items with custom names need some more information
-                    for (int j = 0; j < dashboardConfiguration.size(); j++) {
-                        final JSONObject jsonObject = dashboardConfiguration.getJSONObject(j);
-                        if (jsonObject.get("id").equals(obj.get("id"))) {
-                            if (!obj.get("id").equals("unittest_overview")) {
-                                obj.put("dashboard", jsonObject.get("dashboard"));
-                                obj.put("chartDashlet", jsonObject.get("chartDashlet"));
-                                obj.put("measure", jsonObject.get("measure"));
-                                obj.put("description", jsonObject.get("description"));
-                                obj.put("aggregation", jsonObject.get("aggregation"));
+                    for (PerfSigGridConfiguration.Tile tile : dashboardConfiguration) {
+                        if (tile.getId().equals(obj.get("id"))) {
+                            if (!tile.isUnitTestOverview()) {
+                                obj.put("dashboard", tile.getDashboard());
+                                obj.put("chartDashlet", tile.getChartDashlet());
+                                obj.put("measure", tile.getMeasure());
+                                obj.put("description", tile.getDescription());
+                                obj.put("aggregation", tile.getAggregation());
                             }
-                            if (StringUtils.isNotBlank(jsonObject.getString("customName")))
-                                obj.put("customName", jsonObject.get("customName"));
-                            if (StringUtils.isNotBlank(jsonObject.getString("customBuildCount")))
-                                obj.put("customBuildCount", jsonObject.get("customBuildCount"));
+                            if (StringUtils.isNotBlank(tile.getCustomName()))
+                                obj.put("customName", tile.getCustomName());
+                            if (StringUtils.isNotBlank(tile.getCustomBuildCount()))
+                                obj.put("customBuildCount", tile.getCustomBuildCount());
                             break;
                         }
                     }
                 }
+                tiles.add(PerfSigGridConfiguration.Tile.fromJSONObject(obj));
             }
 
-            FilePath output = new FilePath(new File(getJsonConfigFilePath() + File.separator + "gridconfig-" + dashboard + ".json"));
-            output.write(gridConfiguration.toString(), null);
-        } catch (InterruptedException e) {
-            e.printStackTrace();
-        } catch (IOException e) {
-            e.printStackTrace();
+            registry.save();
+            PerfSigGridConfiguration.get(job).save(dashboard, tiles);
+            PerfSigChartCache.invalidate(job);
         } catch (Exception e) {
-            e.printStackTrace();
+            LOGGER.severe(ExceptionUtils.getFullStackTrace(e));
         }
     }
 
@@ -503,19 +581,8 @@ public class PerfSigProjectAction extends PerfSigBaseAction implements Prominent
         if (StringUtils.isBlank(dashboard) || StringUtils.isBlank(dashlet)) return;
 
         final Map<String, String> availableMeasures = new HashMap<String, String>();
-        if (StringUtils.isNotBlank(dashlet)) {
-            mainLoop:
-            for (DashboardReport dashboardReport : getLastDashboardReports()) {
-                if (dashboardReport.getName().equals(dashboard)) {
-                    for (ChartDashlet chartDashlet : dashboardReport.getChartDashlets()) {
-                        if (chartDashlet.getName().equals(dashlet)) {
-                            for (Measure measure : chartDashlet.getMeasures())
-                                availableMeasures.put(DigestUtils.md5Hex(dashboardReport.getName() + chartDashlet.getName() + measure.getName()), measure.getName());
-                            break mainLoop;
-                        }
-                    }
-                }
-            }
+        for (PerfSigMeasureRegistry.Entry entry : getMeasureRegistry().getEntries(dashboard, false)) {
+            if (entry.getChartDashlet().equals(dashlet)) availableMeasures.put(entry.getId(), entry.getMeasure());
         }
         JSONObject jsonObject = JSONObject.fromObject(availableMeasures);
         jsonObject.write(response.getWriter());
@@ -542,35 +609,171 @@ public class PerfSigProjectAction extends PerfSigBaseAction implements Prominent
         }
     }
 
-    //ToDo: provide fix to handle new, renamed or deleted measures
+    /**
+     * grid items of measures which are no longer part of the dashboard are left out,
+     * see {@link #getRemovedMeasures(DashboardReport)}
+     */
     public List<ChartDashlet> getFilteredChartDashlets(final DashboardReport dashboardReport) throws IOException, InterruptedException {
         final List<ChartDashlet> chartDashlets = new ArrayList<ChartDashlet>();
-        final String json = getDashboardConfiguration(dashboardReport.getName());
-        if (StringUtils.isBlank(json) || dashboardReport.getChartDashlets() == null) return chartDashlets;
-        final JSONArray jsonArray = JSONArray.fromObject(json);
+        for (ConfiguredMeasure configuredMeasure : getConfiguredMeasures(dashboardReport)) {
+            ChartDashlet d;
+            if (StringUtils.isBlank(configuredMeasure.customName))
+                d = new ChartDashlet(PerfSigUtils.generateTitle(configuredMeasure.measure.getName(), configuredMeasure.chartDashlet.getName()));
+            else
+                d = new ChartDashlet(configuredMeasure.customName);
+            d.addMeasure(configuredMeasure.measure);
+            chartDashlets.add(d);
+        }
+        return chartDashlets;
+    }
+
+    /**
+     * @return the grid items of the dashboard whose measure is not part of the dashboard of the last build anymore,
+     * e.g. because it was renamed or deleted
+     */
+    public List<PerfSigMeasureRegistry.Entry> getRemovedMeasures(final DashboardReport dashboardReport) throws IOException, InterruptedException {
+        final List<PerfSigMeasureRegistry.Entry> removedMeasures = new ArrayList<PerfSigMeasureRegistry.Entry>();
+        final PerfSigMeasureRegistry registry = getMeasureRegistry();
+        for (PerfSigGridConfiguration.Tile tile : getGridTiles(dashboardReport.getName())) {
+            final PerfSigMeasureRegistry.Entry entry = registry.getEntry(tile.getId());
+            if (entry != null && entry.isRemoved()) removedMeasures.add(entry);
+        }
+        return removedMeasures;
+    }
 
-        for (int i = 0; i < jsonArray.size(); i++) {
-            JSONObject obj = jsonArray.getJSONObject(i);
-            String chartDashlet = obj.getString("chartDashlet");
-            String measure = obj.getString("measure");
+    private List<ConfiguredMeasure> getConfiguredMeasures(final DashboardReport dashboardReport) throws IOException, InterruptedException {
+        final List<ConfiguredMeasure> configuredMeasures = new ArrayList<ConfiguredMeasure>();
+        if (dashboardReport.getChartDashlets() == null) return configuredMeasures;
+
+        for (PerfSigGridConfiguration.Tile tile : getGridTiles(dashboardReport.getName())) {
+            String chartDashlet = tile.getChartDashlet();
+            String measure = tile.getMeasure();
 
             for (ChartDashlet dashlet : dashboardReport.getChartDashlets()) {
                 if (dashlet.getName().equals(chartDashlet)) {
                     for (Measure m : dashlet.getMeasures()) {
                         if (m.getName().equals(measure)) {
-                            ChartDashlet d;
-                            if (StringUtils.isBlank(obj.getString("customName")))
-                                d = new ChartDashlet(PerfSigUtils.generateTitle(m.getName(), dashlet.getName()));
-                            else
-                                d = new ChartDashlet(obj.getString("customName"));
-                            d.addMeasure(m);
-                            chartDashlets.add(d);
+                            configuredMeasures.add(new ConfiguredMeasure(dashlet, m, tile.getCustomName()));
                             break;
                         }
                     }
                 }
             }
         }
-        return chartDashlets;
+        return configuredMeasures;
+    }
+
+    private static final class ConfiguredMeasure {
+        private final ChartDashlet chartDashlet;
+        private final Measure measure;
+        private final String customName;
+
+        private ConfiguredMeasure(final ChartDashlet chartDashlet, final Measure measure, final String customName) {
+            this.chartDashlet = chartDashlet;
+            this.measure = measure;
+            this.customName = customName;
+        }
+    }
+
+    /**
+     * category label of the trend charts, only the build number is known without loading the build
+     */
+    private static final class BuildNumberLabel implements Comparable<BuildNumberLabel> {
+        private final int number;
+
+        private BuildNumberLabel(final int number) {
+            this.number = number;
+        }
+
+        public int compareTo(final BuildNumberLabel that) {
+            return this.number - that.number;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            return o instanceof BuildNumberLabel && ((BuildNumberLabel) o).number == number;
+        }
+
+        @Override
+        public int hashCode() {
+            return number;
+        }
+
+        @Override
+        public String toString() {
+            return "#" + number;
+        }
+    }
+
+    /**
+     * a row of the overview table, everything except the PDF links and the JUnit results comes from the trend store
+     */
+    public final class TrendRow {
+        private final PerfSigTrendStore.BuildRow buildRow;
+        private final List<BigDecimal> values;
+        private Run<?, ?> build;
+        private boolean buildLoaded;
+
+        private TrendRow(final PerfSigTrendStore.BuildRow buildRow, final List<BigDecimal> values) {
+            this.buildRow = buildRow;
+            this.values = values;
+        }
+
+        public int getNumber() {
+            return buildRow.getNumber();
+        }
+
+        public Date getTime() {
+            return new Date(buildRow.getTimestamp());
+        }
+
+        /**
+         * loads the build on first use, only needed for the PDF links and JUnit results
+         */
+        public Run<?, ?> getBuild() {
+            if (!buildLoaded) {
+                build = job.getBuildByNumber(buildRow.getNumber());
+                buildLoaded = true;
+            }
+            return build;
+        }
+
+        public List<BigDecimal> getValues() {
+            return values;
+        }
+
+        public List<PerfSigArtifactManifest.Artifact> getComparisonReports(final String testCase) throws IOException {
+            final Run<?, ?> run = getBuild();
+            if (run == null) return Collections.emptyList();
+            return getArtifacts(run, PerfSigArtifactManifest.Type.COMPARISON_REPORT.name(), testCase);
+        }
+
+        public TestResult getTestResult() {
+            return getTestAction(getBuild());
+        }
+
+        public Integer getNumFailed() {
+            return getTestRunValue(0);
+        }
+
+        public Integer getNumDegraded() {
+            return getTestRunValue(1);
+        }
+
+        public Integer getNumImproved() {
+            return getTestRunValue(2);
+        }
+
+        public Integer getNumPassed() {
+            return getTestRunValue(3);
+        }
+
+        public Integer getNumVolatile() {
+            return getTestRunValue(4);
+        }
+
+        private Integer getTestRunValue(final int index) {
+            return buildRow.getTestRun() == null ? null : buildRow.getTestRun()[index];
+        }
     }
 }
@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2014 T-Systems Multimedia Solutions GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.tsystems.mms.apm.performancesignature;
+
+import de.tsystems.mms.apm.performancesignature.dynatrace.model.ChartDashlet;
+import de.tsystems.mms.apm.performancesignature.dynatrace.model.DashboardReport;
+import de.tsystems.mms.apm.performancesignature.dynatrace.model.Measure;
+import hudson.model.Job;
+import hudson.model.Run;
+
+import java.lang.ref.WeakReference;
+import java.util.*;
+
+/**
+ * Project level state derived from the builds of a job: the dashboard reports of the last build with reports,
+ * the measures of these reports and the project action. The state is kept up to date by the {@link PerfSigRunListener}
+ * and the {@link PerfSigCollectionQueue}, the build history is only walked again if the last build with reports
+ * was deleted or a newer build finished without reports.
+ */
+public final class PerfSigProjectState {
+    private static final Map<Job<?, ?>, PerfSigProjectState> STATES = new WeakHashMap<Job<?, ?>, PerfSigProjectState>();
+
+    private final WeakReference<Job<?, ?>> job;
+    private WeakReference<PerfSigProjectAction> projectAction;
+    private boolean stale = true;
+    private int lastBuild;
+    private List<DashboardReport> lastDashboardReports = Collections.emptyList();
+    private Map<String, Measure> measures = Collections.emptyMap();
+
+    private PerfSigProjectState(final Job<?, ?> job) {
+        this.job = new WeakReference<Job<?, ?>>(job);
+    }
+
+    public static PerfSigProjectState get(final Job<?, ?> job) {
+        synchronized (STATES) {
+            PerfSigProjectState state = STATES.get(job);
+            if (state == null) {
+                state = new PerfSigProjectState(job);
+                STATES.put(job, state);
+            }
+            return state;
+        }
+    }
+
+    private static String key(final String dashboard, final String chartDashlet, final String measure) {
+        return dashboard + '\u0000' + chartDashlet.toLowerCase(Locale.ENGLISH) + '\u0000' + measure.toLowerCase(Locale.ENGLISH);
+    }
+
+    /**
+     * @return the project action of the job, shared by all callers as long as it is in use
+     */
+    public synchronized PerfSigProjectAction getProjectAction() {
+        PerfSigProjectAction action = projectAction == null ? null : projectAction.get();
+        if (action == null) {
+            action = new PerfSigProjectAction(job.get());
+            projectAction = new WeakReference<PerfSigProjectAction>(action);
+        }
+        return action;
+    }
+
+    /**
+     * @return the dashboard reports of the last completed build with reports, empty if there is none
+     */
+    public synchronized List<DashboardReport> getLastDashboardReports() {
+        refresh();
+        return lastDashboardReports;
+    }
+
+    /**
+     * @return number of the build the last dashboard reports belong to, 0 if there is none
+     */
+    public synchronized int getLastBuild() {
+        refresh();
+        return lastBuild;
+    }
+
+    /**
+     * @return the measure of the last dashboard reports, the names of dashlet and measure are not case sensitive
+     */
+    public synchronized Measure getMeasure(final String dashboard, final String chartDashlet, final String measure) {
+        refresh();
+        return measures.get(key(dashboard, chartDashlet, measure));
+    }
+
+    /**
+     * @return the measure registry of the job, in sync with the last dashboard reports
+     */
+    public PerfSigMeasureRegistry getMeasureRegistry() {
+        final Job<?, ?> j = job.get();
+        getLastBuild();
+        return PerfSigMeasureRegistry.get(j);
+    }
+
+    /**
+     * takes over the reports of a finished build, called after the build completed or its deferred collection finished
+     */
+    synchronized void completed(final Run<?, ?> run) {
+        final PerfSigBuildAction buildAction = PerfSigBuildAction.getBuildAction(run);
+        if (!stale && buildAction != null && !run.isBuilding() && run.getNumber() > lastBuild) {
+            update(run.getNumber(), buildAction.getDashboardReports());
+        } else if (buildAction == null || run.getNumber() > lastBuild) {
+            stale = true;
+        }
+    }
+
+    synchronized void deleted(final Run<?, ?> run) {
+        if (run.getNumber() == lastBuild) stale = true;
+    }
+
+    private void refresh() {
+        if (!stale) return;
+        final Job<?, ?> j = job.get();
+        if (j == null) return;
+
+        final Run<?, ?> tb = j.getLastSuccessfulBuild();
+        Run<?, ?> b = j.getLastBuild();
+        while (b != null) {
+            PerfSigBuildAction a = PerfSigBuildAction.getBuildAction(b);
+            if (a != null && (!b.isBuilding())) {
+                update(b.getNumber(), a.getDashboardReports());
+                return;
+            }
+            if (b == tb) break;
+            b = b.getPreviousBuild();
+        }
+        lastBuild = 0;
+        lastDashboardReports = Collections.emptyList();
+        measures = Collections.emptyMap();
+        stale = false;
+    }
+
+    private void update(final int number, final List<DashboardReport> dashboardReports) {
+        final Map<String, Measure> index = new HashMap<String, Measure>();
+        for (DashboardReport dashboardReport : dashboardReports) {
+            if (dashboardReport.getChartDashlets() == null) continue;
+            for (ChartDashlet chartDashlet : dashboardReport.getChartDashlets()) {
+                if (chartDashlet.getMeasures() == null) continue;
+                for (Measure measure : chartDashlet.getMeasures()) {
+                    final String key = key(dashboardReport.getName(), chartDashlet.getName(), measure.getName());
+                    if (!index.containsKey(key)) index.put(key, measure);
+                }
+            }
+        }
+        lastBuild = number;
+        lastDashboardReports = dashboardReports;
+        measures = index;
+        stale = false;
+
+        final Job<?, ?> j = job.get();
+        if (j != null) {
+            PerfSigMeasureRegistry.get(j).sync(number, dashboardReports);
+        }
+    }
+}
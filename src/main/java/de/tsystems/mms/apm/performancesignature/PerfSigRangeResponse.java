@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2014 T-Systems Multimedia Solutions GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.tsystems.mms.apm.performancesignature;
+
+import de.tsystems.mms.apm.performancesignature.util.PerfSigUtils;
+import org.apache.commons.lang.StringUtils;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Serves a stored file with support for a single HTTP byte range, so clients can resume large session
+ * downloads or fetch parts of them in parallel. Conditional requests are answered with the ETag and the
+ * modification date of the file, a Range request only applies if the If-Range validator still matches.
+ */
+final class PerfSigRangeResponse {
+    private PerfSigRangeResponse() {
+    }
+
+    /**
+     * @param etag quoted entity tag of the file, may be null
+     */
+    static void serve(final StaplerRequest request, final StaplerResponse response, final File file, final String contentType,
+                      final String etag) throws IOException {
+        if (!file.isFile()) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND, "requested resource not found");
+            return;
+        }
+        final long length = file.length();
+        final long lastModified = file.lastModified();
+
+        if (PerfSigUtils.matchesETag(request.getHeader("If-None-Match"), etag)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        response.setHeader("Accept-Ranges", "bytes");
+        response.setHeader("Content-Disposition", getContentDisposition(file.getName()));
+        response.setDateHeader("Last-Modified", lastModified);
+        if (etag != null) response.setHeader("ETag", etag);
+        response.setContentType(contentType);
+
+        long start = 0, end = length - 1;
+        final String range = request.getHeader("Range");
+        if (range != null && isRangeValid(request.getHeader("If-Range"), etag, lastModified)) {
+            final long[] bounds = parseRange(range, length);
+            if (bounds == null) {
+                response.setHeader("Content-Range", "bytes */" + length);
+                response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return;
+            }
+            if (bounds.length == 2) {
+                start = bounds[0];
+                end = bounds[1];
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader("Content-Range", "bytes " + start + "-" + end + "/" + length);
+            }
+        }
+
+        final long count = end - start + 1;
+        response.setHeader("Content-Length", String.valueOf(count));
+        if ("HEAD".equals(request.getMethod())) return;
+
+        final RandomAccessFile in = new RandomAccessFile(file, "r");
+        try {
+            final FileChannel source = in.getChannel();
+            final OutputStream out = response.getOutputStream();
+            final WritableByteChannel target = Channels.newChannel(out);
+            long position = start;
+            while (position <= end) {
+                final long transferred = source.transferTo(position, end - position + 1, target);
+                if (transferred <= 0) break;
+                position += transferred;
+            }
+            out.flush();
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * @return attachment header with the file name as quoted ASCII fallback and, for other characters,
+     * as RFC 5987 encoded UTF-8 parameter
+     */
+    static String getContentDisposition(final String fileName) throws UnsupportedEncodingException {
+        final StringBuilder fallback = new StringBuilder(fileName.length());
+        final StringBuilder encoded = new StringBuilder(fileName.length());
+        boolean ascii = true;
+        for (int i = 0; i < fileName.length(); i++) {
+            final char c = fileName.charAt(i);
+            if (c < 0x20 || c >= 0x7F) {
+                fallback.append('_');
+                ascii = false;
+            } else {
+                if (c == '"' || c == '\\') fallback.append('\\');
+                fallback.append(c);
+            }
+        }
+        final String header = "attachment; filename=\"" + fallback + '"';
+        if (ascii) return header;
+
+        for (byte b : fileName.getBytes("UTF-8")) {
+            final char c = (char) (b & 0xFF);
+            if (c < 0x80 && (Character.isLetterOrDigit(c) || "!#$&+-.^_`|~".indexOf(c) >= 0)) {
+                encoded.append(c);
+            } else {
+                encoded.append('%').append(String.format("%02X", b & 0xFF));
+            }
+        }
+        return header + "; filename*=UTF-8''" + encoded;
+    }
+
+    private static boolean isRangeValid(final String ifRange, final String etag, final long lastModified) {
+        if (ifRange == null) return true;
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) return ifRange.equals(etag);
+        final SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("GMT"));
+        try {
+            // HTTP dates have a precision of one second
+            return format.parse(ifRange).getTime() == lastModified / 1000 * 1000;
+        } catch (ParseException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return start and end of a single byte range, an empty array if the whole file has to be sent
+     * (several ranges or an invalid header) or null if the range can't be satisfied
+     */
+    static long[] parseRange(final String range, final long length) {
+        if (!range.startsWith("bytes=") || range.indexOf(',') >= 0) return new long[0];
+        final String spec = range.substring("bytes=".length()).trim();
+        final int dash = spec.indexOf('-');
+        if (dash < 0) return new long[0];
+        try {
+            final String first = spec.substring(0, dash).trim(), last = spec.substring(dash + 1).trim();
+            long start, end;
+            if (StringUtils.isEmpty(first)) {
+                // suffix range: the last n bytes
+                if (StringUtils.isEmpty(last)) return new long[0];
+                final long suffix = Long.parseLong(last);
+                if (suffix <= 0) return null;
+                start = Math.max(0, length - suffix);
+                end = length - 1;
+            } else {
+                start = Long.parseLong(first);
+                end = StringUtils.isEmpty(last) ? length - 1 : Math.min(Long.parseLong(last), length - 1);
+            }
+            if (start >= length || start > end) return null;
+            return new long[]{start, end};
+        } catch (NumberFormatException e) {
+            return new long[0];
+        }
+    }
+}
@@ -18,7 +18,11 @@ package de.tsystems.mms.apm.performancesignature;
 
 import de.tsystems.mms.apm.performancesignature.dynatrace.model.*;
 import de.tsystems.mms.apm.performancesignature.dynatrace.rest.DTServerConnection;
+import de.tsystems.mms.apm.performancesignature.dynatrace.rest.DTServerScheduler;
+import de.tsystems.mms.apm.performancesignature.dynatrace.rest.DTServerTransport;
 import de.tsystems.mms.apm.performancesignature.dynatrace.rest.RESTErrorException;
+import de.tsystems.mms.apm.performancesignature.dynatrace.rest.RequestCoalescer;
+import de.tsystems.mms.apm.performancesignature.dynatrace.rest.RequestPriority;
 import de.tsystems.mms.apm.performancesignature.model.*;
 import de.tsystems.mms.apm.performancesignature.model.ConfigurationTestCase.ConfigurationTestCaseDescriptor;
 import de.tsystems.mms.apm.performancesignature.util.PerfSigUtils;
@@ -32,9 +36,11 @@ import hudson.tasks.BuildStepMonitor;
 import hudson.tasks.Publisher;
 import hudson.tasks.Recorder;
 import hudson.util.ListBoxModel;
+import net.sf.json.JSONArray;
 import net.sf.json.JSONObject;
 import org.kohsuke.stapler.DataBoundConstructor;
 import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
 
 import java.io.File;
 import java.io.IOException;
@@ -42,25 +48,58 @@ import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 public class PerfSigRecorder extends Recorder {
     private final String dynatraceProfile;
     private final List<ConfigurationTestCase> configurationTestCases;
     private boolean exportSessions;
+    private boolean deferredCollection;
     private int nonFunctionalFailure;
-    private transient List<String> availableSessions;
 
     @DataBoundConstructor
-    public PerfSigRecorder(final String dynatraceProfile, final boolean exportSessions,
+    public PerfSigRecorder(final String dynatraceProfile, final boolean exportSessions, final boolean deferredCollection,
                            final List<ConfigurationTestCase> configurationTestCases, final JSONObject nonFunctionalFailure) {
         this.dynatraceProfile = dynatraceProfile;
         this.configurationTestCases = configurationTestCases;
         this.nonFunctionalFailure = nonFunctionalFailure.getInt("value");
         this.exportSessions = exportSessions;
+        this.deferredCollection = deferredCollection;
     }
 
     @Override
     public boolean perform(final AbstractBuild<?, ?> build, final Launcher launcher, final BuildListener listener) throws InterruptedException, IOException {
+        if (!deferredCollection) {
+            return collect(build, launcher, listener);
+        }
+
+        final PrintStream logger = listener.getLogger();
+        if (PerfSigUtils.getServerConfiguration(dynatraceProfile) == null)
+            throw new AbortException("failed to lookup Dynatrace server configuration");
+        if (configurationTestCases == null) {
+            throw new AbortException(Messages.PerfSigRecorder_MissingTestCases());
+        }
+        for (ConfigurationTestCase configurationTestCase : getConfigurationTestCases()) {
+            final PerfSigEnvInvisAction buildEnvVars = getBuildEnvVars(build, configurationTestCase.getName());
+            if (buildEnvVars == null) {
+                throw new RESTErrorException("no sessionname found, aborting ...");
+            }
+            logger.println(String.format(Messages.PerfSigRecorder_SessionRecorded(), configurationTestCase.getName(), buildEnvVars.getSessionName()));
+        }
+        PerfSigCollectionQueue.submit(build, this);
+        logger.println(Messages.PerfSigRecorder_CollectionDeferred());
+        return true;
+    }
+
+    /**
+     * waits for the sessions and downloads all reports of the build, called by the build itself
+     * or by the {@link PerfSigCollectionQueue} after the build
+     *
+     * @param launcher not used, may be null
+     */
+    boolean collect(final AbstractBuild<?, ?> build, final Launcher launcher, final BuildListener listener) throws InterruptedException, IOException {
         PrintStream logger = listener.getLogger();
 
         DynatraceServerConfiguration serverConfiguration = PerfSigUtils.getServerConfiguration(dynatraceProfile);
@@ -75,29 +114,20 @@ public class PerfSigRecorder extends Recorder {
             throw new AbortException(Messages.PerfSigRecorder_MissingTestCases());
         }
 
-        DTServerConnection connection = new DTServerConnection(serverConfiguration, pair);
+        final DTServerConnection connection = new DTServerConnection(serverConfiguration, pair);
         logger.println(Messages.PerfSigRecorder_VerifyDTConnection());
         if (!connection.validateConnection()) {
             throw new RESTErrorException(Messages.PerfSigRecorder_DTConnectionError());
         }
 
-        if (serverConfiguration.getDelay() != 0) {
-            logger.println(Messages.PerfSigRecorder_SleepingDelay() + " " + serverConfiguration.getDelay() + " sec");
-            Thread.sleep(serverConfiguration.getDelay() * 1000);
-        }
         logger.println(Messages.PerfSigRecorder_ReportDirectory() + " " + PerfSigUtils.getReportDirectory(build));
 
-        for (BaseConfiguration profile : connection.getSystemProfiles()) {
-            SystemProfile systemProfile = (SystemProfile) profile;
-            if (pair.getProfile().equals(systemProfile.getId()) && systemProfile.isRecording()) {
-                logger.println("session is still recording, trying to stop recording");
-                PerfSigStopRecording stopRecording = new PerfSigStopRecording(dynatraceProfile, false);
-                stopRecording.perform(build, launcher, listener);
-                break;
-            }
+        if (connection.isRecording()) {
+            logger.println("session is still recording, trying to stop recording");
+            PerfSigStopRecording stopRecording = new PerfSigStopRecording(dynatraceProfile, false);
+            stopRecording.perform(build, launcher, listener);
         }
 
-        String sessionName, comparisonSessionName = null, singleFilename, comparisonFilename;
         int comparisonBuildNumber = 0;
         final int buildNumber = build.getNumber();
         final List<DashboardReport> dashboardReports = new ArrayList<DashboardReport>();
@@ -114,76 +144,135 @@ public class PerfSigRecorder extends Recorder {
             logger.println("no previous build found, no comparison possible!");
         }
 
-        for (ConfigurationTestCase configurationTestCase : getConfigurationTestCases()) {
-            if (!configurationTestCase.validate()) {
-                throw new AbortException(Messages.PerfSigRecorder_TestCaseValidationError());
-            }
-            logger.println(String.format(Messages.PerfSigRecorder_ConnectionSuccessful(), configurationTestCase.getName()));
+        final int parallelism = Math.min(serverConfiguration.getParallelRequests(), serverConfiguration.getMaxConnections());
+        final PerfSigReportCollector collector = new PerfSigReportCollector(build.getFullDisplayName(), parallelism, logger);
+        final List<Future<DashboardReport>> reportFutures = new ArrayList<Future<DashboardReport>>();
+        try {
+            for (ConfigurationTestCase configurationTestCase : getConfigurationTestCases()) {
+                if (!configurationTestCase.validate()) {
+                    throw new AbortException(Messages.PerfSigRecorder_TestCaseValidationError());
+                }
 
-            final PerfSigEnvInvisAction buildEnvVars = getBuildEnvVars(build, configurationTestCase.getName());
-            if (buildEnvVars != null) {
-                sessionName = buildEnvVars.getSessionName();
-            } else {
-                throw new RESTErrorException("no sessionname found, aborting ...");
-            }
+                final String sessionName;
+                String comparisonSessionName = null;
+                final PerfSigEnvInvisAction buildEnvVars = getBuildEnvVars(build, configurationTestCase.getName());
+                if (buildEnvVars != null) {
+                    sessionName = buildEnvVars.getSessionName();
+                } else {
+                    throw new RESTErrorException("no sessionname found, aborting ...");
+                }
 
-            if (comparisonBuildNumber != 0) {
-                final PerfSigEnvInvisAction otherEnvVars = getBuildEnvVars(previousRun, configurationTestCase.getName());
-                if (otherEnvVars != null) {
-                    comparisonSessionName = otherEnvVars.getSessionName();
+                if (comparisonBuildNumber != 0) {
+                    final PerfSigEnvInvisAction otherEnvVars = getBuildEnvVars(previousRun, configurationTestCase.getName());
+                    if (otherEnvVars != null) {
+                        comparisonSessionName = otherEnvVars.getSessionName();
+                    }
                 }
-            }
 
-            availableSessions = connection.getSessions();
-            int retryCount = 0;
-            while ((!validateSessionName(sessionName)) && (retryCount < serverConfiguration.getRetryCount())) {
-                retryCount++;
-                availableSessions = connection.getSessions();
-                logger.println(String.format(Messages.PerfSigRecorder_WaitingForSession(), retryCount, serverConfiguration.getRetryCount()));
-                Thread.sleep(10000);
-            }
+                // a failed download of a previous test case fails the build, don't wait for further sessions
+                collector.checkFailure();
+                logger.println(String.format(Messages.PerfSigRecorder_WaitingForSession(), serverConfiguration.getSessionTimeout(), sessionName));
+                final boolean sessionAvailable = PerfSigWait.await(build, logger, "session " + sessionName,
+                        serverConfiguration.getSessionTimeout() * 1000L, new PerfSigWait.Probe() {
+                            public boolean isReady() throws IOException, InterruptedException {
+                                collector.checkFailure();
+                                return connection.isSessionAvailable(sessionName);
+                            }
+                        });
+
+                if (!sessionAvailable) {
+                    throw new RESTErrorException(String.format(Messages.PerfSigRecorder_SessionNotAvailable(), sessionName));
+                }
+                if (comparisonBuildNumber != 0 && !connection.isSessionAvailable(comparisonSessionName)) {
+                    logger.println(String.format(Messages.PerfSigRecorder_ComparisonNotPossible(), comparisonSessionName));
+                }
 
-            if (!validateSessionName(sessionName)) {
-                throw new RESTErrorException(String.format(Messages.PerfSigRecorder_SessionNotAvailable(), sessionName));
+                submitReportTasks(collector, build, connection, serverConfiguration, configurationTestCase, sessionName,
+                        comparisonSessionName, comparisonBuildNumber, reportFutures);
             }
-            if (comparisonBuildNumber != 0 && !validateSessionName(comparisonSessionName)) {
-                logger.println(String.format(Messages.PerfSigRecorder_ComparisonNotPossible(), comparisonSessionName));
+            collector.awaitAll();
+        } finally {
+            collector.cancel();
+        }
+
+        for (Future<DashboardReport> reportFuture : reportFutures) {
+            final DashboardReport dashboardReport;
+            try {
+                dashboardReport = reportFuture.get();
+            } catch (ExecutionException e) {
+                throw new IOException(e.getCause());
             }
+            dashboardReports.add(dashboardReport);
+            evaluateIncidents(build, dashboardReport, logger);
+        }
 
-            for (Dashboard singleDashboard : configurationTestCase.getSingleDashboards()) {
-                singleFilename = "Singlereport_" + sessionName + "_" + singleDashboard.getName() + ".pdf";
-                logger.println(Messages.PerfSigRecorder_GettingPDFReport() + " " + singleFilename);
-                boolean singleResult = connection.getPDFReport(sessionName, null, singleDashboard.getName(),
-                        new File(PerfSigUtils.getReportDirectory(build), File.separator + singleFilename));
-                if (!singleResult) {
-                    throw new RESTErrorException(Messages.PerfSigRecorder_SingleReportError());
-                }
+        build.addAction(new PerfSigBuildAction(build, dashboardReports));
+        PerfSigTrendStore.get(build.getProject()).recordDashboardReports(build, dashboardReports);
+        return true;
+    }
+
+    private void submitReportTasks(final PerfSigReportCollector collector, final AbstractBuild<?, ?> build, final DTServerConnection connection,
+                                   final DynatraceServerConfiguration serverConfiguration, final ConfigurationTestCase configurationTestCase,
+                                   final String sessionName, final String comparisonSessionName, final int comparisonBuildNumber,
+                                   final List<Future<DashboardReport>> reportFutures) throws IOException {
+        final File reportDirectory = PerfSigUtils.getReportDirectory(build);
+
+        collector.submit(new PerfSigReportCollector.Task<Void>() {
+            public Void call(final PrintStream logger) {
+                logger.println(String.format(Messages.PerfSigRecorder_ConnectionSuccessful(), configurationTestCase.getName()));
+                return null;
             }
-            for (Dashboard comparisonDashboard : configurationTestCase.getComparisonDashboards()) {
-                if (comparisonBuildNumber != 0 && comparisonSessionName != null) {
-                    comparisonFilename = "Comparisonreport_" + comparisonSessionName.replace(comparisonBuildNumber + "_",
-                            buildNumber + "_" + comparisonBuildNumber + "_") + "_" + comparisonDashboard.getName() + ".pdf";
-                    logger.println(Messages.PerfSigRecorder_GettingPDFReport() + " " + comparisonFilename);
-                    boolean comparisonResult = connection.getPDFReport(sessionName, comparisonSessionName, comparisonDashboard.getName(),
-                            new File(PerfSigUtils.getReportDirectory(build), File.separator + comparisonFilename));
-                    if (!comparisonResult) {
-                        throw new RESTErrorException(Messages.PerfSigRecorder_ComparisonReportError());
+        });
+
+        for (final Dashboard singleDashboard : configurationTestCase.getSingleDashboards()) {
+            collector.submit(new PerfSigReportCollector.Task<Void>() {
+                public Void call(final PrintStream logger) throws IOException {
+                    String singleFilename = "Singlereport_" + sessionName + "_" + singleDashboard.getName() + ".pdf";
+                    logger.println(Messages.PerfSigRecorder_GettingPDFReport() + " " + singleFilename);
+                    final File singleFile = new File(reportDirectory, File.separator + singleFilename);
+                    boolean singleResult = connection.getPDFReport(sessionName, null, singleDashboard.getName(), singleFile, logger);
+                    if (!singleResult) {
+                        throw new RESTErrorException(Messages.PerfSigRecorder_SingleReportError());
                     }
+                    PerfSigArtifactManifest.get(build).add(PerfSigArtifactManifest.Type.SINGLE_REPORT, configurationTestCase.getName(), singleFile);
+                    return null;
                 }
+            });
+        }
+        for (final Dashboard comparisonDashboard : configurationTestCase.getComparisonDashboards()) {
+            if (comparisonBuildNumber != 0 && comparisonSessionName != null) {
+                collector.submit(new PerfSigReportCollector.Task<Void>() {
+                    public Void call(final PrintStream logger) throws IOException {
+                        String comparisonFilename = "Comparisonreport_" + comparisonSessionName.replace(comparisonBuildNumber + "_",
+                                build.getNumber() + "_" + comparisonBuildNumber + "_") + "_" + comparisonDashboard.getName() + ".pdf";
+                        logger.println(Messages.PerfSigRecorder_GettingPDFReport() + " " + comparisonFilename);
+                        final File comparisonFile = new File(reportDirectory, File.separator + comparisonFilename);
+                        boolean comparisonResult = connection.getPDFReport(sessionName, comparisonSessionName, comparisonDashboard.getName(),
+                                comparisonFile, logger);
+                        if (!comparisonResult) {
+                            throw new RESTErrorException(Messages.PerfSigRecorder_ComparisonReportError());
+                        }
+                        PerfSigArtifactManifest.get(build).add(PerfSigArtifactManifest.Type.COMPARISON_REPORT, configurationTestCase.getName(),
+                                comparisonFile);
+                        return null;
+                    }
+                });
             }
-            logger.println(Messages.PerfSigRecorder_ParseXMLReport());
-            final DashboardReport dashboardReport = connection.getDashboardReportFromXML(configurationTestCase.getXmlDashboard(), sessionName, configurationTestCase.getName());
-            if (dashboardReport == null || dashboardReport.getChartDashlets() == null || dashboardReport.getChartDashlets().isEmpty()) {
-                throw new RESTErrorException(Messages.PerfSigRecorder_XMLReportError());
-            } else {
+        }
+
+        reportFutures.add(collector.submit(new PerfSigReportCollector.Task<DashboardReport>() {
+            public DashboardReport call(final PrintStream logger) throws RESTErrorException {
+                logger.println(Messages.PerfSigRecorder_ParseXMLReport());
+                final DashboardReport dashboardReport = connection.getDashboardReportFromXML(configurationTestCase.getXmlDashboard(), sessionName, configurationTestCase.getName());
+                if (dashboardReport == null || dashboardReport.getChartDashlets() == null || dashboardReport.getChartDashlets().isEmpty()) {
+                    throw new RESTErrorException(Messages.PerfSigRecorder_XMLReportError());
+                }
                 dashboardReport.setUnitTest(configurationTestCase instanceof UnitTestCase);
                 ClientLinkGenerator clientLink = new ClientLinkGenerator(serverConfiguration.getPort(), serverConfiguration.getProtocol(),
                         serverConfiguration.getHost(), configurationTestCase.getXmlDashboard(), sessionName, configurationTestCase.getClientDashboard());
                 dashboardReport.setClientLink(clientLink);
-                dashboardReports.add(dashboardReport);
 
                 List<IncidentChart> incidents = dashboardReport.getIncidents();
-                int numWarning = 0, numSevere = 0;
                 if (incidents != null && incidents.size() > 0) {
                     logger.println("following incidents occured:");
                     for (IncidentChart incident : incidents) {
@@ -191,61 +280,86 @@ public class PerfSigRecorder extends Recorder {
                             switch (violation.getSeverity()) {
                                 case SEVERE:
                                     logger.println("severe incident:     " + incident.getRule() + " " + violation.getRule() + " " + violation.getDescription());
-                                    numSevere++;
                                     break;
                                 case WARNING:
                                     logger.println("warning incident:    " + incident.getRule() + " " + violation.getRule() + " " + violation.getDescription());
-                                    numWarning++;
                                     break;
                                 default:
                                     break;
                             }
                         }
                     }
-
-                    switch (nonFunctionalFailure) {
-                        case 1:
-                            if (numSevere > 0) {
-                                logger.println("build's status was set to 'failed' due to severe incidents");
-                                build.setResult(Result.FAILURE);
-                            }
-                            break;
-                        case 2:
-                            if (numSevere > 0 || numWarning > 0) {
-                                logger.println("build's status was set to 'failed' due to warning/severe incidents");
-                                build.setResult(Result.FAILURE);
-                            }
-                            break;
-                        case 3:
-                            if (numSevere > 0) {
-                                logger.println("build's status was set to 'unstable' due to severe incidents");
-                                build.setResult(Result.UNSTABLE);
-                            }
-                            break;
-                        case 4:
-                            if (numSevere > 0 || numWarning > 0) {
-                                logger.println("build's status was set to 'unstable' due to warning/severe incidents");
-                                build.setResult(Result.UNSTABLE);
-                            }
-                            break;
-                        default:
-                            break;
-                    }
                 }
+                return dashboardReport;
             }
+        }));
+
+        if (exportSessions) {
+            collector.submit(new PerfSigReportCollector.Task<Void>() {
+                public Void call(final PrintStream logger) throws IOException {
+                    final File sessionFile = new File(reportDirectory + File.separator + sessionName + ".dts");
+                    boolean exportedSession = connection.downloadSession(sessionName, sessionFile, logger);
+                    if (!exportedSession) {
+                        throw new RESTErrorException(Messages.PerfSigRecorder_SessionDownloadError());
+                    } else {
+                        PerfSigArtifactManifest.get(build).add(PerfSigArtifactManifest.Type.SESSION, configurationTestCase.getName(), sessionFile);
+                        logger.println(Messages.PerfSigRecorder_SessionDownloadSuccessful());
+                    }
+                    return null;
+                }
+            });
+        }
+    }
 
-            if (exportSessions) {
-                boolean exportedSession = connection.downloadSession(sessionName, new File(PerfSigUtils.getReportDirectory(build) + File.separator + sessionName + ".dts"));
-                if (!exportedSession) {
-                    throw new RESTErrorException(Messages.PerfSigRecorder_SessionDownloadError());
-                } else {
-                    logger.println(Messages.PerfSigRecorder_SessionDownloadSuccessful());
+    private void evaluateIncidents(final AbstractBuild<?, ?> build, final DashboardReport dashboardReport, final PrintStream logger) {
+        List<IncidentChart> incidents = dashboardReport.getIncidents();
+        if (incidents == null || incidents.isEmpty()) {
+            return;
+        }
+        int numWarning = 0, numSevere = 0;
+        for (IncidentChart incident : incidents) {
+            for (IncidentViolation violation : incident.getViolations()) {
+                switch (violation.getSeverity()) {
+                    case SEVERE:
+                        numSevere++;
+                        break;
+                    case WARNING:
+                        numWarning++;
+                        break;
+                    default:
+                        break;
                 }
             }
         }
 
-        build.addAction(new PerfSigBuildAction(build, dashboardReports));
-        return true;
+        switch (nonFunctionalFailure) {
+            case 1:
+                if (numSevere > 0) {
+                    logger.println("build's status was set to 'failed' due to severe incidents");
+                    build.setResult(Result.FAILURE);
+                }
+                break;
+            case 2:
+                if (numSevere > 0 || numWarning > 0) {
+                    logger.println("build's status was set to 'failed' due to warning/severe incidents");
+                    build.setResult(Result.FAILURE);
+                }
+                break;
+            case 3:
+                if (numSevere > 0) {
+                    logger.println("build's status was set to 'unstable' due to severe incidents");
+                    build.setResult(Result.UNSTABLE);
+                }
+                break;
+            case 4:
+                if (numSevere > 0 || numWarning > 0) {
+                    logger.println("build's status was set to 'unstable' due to warning/severe incidents");
+                    build.setResult(Result.UNSTABLE);
+                }
+                break;
+            default:
+                break;
+        }
     }
 
     private PerfSigEnvInvisAction getBuildEnvVars(final Run<?, ?> build, final String testCase) {
@@ -257,13 +371,9 @@ public class PerfSigRecorder extends Recorder {
         return null;
     }
 
-    private boolean validateSessionName(final String name) {
-        return availableSessions.contains(name);
-    }
-
     @Override
     public Action getProjectAction(final AbstractProject<?, ?> project) {
-        return new PerfSigProjectAction(project);
+        return PerfSigProjectState.get(project).getProjectAction();
     }
 
     public BuildStepMonitor getRequiredMonitorService() {
@@ -274,6 +384,10 @@ public class PerfSigRecorder extends Recorder {
         return exportSessions;
     }
 
+    public boolean isDeferredCollection() {
+        return deferredCollection;
+    }
+
     public List<ConfigurationTestCase> getConfigurationTestCases() {
         return configurationTestCases == null ? Collections.<ConfigurationTestCase>emptyList() : configurationTestCases;
     }
@@ -289,6 +403,7 @@ public class PerfSigRecorder extends Recorder {
     @Extension
     public static final class DescriptorImpl extends BuildStepDescriptor<Publisher> {
         public static final boolean defaultExportSessions = true;
+        public static final boolean defaultDeferredCollection = false;
         public static final int defaultNonFunctionalFailure = 0;
         private List<DynatraceServerConfiguration> configurations = new ArrayList<DynatraceServerConfiguration>();
 
@@ -299,6 +414,8 @@ public class PerfSigRecorder extends Recorder {
         @Override
         public boolean configure(final StaplerRequest req, final JSONObject formData) throws FormException {
             configurations = req.bindJSONToList(DynatraceServerConfiguration.class, formData.get("configurations"));
+            DTServerTransport.invalidateAll();
+            DTServerConnection.invalidateCatalogs();
             save();
             return false;
         }
@@ -322,5 +439,79 @@ public class PerfSigRecorder extends Recorder {
         public DescriptorExtensionList<ConfigurationTestCase, Descriptor<ConfigurationTestCase>> getTestCaseTypes() {
             return ConfigurationTestCaseDescriptor.all();
         }
+
+        /**
+         * runtime statistics of the plugin as JSON, only visible for administrators
+         */
+        public void doStatistics(final StaplerRequest request, final StaplerResponse response) throws IOException {
+            PerfSigUtils.getInstanceOrDie().checkPermission(Hudson.ADMINISTER);
+
+            final JSONObject coalescedRequests = new JSONObject();
+            coalescedRequests.put("executed", RequestCoalescer.getExecuted());
+            coalescedRequests.put("shared", RequestCoalescer.getShared());
+            coalescedRequests.put("inFlight", RequestCoalescer.getInFlight());
+
+            final JSONObject deferredCollections = new JSONObject();
+            deferredCollections.put("queued", PerfSigCollectionQueue.getQueued());
+            deferredCollections.put("running", PerfSigCollectionQueue.getRunning());
+
+            final JSONObject chartRendering = new JSONObject();
+            chartRendering.put("threads", PerfSigChartRenderer.THREADS);
+            chartRendering.put("queued", PerfSigChartRenderer.getQueued());
+            chartRendering.put("inFlight", PerfSigChartRenderer.getInFlight());
+            chartRendering.put("rendered", PerfSigChartRenderer.getRendered());
+            chartRendering.put("shared", PerfSigChartRenderer.getShared());
+            chartRendering.put("rejected", PerfSigChartRenderer.getRejected());
+            chartRendering.put("renderTime", toJSON(PerfSigChartRenderer.getRenderTimes()));
+            chartRendering.put("queueTime", toJSON(PerfSigChartRenderer.getQueueTimes()));
+
+            final JSONArray servers = new JSONArray();
+            for (DTServerTransport transport : DTServerTransport.getTransports()) {
+                final DTServerScheduler scheduler = transport.getScheduler();
+                final JSONObject lanes = new JSONObject();
+                for (RequestPriority priority : RequestPriority.values()) {
+                    final JSONObject lane = new JSONObject();
+                    lane.put("queueDepth", scheduler.getQueueDepth(priority));
+                    lane.put("admitted", scheduler.getAdmitted(priority));
+                    lane.put("averageWait", scheduler.getAverageWait(priority));
+                    lane.put("maxWait", scheduler.getMaxWait(priority));
+                    lane.put("queueTimeout", DTServerScheduler.getQueueTimeout(priority));
+                    lanes.put(priority.name().toLowerCase(Locale.ENGLISH), lane);
+                }
+                final JSONObject server = new JSONObject();
+                server.put("address", scheduler.getAddress());
+                server.put("maxInFlight", scheduler.getMaxInFlight());
+                server.put("inFlight", scheduler.getInFlight());
+                server.put("lanes", lanes);
+                server.put("timeouts", scheduler.getTimeouts());
+                server.put("circuit", scheduler.getCircuitState().name());
+                server.put("consecutiveFailures", scheduler.getConsecutiveFailures());
+                server.put("circuitOpened", scheduler.getCircuitOpened());
+                server.put("rejected", scheduler.getRejected());
+                servers.add(server);
+            }
+
+            final JSONObject statistics = new JSONObject();
+            statistics.put("coalescedRequests", coalescedRequests);
+            statistics.put("servers", servers);
+            statistics.put("deferredCollections", deferredCollections);
+            statistics.put("chartRendering", chartRendering);
+
+            response.setContentType("application/json;charset=UTF-8");
+            statistics.write(response.getWriter());
+        }
+
+        /**
+         * @return percentiles of the recorded durations in ms
+         */
+        private static JSONObject toJSON(final PerfSigChartRenderer.Latencies latencies) {
+            final JSONObject jsonObject = new JSONObject();
+            jsonObject.put("count", latencies.getCount());
+            jsonObject.put("p50", latencies.getPercentile(50));
+            jsonObject.put("p90", latencies.getPercentile(90));
+            jsonObject.put("p99", latencies.getPercentile(99));
+            jsonObject.put("max", latencies.getPercentile(100));
+            return jsonObject;
+        }
     }
 }
@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) 2014 T-Systems Multimedia Solutions GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.tsystems.mms.apm.performancesignature;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the report downloads of one build on a bounded number of threads.
+ * Every task logs into its own buffer; the buffers are copied to the build log in submission order,
+ * so the console output stays grouped per test case. The task whose turn it is writes straight to the
+ * build log, so the progress of a long download shows up while it runs. The first failing task cancels all others.
+ */
+final class PerfSigReportCollector {
+    private static final String ENCODING = "UTF-8";
+    private final ExecutorService executor;
+    private final PrintStream logger;
+    private final List<CollectorTask<?>> tasks = new ArrayList<CollectorTask<?>>();
+    private final BlockingQueue<CollectorTask<?>> completed = new LinkedBlockingQueue<CollectorTask<?>>();
+    private int flushed;
+
+    PerfSigReportCollector(final String name, final int parallelism, final PrintStream logger) {
+        this.logger = logger;
+        this.executor = Executors.newFixedThreadPool(Math.max(1, parallelism), new ThreadFactory() {
+            private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+            public Thread newThread(final Runnable r) {
+                Thread thread = new Thread(r, "PerfSig report collector " + name + " #" + threadNumber.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    private static void rethrow(final Throwable cause) throws IOException {
+        if (cause instanceof IOException) {
+            throw (IOException) cause;
+        } else if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        } else if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        throw new IOException(cause.getMessage(), cause);
+    }
+
+    <T> Future<T> submit(final Task<T> task) {
+        CollectorTask<T> collectorTask = new CollectorTask<T>(task, new TaskOutput());
+        tasks.add(collectorTask);
+        flushCompleted();
+        executor.execute(collectorTask);
+        return collectorTask;
+    }
+
+    /**
+     * waits until all submitted tasks are finished. If one task fails, the remaining ones are cancelled
+     * and the failure is rethrown.
+     */
+    void awaitAll() throws IOException, InterruptedException {
+        Throwable failure = null;
+        try {
+            for (int pending = tasks.size(); pending > 0; pending--) {
+                CollectorTask<?> task = completed.take();
+                try {
+                    task.get();
+                } catch (ExecutionException e) {
+                    failure = e.getCause();
+                    break;
+                }
+                flushCompleted();
+            }
+        } finally {
+            if (failure != null || flushed < tasks.size()) {
+                cancel();
+                for (CollectorTask<?> task : tasks.subList(flushed, tasks.size())) {
+                    if (task.isDone() && !task.isCancelled()) task.output.writeToLog();
+                }
+            }
+            executor.shutdown();
+        }
+        if (failure != null) rethrow(failure);
+    }
+
+    /**
+     * stops early if a submitted task already failed: the remaining tasks are cancelled and the failure is rethrown,
+     * see {@link #awaitAll()}
+     */
+    void checkFailure() throws IOException, InterruptedException {
+        flushCompleted();
+        for (CollectorTask<?> task : tasks) {
+            if (task.isDone() && !task.isCancelled()) {
+                try {
+                    task.get();
+                } catch (ExecutionException e) {
+                    awaitAll();
+                }
+            }
+        }
+    }
+
+    void cancel() {
+        for (CollectorTask<?> task : tasks) {
+            task.cancel(true);
+        }
+        executor.shutdownNow();
+    }
+
+    /**
+     * copies the output of the finished tasks in submission order and lets the next task write to the build log
+     */
+    private void flushCompleted() {
+        while (flushed < tasks.size() && tasks.get(flushed).isDone()) {
+            tasks.get(flushed).output.writeToLog();
+            flushed++;
+        }
+        if (flushed < tasks.size()) {
+            tasks.get(flushed).output.writeToLog();
+        }
+    }
+
+    interface Task<T> {
+        T call(PrintStream logger) throws Exception;
+    }
+
+    private final class CollectorTask<T> extends FutureTask<T> {
+        private final TaskOutput output;
+
+        CollectorTask(final Task<T> task, final TaskOutput output) {
+            super(new Callable<T>() {
+                public T call() throws Exception {
+                    PrintStream taskLogger = new PrintStream(output, true, ENCODING);
+                    try {
+                        return task.call(taskLogger);
+                    } finally {
+                        taskLogger.flush();
+                    }
+                }
+            });
+            this.output = output;
+        }
+
+        @Override
+        protected void done() {
+            completed.add(this);
+        }
+    }
+
+    /**
+     * buffers the output of a task until {@link #writeToLog()} is called, from then on every flushed line
+     * is written to the build log right away
+     */
+    private final class TaskOutput extends OutputStream {
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        private boolean live;
+
+        @Override
+        public synchronized void write(final int b) {
+            buffer.write(b);
+        }
+
+        @Override
+        public synchronized void write(final byte[] b, final int off, final int len) {
+            buffer.write(b, off, len);
+        }
+
+        @Override
+        public synchronized void flush() {
+            if (live) copyBuffer();
+        }
+
+        synchronized void writeToLog() {
+            live = true;
+            copyBuffer();
+        }
+
+        private void copyBuffer() {
+            if (buffer.size() == 0) return;
+            try {
+                logger.print(buffer.toString(ENCODING));
+            } catch (UnsupportedEncodingException ignored) {
+            }
+            buffer.reset();
+        }
+    }
+}
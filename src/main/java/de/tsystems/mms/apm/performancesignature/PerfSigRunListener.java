@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2014 T-Systems Multimedia Solutions GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.tsystems.mms.apm.performancesignature;
+
+import hudson.Extension;
+import hudson.model.AbstractProject;
+import hudson.model.BaseBuildableProject;
+import hudson.model.Job;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.model.listeners.RunListener;
+import hudson.tasks.Builder;
+
+/**
+ * keeps the job level data of the plugin in sync with the builds, builds of jobs without PerfSig steps are ignored
+ */
+@Extension
+public class PerfSigRunListener extends RunListener<Run<?, ?>> {
+    private static boolean isPerfSigRun(final Run<?, ?> run) {
+        if (run.getAction(PerfSigBuildAction.class) != null || run.getAction(PerfSigTestDataWrapper.class) != null) {
+            return true;
+        }
+        final Job<?, ?> job = run.getParent();
+        if (job instanceof AbstractProject && ((AbstractProject<?, ?>) job).getPublishersList().get(PerfSigRecorder.class) != null) {
+            return true;
+        }
+        if (job instanceof BaseBuildableProject) {
+            for (Builder builder : ((BaseBuildableProject<?, ?>) job).getBuilders()) {
+                if (builder instanceof PerfSigStartRecording || builder instanceof PerfSigStopRecording
+                        || builder instanceof PerfSigActivateConfiguration || builder instanceof PerfSigMemoryDump
+                        || builder instanceof PerfSigThreadDump) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void onCompleted(final Run<?, ?> run, final TaskListener listener) {
+        if (!isPerfSigRun(run)) return;
+        if (run.getAction(PerfSigTestDataWrapper.class) != null) {
+            PerfSigTrendStore.get(run.getParent()).recordTestRun(run);
+        }
+        PerfSigProjectState.get(run.getParent()).completed(run);
+        PerfSigChartCache.invalidate(run.getParent());
+    }
+
+    @Override
+    public void onDeleted(final Run<?, ?> run) {
+        if (!isPerfSigRun(run)) return;
+        if (run.getAction(PerfSigBuildAction.class) != null || run.getAction(PerfSigTestDataWrapper.class) != null) {
+            PerfSigTrendStore.get(run.getParent()).delete(run.getNumber());
+            PerfSigMeasureRegistry.get(run.getParent()).buildDeleted(run.getNumber());
+        }
+        PerfSigProjectState.get(run.getParent()).deleted(run);
+        PerfSigChartCache.invalidate(run.getParent());
+    }
+}
@@ -16,8 +16,6 @@
 
 package de.tsystems.mms.apm.performancesignature;
 
-import de.tsystems.mms.apm.performancesignature.dynatrace.model.BaseConfiguration;
-import de.tsystems.mms.apm.performancesignature.dynatrace.model.SystemProfile;
 import de.tsystems.mms.apm.performancesignature.dynatrace.rest.DTServerConnection;
 import de.tsystems.mms.apm.performancesignature.dynatrace.rest.RESTErrorException;
 import de.tsystems.mms.apm.performancesignature.model.CredProfilePair;
@@ -70,14 +68,10 @@ public class PerfSigStartRecording extends Builder {
             throw new RESTErrorException(Messages.PerfSigRecorder_DTConnectionError());
         }
 
-        for (BaseConfiguration profile : connection.getSystemProfiles()) {
-            SystemProfile systemProfile = (SystemProfile) profile;
-            if (pair.getProfile().equals(systemProfile.getId()) && systemProfile.isRecording()) {
-                logger.println("another session is still recording, trying to stop recording");
-                PerfSigStopRecording stopRecording = new PerfSigStopRecording(dynatraceProfile, false);
-                stopRecording.perform(build, launcher, listener);
-                break;
-            }
+        if (connection.isRecording()) {
+            logger.println("another session is still recording, trying to stop recording");
+            PerfSigStopRecording stopRecording = new PerfSigStopRecording(dynatraceProfile, false);
+            stopRecording.perform(build, launcher, listener);
         }
 
         logger.println("registering new TestRun");
@@ -37,8 +37,6 @@ import java.io.IOException;
 import java.io.PrintStream;
 
 public class PerfSigStopRecording extends Builder {
-    private static final int reanalyzeSessionTimeout = 60000; //==1 minute
-    private static final int reanalyzeSessionPollingInterval = 5000; //==5 seconds
     private final String dynatraceProfile;
     private boolean reanalyzeSession;
 
@@ -63,25 +61,20 @@ public class PerfSigStopRecording extends Builder {
 
         final DTServerConnection connection = new DTServerConnection(serverConfiguration, pair);
 
-        String sessionName = connection.stopRecording();
+        final String sessionName = connection.stopRecording();
         if (StringUtils.isBlank(sessionName))
             throw new RESTErrorException(Messages.PerfSigStopRecording_InternalError());
         logger.println(String.format("stopped recording on %s with SessionName %s", pair.getProfile(), sessionName));
 
         if (getReanalyzeSession()) {
             logger.println("reanalyze session ...");
-            boolean reanalyzeFinished = connection.reanalyzeSessionStatus(sessionName);
             if (connection.reanalyzeSession(sessionName)) {
-                int timeout = reanalyzeSessionTimeout;
-                while ((!reanalyzeFinished) && (timeout > 0)) {
-                    logger.println("querying session analysis status");
-                    try {
-                        Thread.sleep(reanalyzeSessionPollingInterval);
-                        timeout -= reanalyzeSessionPollingInterval;
-                    } catch (InterruptedException ignored) {
-                    }
-                    reanalyzeFinished = connection.reanalyzeSessionStatus(sessionName);
-                }
+                boolean reanalyzeFinished = PerfSigWait.await(build, logger, "reanalysis of session " + sessionName,
+                        serverConfiguration.getDumpTimeout() * 1000L, new PerfSigWait.Probe() {
+                            public boolean isReady() throws IOException {
+                                return connection.reanalyzeSessionStatus(sessionName);
+                            }
+                        });
                 if (reanalyzeFinished) {
                     logger.println("session reanalysis finished");
                 } else {
@@ -26,20 +26,14 @@ import java.util.Date;
 public class PerfSigTestAction extends TestAction {
     private static long timestamp;
     private final PerfSigTestData testData;
-    private TestRun matchingTestRun;
-    private TestResult matchingTestResult;
+    private final String packageName, fullName;
+    private PerfSigTestData.IndexedTestResult match;
+    private boolean resolved;
 
     public PerfSigTestAction(final PerfSigTestData testData, final String packageName, final String fullName) {
         this.testData = testData;
-
-        for (TestRun testRun : testData.getTestRuns()) {
-            for (TestResult testResult : testRun.getTestResults()) {
-                if (testResult.getPackageName().equalsIgnoreCase(packageName) && testResult.getName().equalsIgnoreCase(fullName)) {
-                    this.matchingTestRun = testRun;
-                    this.matchingTestResult = testResult;
-                }
-            }
-        }
+        this.packageName = packageName;
+        this.fullName = fullName;
     }
 
     public static boolean getResourcesLoaded() {
@@ -51,15 +45,24 @@ public class PerfSigTestAction extends TestAction {
         return true;
     }
 
+    /**
+     * the matching test result is looked up on first access, most actions created for a test report are never rendered
+     */
+    private synchronized PerfSigTestData.IndexedTestResult getMatch() {
+        if (!resolved) {
+            match = testData.getTestResult(packageName, fullName);
+            resolved = true;
+        }
+        return match;
+    }
+
     public TestResult getPreviousTestResult() {
         PerfSigTestData previousData = testData.getPreviousData();
-        if (previousData != null) {
-            for (TestRun testRun : previousData.getTestRuns()) {
-                for (TestResult testResult : testRun.getTestResults()) {
-                    if (testResult.getPackageName().equals(matchingTestResult.getPackageName()) && testResult.getName().equals(matchingTestResult.getName())) {
-                        return testResult;
-                    }
-                }
+        TestResult matchingTestResult = getMatchingTestResult();
+        if (previousData != null && matchingTestResult != null) {
+            PerfSigTestData.IndexedTestResult previous = previousData.getTestResult(matchingTestResult.getPackageName(), matchingTestResult.getName());
+            if (previous != null) {
+                return previous.getTestResult();
             }
         }
         return null;
@@ -70,11 +73,13 @@ public class PerfSigTestAction extends TestAction {
     }
 
     public TestRun getMatchingTestRun() {
-        return matchingTestRun;
+        PerfSigTestData.IndexedTestResult indexedTestResult = getMatch();
+        return indexedTestResult == null ? null : indexedTestResult.getTestRun();
     }
 
     public TestResult getMatchingTestResult() {
-        return matchingTestResult;
+        PerfSigTestData.IndexedTestResult indexedTestResult = getMatch();
+        return indexedTestResult == null ? null : indexedTestResult.getTestResult();
     }
 
     @Override
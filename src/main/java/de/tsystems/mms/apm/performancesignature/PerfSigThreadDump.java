@@ -41,8 +41,6 @@ import java.io.PrintStream;
 import java.util.List;
 
 public class PerfSigThreadDump extends Builder {
-    private static final int waitForDumpTimeout = 60000;
-    private static final int waitForDumpPollingInterval = 5000;
     private final String dynatraceProfile, agent, host;
     private boolean lockSession;
 
@@ -76,13 +74,13 @@ public class PerfSigThreadDump extends Builder {
                 String threadDump = connection.threadDump(agent.getName(), agent.getHost(), agent.getProcessId(), getLockSession());
                 if (StringUtils.isBlank(threadDump))
                     throw new RESTErrorException("thread dump wasn't taken");
-                int timeout = waitForDumpTimeout;
-                boolean dumpFinished = connection.threadDumpStatus(threadDump).isResultValueTrue();
-                while ((!dumpFinished) && (timeout > 0)) {
-                    Thread.sleep(waitForDumpPollingInterval);
-                    timeout -= waitForDumpPollingInterval;
-                    dumpFinished = connection.threadDumpStatus(threadDump).isResultValueTrue();
-                }
+                final String dump = threadDump;
+                boolean dumpFinished = PerfSigWait.await(build, logger, "thread dump " + threadDump, serverConfiguration.getDumpTimeout() * 1000L,
+                        new PerfSigWait.Probe() {
+                            public boolean isReady() throws IOException {
+                                return connection.threadDumpStatus(dump).isResultValueTrue();
+                            }
+                        });
                 if (dumpFinished) {
                     logger.println(Messages.PerfSigThreadDump_SuccessfullyCreatedThreadDump() + agent.getName());
                     return true;
@@ -0,0 +1,877 @@
+/*
+ * Copyright (c) 2014 T-Systems Multimedia Solutions GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.tsystems.mms.apm.performancesignature;
+
+import de.tsystems.mms.apm.performancesignature.dynatrace.model.ChartDashlet;
+import de.tsystems.mms.apm.performancesignature.dynatrace.model.DashboardReport;
+import de.tsystems.mms.apm.performancesignature.dynatrace.model.Measure;
+import de.tsystems.mms.apm.performancesignature.dynatrace.model.TestRun;
+import de.tsystems.mms.apm.performancesignature.util.PerfSigUtils;
+import hudson.model.Job;
+import hudson.model.Run;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.CountingInputStream;
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.exception.ExceptionUtils;
+
+import java.io.*;
+import java.lang.ref.WeakReference;
+import java.util.*;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Append-only store of the aggregated measure values of all builds of a job.
+ * The project charts read the values of the requested builds from here instead of loading every build.
+ * <p>
+ * The file consists of records: measure key definitions, one measure record and one test run record per build
+ * and delete markers. The offsets of the live records are kept in memory, indexed by build number.
+ * <p>
+ * The index is loaded on first use. A missing or corrupt file is rebuilt from the builds of the job on a background
+ * thread, the store answers with empty trends until the rebuild is done.
+ */
+public final class PerfSigTrendStore {
+    public static final String[] AGGREGATIONS = {"", "count", "average", "sum", "maximum", "minimum"};
+    /**
+     * number of builds shown in a chart without custom build count
+     */
+    public static final int DEFAULT_BUILD_LIMIT = Integer.getInteger(PerfSigTrendStore.class.getName() + ".defaultBuildLimit", 100);
+    static final String STORE_FILE = "perfsig-trend.bin";
+    private static final Logger LOGGER = Logger.getLogger(PerfSigTrendStore.class.getName());
+    private static final Map<Job<?, ?>, PerfSigTrendStore> STORES = new WeakHashMap<Job<?, ?>, PerfSigTrendStore>();
+    private static final int MAGIC = 0x50535453; // "PSTS"
+    private static final byte KEY = 1, MEASURES = 2, TEST_RUN = 3, DELETE = 4;
+    private static final int COMPACT_THRESHOLD = 200;
+    private static final int RECORD_ENTRY_SIZE = 4 + 8 * 6;
+    private static final ThreadPoolExecutor REBUILDER = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+        public Thread newThread(final Runnable r) {
+            Thread thread = new Thread(r, "PerfSig trend store rebuild");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    static {
+        REBUILDER.allowCoreThreadTimeOut(true);
+    }
+
+    private final WeakReference<Job<?, ?>> job;
+    private final File file;
+    private final List<String> keys = new ArrayList<String>();
+    private final Map<String, Integer> keyIds = new HashMap<String, Integer>();
+    private final TreeMap<Integer, Long> measureRecords = new TreeMap<Integer, Long>(Collections.reverseOrder());
+    private final TreeMap<Integer, Long> testRunRecords = new TreeMap<Integer, Long>(Collections.reverseOrder());
+    private final Map<Integer, Long> timestamps = new HashMap<Integer, Long>();
+    private final Map<String, Set<Integer>> testCaseBuilds = new HashMap<String, Set<Integer>>();
+    private int deadRecords;
+    private long lastRecordEnd = 4;
+    private boolean loaded;
+    /**
+     * records appended while the store is rebuilt, written once the rebuild is done. Null if no rebuild runs.
+     */
+    private List<RecordWriter> pending;
+
+    private PerfSigTrendStore(final Job<?, ?> job, final File file) {
+        this.job = new WeakReference<Job<?, ?>>(job);
+        this.file = file;
+    }
+
+    public static PerfSigTrendStore get(final Job<?, ?> job) {
+        final File file = new File(job.getRootDir(), STORE_FILE);
+        synchronized (STORES) {
+            PerfSigTrendStore store = STORES.get(job);
+            if (store == null || !store.file.equals(file)) {
+                store = new PerfSigTrendStore(job, file);
+                STORES.put(job, store);
+            }
+            return store;
+        }
+    }
+
+    private static String key(final String testCase, final String chartDashlet, final String measure) {
+        return testCase + '\u0000' + getMeasureKey(chartDashlet, measure);
+    }
+
+    public static String getMeasureKey(final String chartDashlet, final String measure) {
+        return chartDashlet + '\u0000' + measure;
+    }
+
+    /**
+     * maps the aggregation of a chart configuration to the stored column, see {@link Measure#getMetricValue(String)}
+     */
+    public static int getAggregationIndex(final String aggregation) {
+        if (StringUtils.isBlank(aggregation)) return 0;
+        if (aggregation.equalsIgnoreCase("last")) return 2;
+        for (int i = 1; i < AGGREGATIONS.length; i++) {
+            if (AGGREGATIONS[i].equalsIgnoreCase(aggregation)) return i;
+        }
+        return 2;
+    }
+
+    private static double[] getValues(final Measure measure) {
+        double[] values = new double[AGGREGATIONS.length];
+        values[0] = measure.getMetricValue(StringUtils.defaultIfEmpty(measure.getAggregation(), "average"));
+        for (int i = 1; i < AGGREGATIONS.length; i++) {
+            values[i] = measure.getMetricValue(AGGREGATIONS[i]);
+        }
+        return values;
+    }
+
+    /**
+     * loads the index on first use, called by every accessor while holding the lock of the store
+     */
+    private void ensureLoaded() {
+        if (loaded) return;
+        loaded = true;
+        if (PerfSigUtils.restoreReplacedFile(file).exists()) {
+            reload();
+        } else {
+            scheduleRebuild();
+        }
+    }
+
+    /**
+     * reads the index from the file, a corrupt file is dropped and rebuilt
+     */
+    private void reload() {
+        clear();
+        try {
+            load();
+        } catch (IOException e) {
+            LOGGER.severe("could not read trend store " + file + ", rebuilding it: " + ExceptionUtils.getFullStackTrace(e));
+            clear();
+            scheduleRebuild();
+        }
+    }
+
+    /**
+     * creates the store from the existing builds in the background, only done once for jobs which were built with
+     * older versions or if the file is corrupt. Records appended meanwhile are written after the rebuild.
+     */
+    private void scheduleRebuild() {
+        final Job<?, ?> owner = job.get();
+        if (pending != null || owner == null) return;
+        pending = new ArrayList<RecordWriter>();
+        REBUILDER.execute(new Runnable() {
+            public void run() {
+                final File tmp = new File(file.getPath() + ".tmp");
+                boolean written = false;
+                try {
+                    writeBuilds(owner, tmp);
+                    written = true;
+                } catch (IOException e) {
+                    LOGGER.severe("could not rebuild trend store " + file + ": " + ExceptionUtils.getFullStackTrace(e));
+                } finally {
+                    finishRebuild(tmp, written);
+                }
+            }
+        });
+    }
+
+    /**
+     * writes the records of all finished builds, runs without the lock of the store. The keys are numbered
+     * by a separate store instance, the index of this store is loaded from the written file afterwards.
+     */
+    private void writeBuilds(final Job<?, ?> owner, final File tmp) throws IOException {
+        final PerfSigTrendStore writer = new PerfSigTrendStore(owner, tmp);
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+        try {
+            out.writeInt(MAGIC);
+            List<? extends Run<?, ?>> builds = new ArrayList<Run<?, ?>>(owner.getBuilds());
+            Collections.reverse(builds);
+            for (Run<?, ?> run : builds) {
+                if (run.isBuilding()) continue;
+                PerfSigBuildAction buildAction = PerfSigBuildAction.getBuildAction(run);
+                if (buildAction != null) {
+                    writer.writeMeasures(out, run, buildAction.getDashboardReports());
+                }
+                writer.writeTestRun(out, run);
+            }
+        } finally {
+            IOUtils.closeQuietly(out);
+        }
+    }
+
+    /**
+     * loads the rebuilt file and writes the records appended meanwhile. If the rebuild failed the store is left
+     * unloaded, the next access starts a new rebuild which also contains the builds of the dropped records.
+     */
+    private synchronized void finishRebuild(final File tmp, final boolean written) {
+        final List<RecordWriter> writers = pending;
+        pending = null;
+        clear();
+        if (written) {
+            try {
+                PerfSigUtils.replaceFile(tmp, file);
+                load();
+                for (RecordWriter writer : writers) {
+                    append(writer);
+                }
+                return;
+            } catch (IOException e) {
+                LOGGER.severe("could not replace trend store " + file + ": " + ExceptionUtils.getFullStackTrace(e));
+                clear();
+            }
+        }
+        if (tmp.exists() && !tmp.delete()) {
+            LOGGER.warning("could not delete " + tmp);
+        }
+        loaded = false;
+    }
+
+    private void clear() {
+        keys.clear();
+        keyIds.clear();
+        measureRecords.clear();
+        testRunRecords.clear();
+        timestamps.clear();
+        testCaseBuilds.clear();
+        deadRecords = 0;
+        lastRecordEnd = 4;
+    }
+
+    private void load() throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            CountingInputStream counter = new CountingInputStream(new BufferedInputStream(new FileInputStream(raf.getFD())));
+            DataInputStream in = new DataInputStream(counter);
+            if (raf.length() < 4 || in.readInt() != MAGIC) {
+                throw new IOException(file + " is not a trend store");
+            }
+            index(in, counter, 0, raf.length());
+        } catch (EOFException e) {
+            // a build crashed while appending, drop the incomplete record. Other errors mean the file is corrupt
+            LOGGER.warning("truncating incomplete record at the end of " + file);
+            raf.setLength(lastRecordEnd);
+        } finally {
+            IOUtils.closeQuietly(raf);
+        }
+    }
+
+    /**
+     * reads the records between the current position and the end and adds them to the index
+     *
+     * @param base file offset of the first byte counted by the counter
+     */
+    private void index(final DataInputStream in, final CountingInputStream counter, final long base, final long end) throws IOException {
+        long offset = base + counter.getByteCount();
+        while (offset < end) {
+            readRecord(in, offset);
+            offset = base + counter.getByteCount();
+            lastRecordEnd = offset;
+        }
+    }
+
+    private void readRecord(final DataInputStream in, final long offset) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+            case KEY: {
+                int id = in.readInt();
+                String key = key(in.readUTF(), in.readUTF(), in.readUTF());
+                if (id != keys.size()) throw new IOException("corrupt key record " + id + " in " + file);
+                keys.add(key);
+                keyIds.put(key, id);
+                break;
+            }
+            case MEASURES: {
+                int number = in.readInt();
+                long timestamp = in.readLong();
+                int count = in.readInt();
+                byte[] data = new byte[count * RECORD_ENTRY_SIZE];
+                in.readFully(data);
+                if (measureRecords.put(number, offset) != null) deadRecords++;
+                timestamps.put(number, timestamp);
+                indexTestCases(number, data, count);
+                break;
+            }
+            case TEST_RUN: {
+                int number = in.readInt();
+                in.readFully(new byte[6 * 4]);
+                if (testRunRecords.put(number, offset) != null) deadRecords++;
+                break;
+            }
+            case DELETE: {
+                int number = in.readInt();
+                if (measureRecords.remove(number) != null) deadRecords++;
+                if (testRunRecords.remove(number) != null) deadRecords++;
+                timestamps.remove(number);
+                removeTestCases(number);
+                deadRecords++;
+                break;
+            }
+            default:
+                throw new IOException("unknown record type " + type + " at offset " + offset + " in " + file);
+        }
+    }
+
+    /**
+     * remembers which test cases a measure record contains, so charts can skip builds without the test case
+     * without reading their record
+     */
+    private void indexTestCases(final int number, final byte[] data, final int count) throws IOException {
+        removeTestCases(number);
+        final DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        for (int i = 0; i < count; i++) {
+            final String key = keys.get(in.readInt());
+            final String testCase = key.substring(0, key.indexOf('\u0000'));
+            Set<Integer> builds = testCaseBuilds.get(testCase);
+            if (builds == null) {
+                builds = new HashSet<Integer>();
+                testCaseBuilds.put(testCase, builds);
+            }
+            builds.add(number);
+            in.skipBytes(8 * AGGREGATIONS.length);
+        }
+    }
+
+    private void removeTestCases(final int number) {
+        for (Set<Integer> builds : testCaseBuilds.values()) {
+            builds.remove(number);
+        }
+    }
+
+    private void writeMeasures(final DataOutputStream out, final Run<?, ?> run, final List<DashboardReport> dashboardReports) throws IOException {
+        final Map<Integer, double[]> values = new LinkedHashMap<Integer, double[]>();
+        for (DashboardReport dashboardReport : dashboardReports) {
+            if (dashboardReport.getChartDashlets() == null) continue;
+            for (ChartDashlet chartDashlet : dashboardReport.getChartDashlets()) {
+                for (Measure measure : chartDashlet.getMeasures()) {
+                    String key = key(dashboardReport.getName(), chartDashlet.getName(), measure.getName());
+                    Integer id = keyIds.get(key);
+                    if (id == null) {
+                        id = keys.size();
+                        keys.add(key);
+                        keyIds.put(key, id);
+                        out.writeByte(KEY);
+                        out.writeInt(id);
+                        out.writeUTF(dashboardReport.getName());
+                        out.writeUTF(chartDashlet.getName());
+                        out.writeUTF(measure.getName());
+                    }
+                    values.put(id, getValues(measure));
+                }
+            }
+        }
+        out.writeByte(MEASURES);
+        out.writeInt(run.getNumber());
+        out.writeLong(run.getTimeInMillis());
+        out.writeInt(values.size());
+        for (Map.Entry<Integer, double[]> entry : values.entrySet()) {
+            out.writeInt(entry.getKey());
+            for (double value : entry.getValue()) {
+                out.writeDouble(value);
+            }
+        }
+    }
+
+    private void writeTestRun(final DataOutputStream out, final Run<?, ?> run) throws IOException {
+        PerfSigTestDataWrapper testDataWrapper = run.getAction(PerfSigTestDataWrapper.class);
+        if (testDataWrapper == null || testDataWrapper.getTestRuns() == null) return;
+        TestRun testRun = TestRun.mergeTestRuns(testDataWrapper.getTestRuns());
+        if (testRun == null) return;
+        out.writeByte(TEST_RUN);
+        out.writeInt(run.getNumber());
+        out.writeInt(testRun.getNumFailed());
+        out.writeInt(testRun.getNumDegraded());
+        out.writeInt(testRun.getNumImproved());
+        out.writeInt(testRun.getNumPassed());
+        out.writeInt(testRun.getNumVolatile());
+        out.writeInt(testRun.getNumInvalidated());
+    }
+
+    /**
+     * appends the records written by the given writer and adds them to the index.
+     */
+    private void append(final RecordWriter writer) {
+        final int keyCount = keys.size();
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            writer.write(new DataOutputStream(bytes));
+            // new keys are indexed again when the written records are read back
+            while (keys.size() > keyCount) {
+                keyIds.remove(keys.remove(keys.size() - 1));
+            }
+
+            final boolean exists = file.exists();
+            FileOutputStream out = new FileOutputStream(file, true);
+            long start;
+            try {
+                if (!exists) {
+                    new DataOutputStream(out).writeInt(MAGIC);
+                }
+                start = out.getChannel().position();
+                bytes.writeTo(out);
+            } finally {
+                IOUtils.closeQuietly(out);
+            }
+
+            CountingInputStream counter = new CountingInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+            index(new DataInputStream(counter), counter, start, start + bytes.size());
+            if (deadRecords > COMPACT_THRESHOLD && deadRecords > measureRecords.size()) {
+                compact();
+            }
+        } catch (IOException e) {
+            while (keys.size() > keyCount) {
+                keyIds.remove(keys.remove(keys.size() - 1));
+            }
+            LOGGER.severe("could not write trend store " + file + ": " + ExceptionUtils.getFullStackTrace(e));
+        }
+    }
+
+    /**
+     * appends the records, or keeps them until the running rebuild is done
+     */
+    private void record(final RecordWriter writer) {
+        ensureLoaded();
+        if (pending != null) {
+            pending.add(writer);
+        } else {
+            append(writer);
+        }
+    }
+
+    public synchronized void recordDashboardReports(final Run<?, ?> run, final List<DashboardReport> dashboardReports) {
+        record(new RecordWriter() {
+            public void write(final DataOutputStream out) throws IOException {
+                writeMeasures(out, run, dashboardReports);
+            }
+        });
+    }
+
+    public synchronized void recordTestRun(final Run<?, ?> run) {
+        record(new RecordWriter() {
+            public void write(final DataOutputStream out) throws IOException {
+                writeTestRun(out, run);
+            }
+        });
+    }
+
+    public synchronized void delete(final int number) {
+        ensureLoaded();
+        if (pending == null && !measureRecords.containsKey(number) && !testRunRecords.containsKey(number)) return;
+        record(new RecordWriter() {
+            public void write(final DataOutputStream out) throws IOException {
+                out.writeByte(DELETE);
+                out.writeInt(number);
+            }
+        });
+    }
+
+    /**
+     * rewrites the file without deleted or overwritten records
+     */
+    private void compact() throws IOException {
+        final File tmp = new File(file.getPath() + ".tmp");
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+        try {
+            out.writeInt(MAGIC);
+            for (int id = 0; id < keys.size(); id++) {
+                String[] parts = keys.get(id).split("\u0000", -1);
+                out.writeByte(KEY);
+                out.writeInt(id);
+                out.writeUTF(parts[0]);
+                out.writeUTF(parts[1]);
+                out.writeUTF(parts[2]);
+            }
+            for (Integer number : new TreeSet<Integer>(measureRecords.keySet())) {
+                raf.seek(measureRecords.get(number));
+                raf.readByte();
+                raf.readInt();
+                long timestamp = raf.readLong();
+                int count = raf.readInt();
+                byte[] data = new byte[count * RECORD_ENTRY_SIZE];
+                raf.readFully(data);
+                out.writeByte(MEASURES);
+                out.writeInt(number);
+                out.writeLong(timestamp);
+                out.writeInt(count);
+                out.write(data);
+            }
+            for (Integer number : new TreeSet<Integer>(testRunRecords.keySet())) {
+                raf.seek(testRunRecords.get(number));
+                byte[] data = new byte[1 + 4 + 6 * 4];
+                raf.readFully(data);
+                out.write(data);
+            }
+        } finally {
+            IOUtils.closeQuietly(out);
+            IOUtils.closeQuietly(raf);
+        }
+        PerfSigUtils.replaceFile(tmp, file);
+        reload();
+    }
+
+    /**
+     * @return build numbers with recorded dashboard reports, newest first
+     */
+    public synchronized List<Integer> getBuildNumbers(final int limit) {
+        ensureLoaded();
+        List<Integer> numbers = new ArrayList<Integer>();
+        for (Integer number : measureRecords.keySet()) {
+            if (limit > 0 && numbers.size() >= limit) break;
+            numbers.add(number);
+        }
+        return numbers;
+    }
+
+    public synchronized long getTimestamp(final int number) {
+        ensureLoaded();
+        Long timestamp = timestamps.get(number);
+        return timestamp == null ? 0 : timestamp;
+    }
+
+    /**
+     * @return the number of builds to show for a requested build count, {@link #DEFAULT_BUILD_LIMIT} if none was requested
+     */
+    public static int getBuildLimit(final int buildCount) {
+        return buildCount > 0 ? buildCount : DEFAULT_BUILD_LIMIT;
+    }
+
+    /**
+     * reads the values of a measure for the newest builds of the test case, builds of the test case without the measure get 0
+     *
+     * @param limit maximum number of builds, 0 for {@link #DEFAULT_BUILD_LIMIT}
+     */
+    public synchronized List<TrendPoint> getMeasureTrend(final String testCase, final String chartDashlet, final String measure,
+                                                         final String aggregation, final int limit) {
+        ensureLoaded();
+        final Integer id = keyIds.get(key(testCase, chartDashlet, measure));
+        final int column = getAggregationIndex(aggregation);
+        final Set<Integer> builds = testCaseBuilds.get(testCase);
+        if (builds == null) return new ArrayList<TrendPoint>();
+
+        return collect(new BuildWindow<TrendPoint>(measureRecords, getBuildLimit(limit)) {
+            @Override
+            boolean accept(final int number) {
+                return builds.contains(number);
+            }
+
+            @Override
+            TrendPoint read(final RandomAccessFile raf, final int number, final long offset) throws IOException {
+                double value = id == null ? 0 : readValue(raf, offset, id, column);
+                return new TrendPoint(number, timestamps.get(number), value);
+            }
+        });
+    }
+
+    /**
+     * reads the trends of several measures in one pass over the builds, each build record is read at most once.
+     * The result is the same as calling {@link #getMeasureTrend(String, String, String, String, int)} for each query.
+     *
+     * @return the trends in the order of the queries
+     */
+    public synchronized List<List<TrendPoint>> getMeasureTrends(final List<MeasureQuery> queries) {
+        ensureLoaded();
+        final int size = queries.size();
+        final List<List<TrendPoint>> trends = new ArrayList<List<TrendPoint>>(size);
+        final List<Set<Integer>> builds = new ArrayList<Set<Integer>>(size);
+        final int[] ids = new int[size], columns = new int[size], limits = new int[size];
+        for (int i = 0; i < size; i++) {
+            final MeasureQuery query = queries.get(i);
+            final Integer id = keyIds.get(key(query.testCase, query.chartDashlet, query.measure));
+            trends.add(new ArrayList<TrendPoint>());
+            builds.add(testCaseBuilds.get(query.testCase));
+            ids[i] = id == null ? -1 : id;
+            columns[i] = getAggregationIndex(query.aggregation);
+            limits[i] = getBuildLimit(query.limit);
+        }
+
+        final BuildWindow<byte[]> window = new BuildWindow<byte[]>(measureRecords, Integer.MAX_VALUE) {
+            @Override
+            boolean accept(final int number) {
+                for (int i = 0; i < size; i++) {
+                    if (isRequested(builds.get(i), trends.get(i), limits[i], number)) return true;
+                }
+                return false;
+            }
+
+            @Override
+            byte[] read(final RandomAccessFile raf, final int number, final long offset) throws IOException {
+                return readEntries(raf, offset);
+            }
+        };
+        try {
+            while (window.hasNext()) {
+                final byte[] data = window.next();
+                final int number = window.getNumber();
+                for (int i = 0; i < size; i++) {
+                    if (!isRequested(builds.get(i), trends.get(i), limits[i], number)) continue;
+                    trends.get(i).add(new TrendPoint(number, timestamps.get(number), ids[i] < 0 ? 0 : getValue(data, ids[i], columns[i])));
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.severe("could not read trend store " + file + ": " + ExceptionUtils.getFullStackTrace(e));
+        }
+        return trends;
+    }
+
+    private static boolean isRequested(final Set<Integer> builds, final List<TrendPoint> trend, final int limit, final int number) {
+        return builds != null && trend.size() < limit && builds.contains(number);
+    }
+
+    /**
+     * reads the rows of the overview table for the newest builds in one pass, with one open file for all rows
+     *
+     * @param limit maximum number of builds, 0 for {@link #DEFAULT_BUILD_LIMIT}
+     * @return the values of all measures of the given test case and the test run of each build, newest first
+     */
+    public synchronized List<BuildRow> getBuildRows(final String testCase, final String aggregation, final int limit) {
+        ensureLoaded();
+        final int column = getAggregationIndex(aggregation);
+        final String prefix = testCase + '\u0000';
+        return collect(new BuildWindow<BuildRow>(measureRecords, getBuildLimit(limit)) {
+            @Override
+            BuildRow read(final RandomAccessFile raf, final int number, final long offset) throws IOException {
+                final Map<String, Double> values = new HashMap<String, Double>();
+                final DataInputStream in = new DataInputStream(new ByteArrayInputStream(readEntries(raf, offset)));
+                for (int i = in.available() / RECORD_ENTRY_SIZE; i > 0; i--) {
+                    final String key = keys.get(in.readInt());
+                    if (key.startsWith(prefix)) {
+                        in.skipBytes(8 * column);
+                        values.put(key.substring(prefix.length()), in.readDouble());
+                        in.skipBytes(8 * (AGGREGATIONS.length - column - 1));
+                    } else {
+                        in.skipBytes(8 * AGGREGATIONS.length);
+                    }
+                }
+                final Long testRunOffset = testRunRecords.get(number);
+                return new BuildRow(number, timestamps.get(number), values, testRunOffset == null ? null : readTestRun(raf, testRunOffset));
+            }
+        });
+    }
+
+    private double readValue(final RandomAccessFile raf, final long offset, final int id, final int column) throws IOException {
+        return getValue(readEntries(raf, offset), id, column);
+    }
+
+    private static byte[] readEntries(final RandomAccessFile raf, final long offset) throws IOException {
+        raf.seek(offset + 1 + 4 + 8);
+        int count = raf.readInt();
+        byte[] data = new byte[count * RECORD_ENTRY_SIZE];
+        raf.readFully(data);
+        return data;
+    }
+
+    private static double getValue(final byte[] data, final int id, final int column) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        for (int i = 0; i < data.length / RECORD_ENTRY_SIZE; i++) {
+            if (in.readInt() == id) {
+                in.skipBytes(8 * column);
+                return in.readDouble();
+            }
+            in.skipBytes(8 * AGGREGATIONS.length);
+        }
+        return 0;
+    }
+
+    /**
+     * @param limit maximum number of builds, 0 for {@link #DEFAULT_BUILD_LIMIT}
+     * @return failed, degraded, improved, passed, volatile and invalidated tests of the newest builds
+     */
+    public synchronized SortedMap<Integer, int[]> getTestRunTrend(final int limit) {
+        ensureLoaded();
+        final SortedMap<Integer, int[]> trend = new TreeMap<Integer, int[]>(Collections.reverseOrder());
+        final BuildWindow<int[]> window = new BuildWindow<int[]>(testRunRecords, getBuildLimit(limit)) {
+            @Override
+            int[] read(final RandomAccessFile raf, final int number, final long offset) throws IOException {
+                return readTestRun(raf, offset);
+            }
+        };
+        while (window.hasNext()) {
+            final int[] values = window.next();
+            trend.put(window.getNumber(), values);
+        }
+        return trend;
+    }
+
+    /**
+     * @return failed, degraded, improved, passed, volatile and invalidated tests of a test run record
+     */
+    private static int[] readTestRun(final RandomAccessFile raf, final long offset) throws IOException {
+        raf.seek(offset + 1 + 4);
+        int[] values = new int[6];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = raf.readInt();
+        }
+        return values;
+    }
+
+    private <T> List<T> collect(final BuildWindow<T> window) {
+        final List<T> result = new ArrayList<T>();
+        while (window.hasNext()) {
+            result.add(window.next());
+        }
+        return result;
+    }
+
+    private interface RecordWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    /**
+     * Iterates over the records of the newest builds, newest first. A record is only read when the iteration reaches it,
+     * builds which are not accepted are skipped without reading their record and don't count. The iteration ends after
+     * the limit, older records are never read. Only used while holding the lock of the store.
+     */
+    private abstract class BuildWindow<T> implements Iterator<T> {
+        private final Iterator<Map.Entry<Integer, Long>> records;
+        private final int limit;
+        private int count, number, nextNumber;
+        private RandomAccessFile raf;
+        private T next;
+        private boolean failed;
+
+        BuildWindow(final TreeMap<Integer, Long> records, final int limit) {
+            this.records = records.entrySet().iterator();
+            this.limit = limit;
+        }
+
+        boolean accept(final int number) {
+            return true;
+        }
+
+        abstract T read(RandomAccessFile raf, int number, long offset) throws IOException;
+
+        public boolean hasNext() {
+            while (next == null && !failed && count < limit && records.hasNext()) {
+                final Map.Entry<Integer, Long> entry = records.next();
+                if (!accept(entry.getKey())) continue;
+                try {
+                    if (raf == null) raf = new RandomAccessFile(file, "r");
+                    next = read(raf, entry.getKey(), entry.getValue());
+                    nextNumber = entry.getKey();
+                } catch (IOException e) {
+                    LOGGER.severe("could not read trend store " + file + ": " + ExceptionUtils.getFullStackTrace(e));
+                    failed = true;
+                }
+            }
+            if (next == null) {
+                IOUtils.closeQuietly(raf);
+                raf = null;
+            }
+            return next != null;
+        }
+
+        public T next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            final T result = next;
+            next = null;
+            number = nextNumber;
+            count++;
+            return result;
+        }
+
+        /**
+         * @return build number of the element returned by {@link #next()}
+         */
+        int getNumber() {
+            return number;
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * a measure trend requested from {@link #getMeasureTrends(List)}
+     */
+    public static final class MeasureQuery {
+        private final String testCase, chartDashlet, measure, aggregation;
+        private final int limit;
+
+        /**
+         * @param limit maximum number of builds, 0 for {@link #DEFAULT_BUILD_LIMIT}
+         */
+        public MeasureQuery(final String testCase, final String chartDashlet, final String measure, final String aggregation,
+                            final int limit) {
+            this.testCase = testCase;
+            this.chartDashlet = chartDashlet;
+            this.measure = measure;
+            this.aggregation = aggregation;
+            this.limit = limit;
+        }
+    }
+
+    /**
+     * a row of the overview table, see {@link #getBuildRows(String, String, int)}
+     */
+    public static final class BuildRow {
+        private final int number;
+        private final long timestamp;
+        private final Map<String, Double> values;
+        private final int[] testRun;
+
+        BuildRow(final int number, final Long timestamp, final Map<String, Double> values, final int[] testRun) {
+            this.number = number;
+            this.timestamp = timestamp == null ? 0 : timestamp;
+            this.values = values;
+            this.testRun = testRun;
+        }
+
+        public int getNumber() {
+            return number;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        /**
+         * @return the values of the measures of the test case, indexed by {@link #getMeasureKey(String, String)}
+         */
+        public Map<String, Double> getValues() {
+            return values;
+        }
+
+        /**
+         * @return failed, degraded, improved, passed, volatile and invalidated tests, null if the build has no test run
+         */
+        public int[] getTestRun() {
+            return testRun;
+        }
+    }
+
+    public static class TrendPoint {
+        private final int number;
+        private final long timestamp;
+        private final double value;
+
+        TrendPoint(final int number, final Long timestamp, final double value) {
+            this.number = number;
+            this.timestamp = timestamp == null ? 0 : timestamp;
+            this.value = value;
+        }
+
+        public int getNumber() {
+            return number;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        public double getValue() {
+            return value;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2014 T-Systems Multimedia Solutions GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.tsystems.mms.apm.performancesignature;
+
+import hudson.model.Run;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Random;
+
+/**
+ * Waits until the Dynatrace server reports a resource as ready. The first probe is sent immediately,
+ * further probes follow with exponentially growing, jittered intervals until the deadline is reached.
+ * Every wait is logged and added to the {@link PerfSigWaitStatistics} of the build.
+ */
+final class PerfSigWait {
+    static final long INITIAL_INTERVAL = 500;
+    static final long MAX_INTERVAL = 10000;
+    private static final Random RANDOM = new Random();
+    private final long timeout;
+    private int probes;
+    private long elapsed;
+
+    PerfSigWait(final long timeout) {
+        this.timeout = Math.max(0, timeout);
+    }
+
+    /**
+     * waits for the probe and records the wait in the build
+     *
+     * @param timeout deadline in milliseconds, the probe is called at least once
+     * @return true if the probe reported ready before the deadline
+     */
+    static boolean await(final Run<?, ?> build, final PrintStream logger, final String description, final long timeout,
+                         final Probe probe) throws IOException, InterruptedException {
+        final PerfSigWait wait = new PerfSigWait(timeout);
+        final boolean ready = wait.await(probe);
+        logger.println(String.format(ready ? Messages.PerfSigWait_Ready() : Messages.PerfSigWait_TimedOut(),
+                description, wait.getElapsed() / 1000D, wait.getProbes()));
+        PerfSigWaitStatistics.get(build).add(description, wait.getElapsed(), wait.getProbes(), ready);
+        return ready;
+    }
+
+    private static long jitter(final long interval) {
+        // "equal jitter": half of the interval is fixed, the other half is random
+        final long half = interval / 2;
+        synchronized (RANDOM) {
+            return half + (long) (RANDOM.nextDouble() * (interval - half));
+        }
+    }
+
+    boolean await(final Probe probe) throws IOException, InterruptedException {
+        final long start = System.currentTimeMillis();
+        final long deadline = start + timeout;
+        long interval = INITIAL_INTERVAL;
+        try {
+            while (true) {
+                probes++;
+                if (probe.isReady()) {
+                    return true;
+                }
+                final long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return false;
+                }
+                Thread.sleep(Math.min(jitter(interval), remaining));
+                interval = Math.min(interval * 2, MAX_INTERVAL);
+            }
+        } finally {
+            elapsed = System.currentTimeMillis() - start;
+        }
+    }
+
+    int getProbes() {
+        return probes;
+    }
+
+    long getElapsed() {
+        return elapsed;
+    }
+
+    interface Probe {
+        boolean isReady() throws IOException, InterruptedException;
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2014 T-Systems Multimedia Solutions GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.tsystems.mms.apm.performancesignature;
+
+import hudson.model.InvisibleAction;
+import hudson.model.Run;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * how long a build waited for the Dynatrace server, one entry per {@link PerfSigWait}
+ */
+public class PerfSigWaitStatistics extends InvisibleAction {
+    private final List<Entry> entries = new ArrayList<Entry>();
+
+    static PerfSigWaitStatistics get(final Run<?, ?> build) {
+        synchronized (build) {
+            PerfSigWaitStatistics statistics = build.getAction(PerfSigWaitStatistics.class);
+            if (statistics == null) {
+                statistics = new PerfSigWaitStatistics();
+                build.addAction(statistics);
+            }
+            return statistics;
+        }
+    }
+
+    synchronized void add(final String description, final long duration, final int probes, final boolean ready) {
+        entries.add(new Entry(description, duration, probes, ready));
+    }
+
+    public synchronized List<Entry> getEntries() {
+        return Collections.unmodifiableList(new ArrayList<Entry>(entries));
+    }
+
+    /**
+     * @return summed up time in milliseconds the build waited for the Dynatrace server
+     */
+    public synchronized long getTotalDuration() {
+        long total = 0;
+        for (Entry entry : entries) {
+            total += entry.duration;
+        }
+        return total;
+    }
+
+    public static class Entry {
+        private final String description;
+        private final long duration;
+        private final int probes;
+        private final boolean ready;
+
+        public Entry(final String description, final long duration, final int probes, final boolean ready) {
+            this.description = description;
+            this.duration = duration;
+            this.probes = probes;
+            this.ready = ready;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+
+        public long getDuration() {
+            return duration;
+        }
+
+        public int getProbes() {
+            return probes;
+        }
+
+        public boolean isReady() {
+            return ready;
+        }
+    }
+}
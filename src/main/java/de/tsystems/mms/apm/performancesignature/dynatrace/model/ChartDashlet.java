@@ -20,6 +20,7 @@ import de.tsystems.mms.apm.performancesignature.dynatrace.util.AttributeUtils;
 import de.tsystems.mms.apm.performancesignature.util.PerfSigUtils;
 import org.xml.sax.Attributes;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -38,6 +39,16 @@ public class ChartDashlet {
         this.description = AttributeUtils.getStringAttribute("description", attr);
     }
 
+    static ChartDashlet read(final DashboardReportSerializer.Input in) throws IOException {
+        ChartDashlet chartDashlet = new ChartDashlet(in.readString());
+        chartDashlet.description = in.readString();
+        int size = in.readVarInt();
+        for (int i = 0; i < size; i++) {
+            chartDashlet.addMeasure(Measure.read(in));
+        }
+        return chartDashlet;
+    }
+
     public static String encode(final String string) {
         return PerfSigUtils.encodeString(string);
     }
@@ -57,4 +68,13 @@ public class ChartDashlet {
     public void addMeasure(final Measure tm) {
         this.measures.add(tm);
     }
+
+    void write(final DashboardReportSerializer.Output out) throws IOException {
+        out.writeString(name);
+        out.writeString(description);
+        out.writeVarInt(measures.size());
+        for (Measure measure : measures) {
+            measure.write(out);
+        }
+    }
 }
@@ -18,6 +18,8 @@ package de.tsystems.mms.apm.performancesignature.dynatrace.model;
 
 import de.tsystems.mms.apm.performancesignature.model.ClientLinkGenerator;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 
 public class DashboardReport {
@@ -67,6 +69,56 @@ public class DashboardReport {
         this.clientLink = clientLink;
     }
 
+    void write(final DashboardReportSerializer.Output out) throws IOException {
+        out.writeString(name);
+        out.writeBoolean(unitTest);
+        out.writeBoolean(clientLink != null);
+        if (clientLink != null) {
+            out.writeVarInt(clientLink.getPort());
+            out.writeString(clientLink.getProtocol());
+            out.writeString(clientLink.getServer());
+            out.writeString(clientLink.getDashboardName());
+            out.writeString(clientLink.getSessionName());
+            out.writeString(clientLink.getTarget());
+        }
+        out.writeSize(chartDashlets);
+        if (chartDashlets != null) {
+            for (ChartDashlet chartDashlet : chartDashlets) {
+                chartDashlet.write(out);
+            }
+        }
+        out.writeSize(incidents);
+        if (incidents != null) {
+            for (IncidentChart incident : incidents) {
+                incident.write(out);
+            }
+        }
+    }
+
+    static DashboardReport read(final DashboardReportSerializer.Input in) throws IOException {
+        DashboardReport dashboardReport = new DashboardReport(in.readString());
+        dashboardReport.unitTest = in.readBoolean();
+        if (in.readBoolean()) {
+            dashboardReport.clientLink = new ClientLinkGenerator(in.readVarInt(), in.readString(), in.readString(), in.readString(),
+                    in.readString(), in.readString());
+        }
+        int size = in.readSize();
+        if (size >= 0) {
+            dashboardReport.chartDashlets = new ArrayList<ChartDashlet>(size);
+            for (int i = 0; i < size; i++) {
+                dashboardReport.chartDashlets.add(ChartDashlet.read(in));
+            }
+        }
+        size = in.readSize();
+        if (size >= 0) {
+            dashboardReport.incidents = new ArrayList<IncidentChart>(size);
+            for (int i = 0; i < size; i++) {
+                dashboardReport.incidents.add(IncidentChart.read(in));
+            }
+        }
+        return dashboardReport;
+    }
+
     public Measure getMeasure(final String chartDashlet, final String measure) {
         for (ChartDashlet cd : this.chartDashlets) {
             if (cd.getName().equalsIgnoreCase(chartDashlet) && cd.getMeasures() != null) {
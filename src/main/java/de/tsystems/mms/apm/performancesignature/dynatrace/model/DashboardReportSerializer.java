@@ -0,0 +1,215 @@
+/*
+ * Copyright (c) 2014 T-Systems Multimedia Solutions GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.tsystems.mms.apm.performancesignature.dynatrace.model;
+
+import de.tsystems.mms.apm.performancesignature.util.PerfSigUtils;
+import org.apache.commons.io.IOUtils;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Reads and writes the dashboard reports of a build as gzip compressed binary file.
+ * Strings are written once and referenced by index afterwards, numbers are written as var ints
+ * and the measurements of a measure are stored column by column.
+ */
+public final class DashboardReportSerializer {
+    private static final int MAGIC = 0x50534452; // "PSDR"
+    private static final int VERSION = 1;
+
+    private DashboardReportSerializer() {
+    }
+
+    public static void write(final File file, final List<DashboardReport> dashboardReports) throws IOException {
+        // write to a temporary file first and replace the report file only when it is complete,
+        // so a crash leaves either the previous or the new report file behind
+        final File tmp = new File(file.getPath() + ".tmp");
+        OutputStream stream = new BufferedOutputStream(new FileOutputStream(tmp));
+        try {
+            GZIPOutputStream gzip = new GZIPOutputStream(stream);
+            Output out = new Output(new DataOutputStream(gzip));
+            out.writeInt(MAGIC);
+            out.writeVarInt(VERSION);
+            out.writeVarInt(dashboardReports.size());
+            for (DashboardReport dashboardReport : dashboardReports) {
+                dashboardReport.write(out);
+            }
+            out.flush();
+            gzip.finish();
+        } finally {
+            IOUtils.closeQuietly(stream);
+        }
+        PerfSigUtils.replaceFile(tmp, file);
+    }
+
+    public static List<DashboardReport> read(final File file) throws IOException {
+        InputStream stream = new GZIPInputStream(new BufferedInputStream(new FileInputStream(PerfSigUtils.restoreReplacedFile(file))));
+        try {
+            Input in = new Input(new DataInputStream(new BufferedInputStream(stream)));
+            if (in.readInt() != MAGIC) {
+                throw new IOException(file + " is not a dashboard report file");
+            }
+            int version = in.readVarInt();
+            if (version != VERSION) {
+                throw new IOException("unsupported dashboard report file version " + version + " in " + file);
+            }
+            int size = in.readVarInt();
+            List<DashboardReport> dashboardReports = new ArrayList<DashboardReport>(size);
+            for (int i = 0; i < size; i++) {
+                dashboardReports.add(DashboardReport.read(in));
+            }
+            return dashboardReports;
+        } finally {
+            IOUtils.closeQuietly(stream);
+        }
+    }
+
+    static final class Output {
+        private final DataOutputStream out;
+        private final Map<String, Integer> strings = new HashMap<String, Integer>();
+
+        private Output(final DataOutputStream out) {
+            this.out = out;
+        }
+
+        void writeInt(final int value) throws IOException {
+            out.writeInt(value);
+        }
+
+        void writeVarInt(final int value) throws IOException {
+            writeVarLong(value & 0xFFFFFFFFL);
+        }
+
+        void writeVarLong(final long value) throws IOException {
+            long v = value;
+            while ((v & ~0x7FL) != 0) {
+                out.writeByte((int) ((v & 0x7F) | 0x80));
+                v >>>= 7;
+            }
+            out.writeByte((int) v);
+        }
+
+        /**
+         * zig-zag encoded, small negative deltas stay small
+         */
+        void writeSignedVarLong(final long value) throws IOException {
+            writeVarLong((value << 1) ^ (value >> 63));
+        }
+
+        void writeDouble(final double value) throws IOException {
+            out.writeDouble(value);
+        }
+
+        void writeBoolean(final boolean value) throws IOException {
+            out.writeBoolean(value);
+        }
+
+        /**
+         * 0 marks a null list, otherwise the size + 1 is written
+         */
+        void writeSize(final List<?> list) throws IOException {
+            writeVarInt(list == null ? 0 : list.size() + 1);
+        }
+
+        void writeString(final String value) throws IOException {
+            if (value == null) {
+                writeVarInt(0);
+                return;
+            }
+            Integer index = strings.get(value);
+            if (index != null) {
+                writeVarInt(index + 2);
+                return;
+            }
+            strings.put(value, strings.size());
+            writeVarInt(1);
+            byte[] bytes = value.getBytes("UTF-8");
+            writeVarInt(bytes.length);
+            out.write(bytes);
+        }
+
+        private void flush() throws IOException {
+            out.flush();
+        }
+    }
+
+    static final class Input {
+        private final DataInputStream in;
+        private final List<String> strings = new ArrayList<String>();
+
+        private Input(final DataInputStream in) {
+            this.in = in;
+        }
+
+        int readInt() throws IOException {
+            return in.readInt();
+        }
+
+        int readVarInt() throws IOException {
+            return (int) readVarLong();
+        }
+
+        long readVarLong() throws IOException {
+            long value = 0;
+            int shift = 0;
+            int b;
+            do {
+                if (shift > 63) throw new IOException("malformed var long");
+                b = in.readUnsignedByte();
+                value |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return value;
+        }
+
+        long readSignedVarLong() throws IOException {
+            long value = readVarLong();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        double readDouble() throws IOException {
+            return in.readDouble();
+        }
+
+        boolean readBoolean() throws IOException {
+            return in.readBoolean();
+        }
+
+        /**
+         * @return the size of the list or -1 if the list was null
+         */
+        int readSize() throws IOException {
+            return readVarInt() - 1;
+        }
+
+        String readString() throws IOException {
+            int ref = readVarInt();
+            if (ref == 0) return null;
+            if (ref > 1) return strings.get(ref - 2);
+            byte[] bytes = new byte[readVarInt()];
+            in.readFully(bytes);
+            String value = new String(bytes, "UTF-8");
+            strings.add(value);
+            return value;
+        }
+    }
+}
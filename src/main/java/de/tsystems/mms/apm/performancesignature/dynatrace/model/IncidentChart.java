@@ -19,6 +19,7 @@ package de.tsystems.mms.apm.performancesignature.dynatrace.model;
 import de.tsystems.mms.apm.performancesignature.dynatrace.util.AttributeUtils;
 import org.xml.sax.Attributes;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -27,11 +28,36 @@ public class IncidentChart {
     private final Severity severity;
     private List<IncidentViolation> violations;
 
+    private IncidentChart(final String rule, final Severity severity) {
+        this.rule = rule;
+        this.severity = severity;
+    }
+
     public IncidentChart(final Attributes attr) {
         this.rule = AttributeUtils.getStringAttribute("rule", attr);
         this.severity = Severity.fromString(AttributeUtils.getStringAttribute("severity", attr));
     }
 
+    static IncidentChart read(final DashboardReportSerializer.Input in) throws IOException {
+        IncidentChart incidentChart = new IncidentChart(in.readString(), Severity.read(in));
+        int size = in.readSize();
+        for (int i = 0; i < size; i++) {
+            incidentChart.add(IncidentViolation.read(in));
+        }
+        return incidentChart;
+    }
+
+    void write(final DashboardReportSerializer.Output out) throws IOException {
+        out.writeString(rule);
+        Severity.write(out, severity);
+        out.writeSize(violations);
+        if (violations != null) {
+            for (IncidentViolation violation : violations) {
+                violation.write(out);
+            }
+        }
+    }
+
     public String getRule() {
         return rule;
     }
@@ -56,5 +82,14 @@ public class IncidentChart {
         public static Severity fromString(final String string) {
             return Severity.valueOf(string.toUpperCase());
         }
+
+        static Severity read(final DashboardReportSerializer.Input in) throws IOException {
+            int ordinal = in.readVarInt();
+            return ordinal == 0 ? null : values()[ordinal - 1];
+        }
+
+        static void write(final DashboardReportSerializer.Output out, final Severity severity) throws IOException {
+            out.writeVarInt(severity == null ? 0 : severity.ordinal() + 1);
+        }
     }
 }
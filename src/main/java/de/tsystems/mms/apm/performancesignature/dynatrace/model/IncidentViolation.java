@@ -22,6 +22,7 @@ import org.apache.commons.lang.StringUtils;
 import org.xml.sax.Attributes;
 
 import javax.xml.bind.DatatypeConverter;
+import java.io.IOException;
 import java.util.Date;
 
 public class IncidentViolation {
@@ -30,6 +31,13 @@ public class IncidentViolation {
     private final long duration;
     private Date start, end;
 
+    private IncidentViolation(final String rule, final Severity severity, final long duration, final String description) {
+        this.rule = rule;
+        this.severity = severity;
+        this.duration = duration;
+        this.description = description;
+    }
+
     public IncidentViolation(final Attributes attr) {
         this.rule = AttributeUtils.getStringAttribute("rule", attr);
         this.severity = Severity.fromString(AttributeUtils.getStringAttribute("severity", attr));
@@ -41,6 +49,24 @@ public class IncidentViolation {
         this.description = AttributeUtils.getStringAttribute("description", attr);
     }
 
+    static IncidentViolation read(final DashboardReportSerializer.Input in) throws IOException {
+        IncidentViolation violation = new IncidentViolation(in.readString(), Severity.read(in), in.readSignedVarLong(), in.readString());
+        if (in.readBoolean()) violation.start = new Date(in.readSignedVarLong());
+        if (in.readBoolean()) violation.end = new Date(in.readSignedVarLong());
+        return violation;
+    }
+
+    void write(final DashboardReportSerializer.Output out) throws IOException {
+        out.writeString(rule);
+        Severity.write(out, severity);
+        out.writeSignedVarLong(duration);
+        out.writeString(description);
+        out.writeBoolean(start != null);
+        if (start != null) out.writeSignedVarLong(start.getTime());
+        out.writeBoolean(end != null);
+        if (end != null) out.writeSignedVarLong(end.getTime());
+    }
+
     public String getRule() {
         return rule;
     }
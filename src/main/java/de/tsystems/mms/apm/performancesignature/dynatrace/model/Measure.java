@@ -21,13 +21,18 @@ import de.tsystems.mms.apm.performancesignature.util.PerfSigUtils;
 import org.apache.commons.lang.StringUtils;
 import org.xml.sax.Attributes;
 
+import java.io.IOException;
 import java.math.BigDecimal;
-import java.util.ArrayList;
 import java.util.List;
 
 public class Measure {
     private String name, color, unit, aggregation;
     private double max, avg, min, sum;
+    private transient MeasurementSeries measurementSeries;
+    /**
+     * only filled by XStream when old build.xml files are loaded, replaced by {@link #measurementSeries} in {@link #readResolve()}
+     */
+    @Deprecated
     private List<Measurement> measurements;
     private int count;
 
@@ -47,14 +52,120 @@ public class Measure {
         this.aggregation = AttributeUtils.getStringAttribute(Messages.Measure_AttrAggregation(), attr);
     }
 
+    static Measure read(final DashboardReportSerializer.Input in) throws IOException {
+        Measure measure = new Measure(in.readString());
+        measure.color = in.readString();
+        measure.unit = in.readString();
+        measure.aggregation = in.readString();
+        measure.avg = in.readDouble();
+        measure.min = in.readDouble();
+        measure.max = in.readDouble();
+        measure.sum = in.readDouble();
+        measure.count = in.readVarInt();
+
+        int size = in.readSize();
+        if (size >= 0) {
+            long[] timestamps = new long[size];
+            long timestamp = 0;
+            for (int i = 0; i < size; i++) {
+                timestamp += in.readSignedVarLong();
+                timestamps[i] = timestamp;
+            }
+            double[] avgs = readColumn(in, size), mins = readColumn(in, size), maxs = readColumn(in, size), sums = readColumn(in, size);
+            measure.measurementSeries = new MeasurementSeries(size);
+            for (int i = 0; i < size; i++) {
+                measure.measurementSeries.add(timestamps[i], avgs[i], mins[i], maxs[i], sums[i], in.readVarInt());
+            }
+        }
+        return measure;
+    }
+
+    private static double[] readColumn(final DashboardReportSerializer.Input in, final int size) throws IOException {
+        double[] column = new double[size];
+        for (int i = 0; i < size; i++) {
+            column[i] = in.readDouble();
+        }
+        return column;
+    }
+
+    void write(final DashboardReportSerializer.Output out) throws IOException {
+        out.writeString(name);
+        out.writeString(color);
+        out.writeString(unit);
+        out.writeString(aggregation);
+        out.writeDouble(avg);
+        out.writeDouble(min);
+        out.writeDouble(max);
+        out.writeDouble(sum);
+        out.writeVarInt(count);
+
+        final MeasurementSeries series = measurementSeries;
+        out.writeVarInt(series == null ? 0 : series.size() + 1);
+        if (series != null) {
+            final int size = series.size();
+            long timestamp = 0;
+            for (int i = 0; i < size; i++) {
+                out.writeSignedVarLong(series.getTimestamp(i) - timestamp);
+                timestamp = series.getTimestamp(i);
+            }
+            for (int i = 0; i < size; i++) out.writeDouble(series.getAvg(i));
+            for (int i = 0; i < size; i++) out.writeDouble(series.getMin(i));
+            for (int i = 0; i < size; i++) out.writeDouble(series.getMax(i));
+            for (int i = 0; i < size; i++) out.writeDouble(series.getSum(i));
+            for (int i = 0; i < size; i++) out.writeVarInt(series.getCount(i));
+        }
+    }
+
+    /**
+     * converts the measurements of old build.xml files into the columnar representation
+     */
+    private Object readResolve() {
+        if (measurements != null) {
+            measurementSeries = new MeasurementSeries(measurements.size());
+            for (Measurement measurement : measurements) {
+                addMeasurement(measurement);
+            }
+            measurements = null;
+        }
+        return this;
+    }
+
+    public MeasurementSeries getMeasurementSeries() {
+        return measurementSeries;
+    }
+
+    /**
+     * list view of the measurements for the jelly views, prefer {@link #getMeasurementSeries()} in java code
+     */
     public List<Measurement> getMeasurements() {
-        return measurements;
+        return measurementSeries == null ? null : measurementSeries.asList();
     }
 
     public void addMeasurement(final Measurement tm) {
-        if (this.measurements == null)
-            this.measurements = new ArrayList<Measurement>();
-        this.measurements.add(tm);
+        addMeasurement(tm.getTimestamp(), tm.getAvg(), tm.getMin(), tm.getMax(), tm.getSum(), tm.getCount());
+    }
+
+    public void addMeasurement(final Attributes attr) {
+        addMeasurement(AttributeUtils.getLongAttribute(Messages.Measurement_AttrTimestamp(), attr),
+                AttributeUtils.getDoubleAttribute(Messages.Measurement_AttrAvg(), attr),
+                AttributeUtils.getDoubleAttribute(Messages.Measurement_AttrMin(), attr),
+                AttributeUtils.getDoubleAttribute(Messages.Measurement_AttrMax(), attr),
+                AttributeUtils.getDoubleAttribute(Messages.Measurement_AttrSum(), attr),
+                AttributeUtils.getIntAttribute(Messages.Measurement_AttrCount(), attr));
+    }
+
+    public void addMeasurement(final long timestamp, final double avg, final double min, final double max, final double sum, final int count) {
+        if (this.measurementSeries == null)
+            this.measurementSeries = new MeasurementSeries();
+        this.measurementSeries.add(timestamp, avg, min, max, sum, count);
+    }
+
+    /**
+     * releases the unused capacity of the measurement arrays, called once the measure is parsed completely
+     */
+    public void trimMeasurements() {
+        if (this.measurementSeries != null)
+            this.measurementSeries.trimToSize();
     }
 
     public double getSum() {
@@ -110,11 +221,8 @@ public class Measure {
      */
     public double getMetricValue(final String aggregation) {
         if (this.isPercentile()) {
-            List<Measurement> measurements = this.getMeasurements();
-            if (measurements == null) return 0;
-            Measurement measurement95th = measurements.get(95);
-            if (measurement95th == null) return 0;
-            return measurement95th.getAvg();
+            if (measurementSeries == null || measurementSeries.size() <= 95) return 0;
+            return measurementSeries.getAvg(95);
         } else if (aggregation.equalsIgnoreCase("count"))
             return this.getCount();
         else if (aggregation.equalsIgnoreCase("average") || aggregation.equalsIgnoreCase("last"))
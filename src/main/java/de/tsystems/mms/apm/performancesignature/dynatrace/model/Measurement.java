@@ -27,6 +27,15 @@ public class Measurement {
     private long timestamp;
     private int count;
 
+    Measurement(final long timestamp, final double avg, final double min, final double max, final double sum, final int count) {
+        this.timestamp = timestamp;
+        this.avg = avg;
+        this.min = min;
+        this.max = max;
+        this.sum = sum;
+        this.count = count;
+    }
+
     public Measurement(final Attributes attr) {
         this.avg = AttributeUtils.getDoubleAttribute(Messages.Measurement_AttrAvg(), attr);
         this.max = AttributeUtils.getDoubleAttribute(Messages.Measurement_AttrMax(), attr);
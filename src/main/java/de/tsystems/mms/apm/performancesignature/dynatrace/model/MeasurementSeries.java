@@ -0,0 +1,236 @@
+/*
+ * Copyright (c) 2014 T-Systems Multimedia Solutions GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.tsystems.mms.apm.performancesignature.dynatrace.model;
+
+import java.util.*;
+
+/**
+ * The measurements of a measure, stored column by column in primitive arrays instead of one object per measurement.
+ */
+public final class MeasurementSeries {
+    private static final int INITIAL_CAPACITY = 16;
+    /**
+     * number of downsampled index sets kept per series, one per chart size and aggregation in use
+     */
+    private static final int MAX_DOWNSAMPLED = 4;
+    private long[] timestamps;
+    private double[] avgs, mins, maxs, sums;
+    private int[] counts;
+    private int size;
+    private Map<String, int[]> downsampled;
+
+    public MeasurementSeries() {
+        this(INITIAL_CAPACITY);
+    }
+
+    public MeasurementSeries(final int capacity) {
+        final int initialCapacity = Math.max(1, capacity);
+        timestamps = new long[initialCapacity];
+        avgs = new double[initialCapacity];
+        mins = new double[initialCapacity];
+        maxs = new double[initialCapacity];
+        sums = new double[initialCapacity];
+        counts = new int[initialCapacity];
+    }
+
+    public void add(final long timestamp, final double avg, final double min, final double max, final double sum, final int count) {
+        if (size == timestamps.length) {
+            resize(size + (size >> 1) + 1);
+        }
+        timestamps[size] = timestamp;
+        avgs[size] = avg;
+        mins[size] = min;
+        maxs[size] = max;
+        sums[size] = sum;
+        counts[size] = count;
+        size++;
+        downsampled = null;
+    }
+
+    /**
+     * releases the unused capacity, called once all measurements are added
+     */
+    public void trimToSize() {
+        if (size < timestamps.length) {
+            resize(size);
+        }
+    }
+
+    private void resize(final int capacity) {
+        timestamps = Arrays.copyOf(timestamps, capacity);
+        avgs = Arrays.copyOf(avgs, capacity);
+        mins = Arrays.copyOf(mins, capacity);
+        maxs = Arrays.copyOf(maxs, capacity);
+        sums = Arrays.copyOf(sums, capacity);
+        counts = Arrays.copyOf(counts, capacity);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long getTimestamp(final int index) {
+        checkIndex(index);
+        return timestamps[index];
+    }
+
+    public double getAvg(final int index) {
+        checkIndex(index);
+        return avgs[index];
+    }
+
+    public double getMin(final int index) {
+        checkIndex(index);
+        return mins[index];
+    }
+
+    public double getMax(final int index) {
+        checkIndex(index);
+        return maxs[index];
+    }
+
+    public double getSum(final int index) {
+        checkIndex(index);
+        return sums[index];
+    }
+
+    public int getCount(final int index) {
+        checkIndex(index);
+        return counts[index];
+    }
+
+    /**
+     * same as {@link Measurement#getMetricValue(String)} for the measurement at the given index
+     */
+    public double getMetricValue(final int index, final String aggregation) {
+        if (aggregation.equalsIgnoreCase("count"))
+            return getCount(index);
+        else if (aggregation.equalsIgnoreCase("average"))
+            return getAvg(index);
+        else if (aggregation.equalsIgnoreCase("sum"))
+            return getSum(index);
+        else if (aggregation.equalsIgnoreCase("maximum"))
+            return getMax(index);
+        else if (aggregation.equalsIgnoreCase("minimum"))
+            return getMin(index);
+        else
+            return getAvg(index);
+    }
+
+    /**
+     * Downsamples the series with the Largest-Triangle-Three-Buckets algorithm: the first and the last measurement
+     * are kept, the others are split into equally sized buckets and the measurement spanning the largest triangle
+     * with the previously selected measurement and the average of the next bucket is taken from each bucket.
+     * This keeps peaks and the shape of the series. The result is cached for the last used thresholds.
+     *
+     * @param aggregation aggregation of the values, see {@link #getMetricValue(int, String)}
+     * @param threshold   maximum number of measurements to keep
+     * @return indices of the selected measurements in ascending order, null if the series has not more
+     * measurements than the threshold
+     */
+    public synchronized int[] downsample(final String aggregation, final int threshold) {
+        if (threshold < 3 || size <= threshold) return null;
+        final String key = aggregation.toLowerCase(Locale.ENGLISH) + '/' + threshold;
+        if (downsampled == null) {
+            downsampled = new LinkedHashMap<String, int[]>(MAX_DOWNSAMPLED * 2, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(final Map.Entry<String, int[]> eldest) {
+                    return size() > MAX_DOWNSAMPLED;
+                }
+            };
+        }
+        int[] indices = downsampled.get(key);
+        if (indices == null) {
+            indices = largestTriangleThreeBuckets(aggregation, threshold);
+            downsampled.put(key, indices);
+        }
+        return indices;
+    }
+
+    private int[] largestTriangleThreeBuckets(final String aggregation, final int threshold) {
+        final double[] x = new double[size], y = new double[size];
+        for (int i = 0; i < size; i++) {
+            x[i] = timestamps[i] - timestamps[0];
+            y[i] = getMetricValue(i, aggregation);
+        }
+
+        final int[] indices = new int[threshold];
+        final double bucketSize = (double) (size - 2) / (threshold - 2);
+        int selected = 0;
+        indices[0] = 0;
+        for (int bucket = 0; bucket < threshold - 2; bucket++) {
+            // average of the next bucket, the last measurement for the last bucket
+            final int nextStart = (int) ((bucket + 1) * bucketSize) + 1;
+            final int nextEnd = Math.min((int) ((bucket + 2) * bucketSize) + 1, size);
+            double avgX = 0, avgY = 0;
+            for (int i = nextStart; i < nextEnd; i++) {
+                avgX += x[i];
+                avgY += y[i];
+            }
+            avgX /= nextEnd - nextStart;
+            avgY /= nextEnd - nextStart;
+
+            final int start = (int) (bucket * bucketSize) + 1;
+            final int end = (int) ((bucket + 1) * bucketSize) + 1;
+            final double ax = x[selected], ay = y[selected];
+            double maxArea = -1;
+            int next = start;
+            for (int i = start; i < end; i++) {
+                final double area = Math.abs((ax - avgX) * (y[i] - ay) - (ax - x[i]) * (avgY - ay));
+                if (area > maxArea) {
+                    maxArea = area;
+                    next = i;
+                }
+            }
+            indices[bucket + 1] = next;
+            selected = next;
+        }
+        indices[threshold - 1] = size - 1;
+        return indices;
+    }
+
+    /**
+     * creates the {@link Measurement} object at the given index on demand
+     */
+    public Measurement get(final int index) {
+        checkIndex(index);
+        return new Measurement(timestamps[index], avgs[index], mins[index], maxs[index], sums[index], counts[index]);
+    }
+
+    /**
+     * list view of this series for the jelly views, the {@link Measurement} objects are created on access
+     */
+    public List<Measurement> asList() {
+        return new AbstractList<Measurement>() {
+            @Override
+            public Measurement get(final int index) {
+                return MeasurementSeries.this.get(index);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    private void checkIndex(final int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+}
@@ -38,6 +38,9 @@ import java.util.ArrayList;
 import java.util.List;
 
 public class AgentXMLHandler extends DefaultHandler {
+    private static final String AGENT_INFORMATION = Messages.AgentXMLHandler_AttrAgentInformation();
+    private static final String AGENT_PROPERTIES = Messages.AgentXMLHandler_AttrAgentProperties();
+    private static final String COLLECTOR_INFORMATION = Messages.AgentXMLHandler_AttrCollectorInformation();
     private final List<Agent> agents;
     private final List<Collector> collectors;
     private Agent currentAgent;
@@ -59,13 +62,13 @@ public class AgentXMLHandler extends DefaultHandler {
     }
 
     public void startElement(final String namespaceURI, final String localName, final String qName, final Attributes attr) {
-        if (localName.equals(Messages.AgentXMLHandler_AttrAgentInformation())) {
+        if (localName.equals(AGENT_INFORMATION)) {
             this.parentElement = localName;
             this.currentAgent = new Agent();
             this.agents.add(this.currentAgent);
-        } else if (localName.equals(Messages.AgentXMLHandler_AttrAgentProperties())) {
+        } else if (localName.equals(AGENT_PROPERTIES)) {
             this.parentElement = localName;
-        } else if (localName.equals(Messages.AgentXMLHandler_AttrCollectorInformation())) {
+        } else if (localName.equals(COLLECTOR_INFORMATION)) {
             this.parentElement = localName;
             this.currentCollector = new Collector();
             this.collectors.add(this.currentCollector);
@@ -77,7 +80,7 @@ public class AgentXMLHandler extends DefaultHandler {
     }
 
     public void endElement(final String uri, final String localName, final String qName) {
-        if (localName.equals(Messages.AgentXMLHandler_AttrCollectorInformation())) {
+        if (localName.equals(COLLECTOR_INFORMATION)) {
             this.currentCollector = null;
         }
     }
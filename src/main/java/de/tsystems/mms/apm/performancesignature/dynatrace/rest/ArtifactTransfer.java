@@ -0,0 +1,328 @@
+/*
+ * Copyright (c) 2014 T-Systems Multimedia Solutions GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.tsystems.mms.apm.performancesignature.dynatrace.rest;
+
+import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.exception.ExceptionUtils;
+import org.xml.sax.SAXException;
+
+import java.io.*;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.logging.Logger;
+
+/**
+ * Downloads PDF reports and session exports from the Dynatrace server straight into a file.
+ * The response is copied through NIO channels into a ".part" file, which is renamed once the transfer
+ * is complete. If the connection breaks, the transfer is resumed with a HTTP Range request where the
+ * server supports it, otherwise it is restarted. The received length is checked against the announced length,
+ * the MD5 checksum against the Content-MD5 header if present, and stored next to the file ("file.md5").
+ * A resumed request answered with 416 means the artifact was already complete if the received length matches.
+ * The transfer rate can be limited, progress and throughput are written to the build console.
+ */
+final class ArtifactTransfer {
+    static final int MAX_ATTEMPTS = 4;
+    static final String CHECKSUM_EXTENSION = ".md5";
+    private static final Logger LOGGER = Logger.getLogger(ArtifactTransfer.class.getName());
+    private static final String PART_EXTENSION = ".part";
+    private static final int BUFFER_SIZE = 256 * 1024;
+    private static final long PROGRESS_INTERVAL = 10 * 1000;
+    private static final long RETRY_DELAY = 2 * 1000;
+    private static final double MEGABYTE = 1024 * 1024;
+    private static final int HTTP_RANGE_NOT_SATISFIABLE = 416;
+
+    private final DTServerTransport transport;
+    private final String authorization;
+    private final long maxBytesPerSecond;
+    private final PrintStream logger;
+
+    private final MessageDigest digest;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private long received, expectedLength = -1;
+    private String name, validator, expectedChecksum;
+    private long start, lastProgress;
+
+    /**
+     * @param maxBytesPerSecond transfer rate limit, 0 for no limit
+     * @param logger            build console for progress messages, may be null
+     */
+    ArtifactTransfer(final DTServerTransport transport, final String authorization, final long maxBytesPerSecond,
+                     final PrintStream logger) {
+        this.transport = transport;
+        this.authorization = authorization;
+        this.maxBytesPerSecond = maxBytesPerSecond;
+        this.logger = logger;
+        try {
+            this.digest = MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static long parseLong(final String value) {
+        try {
+            return value == null ? -1 : Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    void transfer(final URL url, final File file) throws IOException, SAXException, InterruptedException {
+        final File part = new File(file.getPath() + PART_EXTENSION);
+        FileUtils.deleteQuietly(part);
+        name = file.getName();
+        start = lastProgress = System.currentTimeMillis();
+
+        for (int attempt = 1; ; attempt++) {
+            final long offset = received;
+            try {
+                if (download(url, part)) break;
+            } catch (RESTErrorException e) {
+                throw e;
+            } catch (IOException e) {
+                if (attempt >= MAX_ATTEMPTS) throw e;
+                LOGGER.fine(ExceptionUtils.getFullStackTrace(e));
+                log(String.format(Messages.ArtifactTransfer_Interrupted(), name, toMegabytes(received), e.getMessage()));
+            }
+            if (attempt >= MAX_ATTEMPTS) {
+                throw new IOException("incomplete download of " + name + " after " + attempt + " attempts");
+            }
+            // a broken connection right away is retried after a pause, a progressing transfer continues at once
+            if (received == offset) {
+                Thread.sleep(RETRY_DELAY * attempt);
+            }
+        }
+
+        verifyChecksum();
+        if (file.exists() && !file.delete()) {
+            throw new IOException("could not replace " + file);
+        }
+        if (!part.renameTo(file)) {
+            FileUtils.moveFile(part, file);
+        }
+        FileUtils.writeStringToFile(new File(file.getPath() + CHECKSUM_EXTENSION), getChecksum(), "UTF-8");
+
+        final double seconds = Math.max(1, System.currentTimeMillis() - start) / 1000D;
+        log(String.format(Messages.ArtifactTransfer_Finished(), name, toMegabytes(received), seconds, toMegabytes(received) / seconds));
+    }
+
+    /**
+     * sends one request, continuing at the bytes already received if possible
+     *
+     * @return true if the artifact is complete
+     */
+    private boolean download(final URL url, final File part) throws IOException, SAXException, InterruptedException {
+        final HttpURLConnection conn = transport.openConnection(url, RequestPriority.current(RequestPriority.BULK));
+        int responseCode = -1;
+        boolean failed = false;
+        try {
+            conn.setRequestProperty(Messages.DTServerConnection_PROPERTYAuthorization(), authorization);
+            conn.setUseCaches(false);
+            // a compressed response can't be resumed by byte offset, reports and sessions are compressed anyway
+            conn.setRequestProperty("Accept-Encoding", "identity");
+            if (received > 0) {
+                conn.setRequestProperty("Range", "bytes=" + received + "-");
+                if (validator != null) conn.setRequestProperty("If-Range", validator);
+            }
+            responseCode = conn.getResponseCode();
+            if (received > 0 && responseCode == HTTP_RANGE_NOT_SATISFIABLE) {
+                // usually all bytes were received before the connection broke
+                IOUtils.closeQuietly(conn.getErrorStream());
+                final long length = getRangeLength(conn) >= 0 ? getRangeLength(conn) : expectedLength;
+                if (length == received) {
+                    expectedLength = length;
+                    return true;
+                }
+                log(String.format(Messages.ArtifactTransfer_Restarting(), name));
+                restart();
+                return false;
+            }
+            DTServerConnection.handleHTTPResponseCode(conn);
+
+            if (received > 0) {
+                if (responseCode == HttpURLConnection.HTTP_PARTIAL && getRangeStart(conn) == received) {
+                    log(String.format(Messages.ArtifactTransfer_Resuming(), name, toMegabytes(received)));
+                } else if (responseCode == HttpURLConnection.HTTP_PARTIAL) {
+                    restart();
+                    throw new IOException("unexpected Content-Range " + conn.getHeaderField("Content-Range"));
+                } else {
+                    // the server ignored the range or the artifact changed, the complete artifact follows
+                    log(String.format(Messages.ArtifactTransfer_Restarting(), name));
+                    restart();
+                }
+            }
+            if (received == 0) {
+                expectedLength = conn.getContentLength() >= 0 ? conn.getContentLength() : parseLong(conn.getHeaderField("Content-Length"));
+                expectedChecksum = conn.getHeaderField("Content-MD5");
+                validator = conn.getHeaderField("ETag") != null ? conn.getHeaderField("ETag") : conn.getHeaderField("Last-Modified");
+            }
+
+            copy(conn, part);
+            if (expectedLength >= 0 && received < expectedLength) {
+                throw new EOFException(String.format("received %d of %d bytes", received, expectedLength));
+            }
+            if (expectedLength >= 0 && received > expectedLength) {
+                throw new RESTErrorException(String.format("received %d bytes, but %d bytes were announced", received, expectedLength));
+            }
+            return true;
+        } catch (IOException e) {
+            failed = !(e instanceof RESTErrorException) || responseCode < 0 || responseCode >= 500;
+            throw e;
+        } finally {
+            transport.releaseConnection(conn, failed);
+        }
+    }
+
+    private void restart() {
+        received = 0;
+        validator = null;
+        digest.reset();
+    }
+
+    /**
+     * @return the complete length of the artifact from the Content-Range of a 416 response, -1 if unknown
+     */
+    private long getRangeLength(final HttpURLConnection conn) {
+        // Content-Range: bytes */2000
+        final String contentRange = conn.getHeaderField("Content-Range");
+        if (contentRange == null || !contentRange.startsWith("bytes */")) return -1;
+        return parseLong(StringUtils.substringAfter(contentRange, "/"));
+    }
+
+    private long getRangeStart(final HttpURLConnection conn) {
+        // Content-Range: bytes 1000-1999/2000
+        final String contentRange = conn.getHeaderField("Content-Range");
+        if (contentRange == null || !contentRange.startsWith("bytes ")) return -1;
+        return parseLong(StringUtils.substringBetween(contentRange, "bytes ", "-"));
+    }
+
+    private void copy(final HttpURLConnection conn, final File part) throws IOException, InterruptedException {
+        final InputStream in = conn.getInputStream();
+        final RandomAccessFile out = new RandomAccessFile(part, "rw");
+        try {
+            final ReadableByteChannel source = Channels.newChannel(in);
+            final FileChannel target = out.getChannel();
+            target.truncate(received);
+            target.position(received);
+
+            buffer.clear();
+            while (source.read(buffer) >= 0) {
+                if (buffer.position() < buffer.capacity() / 2 && in.available() > 0) continue;
+                buffer.flip();
+                final int count = buffer.remaining();
+                digest.update(buffer.array(), buffer.arrayOffset(), count);
+                while (buffer.hasRemaining()) {
+                    target.write(buffer);
+                }
+                buffer.clear();
+                received += count;
+                throttle();
+                logProgress();
+            }
+            if (buffer.position() > 0) {
+                buffer.flip();
+                final int count = buffer.remaining();
+                digest.update(buffer.array(), buffer.arrayOffset(), count);
+                while (buffer.hasRemaining()) {
+                    target.write(buffer);
+                }
+                received += count;
+            }
+            target.force(false);
+        } finally {
+            IOUtils.closeQuietly(in);
+            out.close();
+        }
+    }
+
+    /**
+     * sleeps until the average rate since the start of the transfer is below the limit
+     */
+    private void throttle() throws InterruptedException {
+        if (maxBytesPerSecond <= 0) return;
+        final long expectedDuration = received * 1000 / maxBytesPerSecond;
+        final long elapsed = System.currentTimeMillis() - start;
+        if (expectedDuration > elapsed) {
+            Thread.sleep(expectedDuration - elapsed);
+        }
+    }
+
+    private void logProgress() {
+        final long now = System.currentTimeMillis();
+        if (now - lastProgress < PROGRESS_INTERVAL) return;
+        lastProgress = now;
+        final double rate = toMegabytes(received) / (Math.max(1, now - start) / 1000D);
+        if (expectedLength > 0) {
+            log(String.format(Messages.ArtifactTransfer_Progress(), name, toMegabytes(received), toMegabytes(expectedLength),
+                    received * 100 / expectedLength, rate));
+        } else {
+            log(String.format(Messages.ArtifactTransfer_ProgressUnknownLength(), name, toMegabytes(received), rate));
+        }
+    }
+
+    private void verifyChecksum() throws IOException {
+        if (expectedChecksum == null) {
+            log(String.format(Messages.ArtifactTransfer_ChecksumSkipped(), name));
+            return;
+        }
+        if (!Arrays.equals(Base64.decodeBase64(expectedChecksum.trim().getBytes("US-ASCII")), getDigest())) {
+            throw new RESTErrorException("checksum mismatch for " + name + ", expected MD5 " + expectedChecksum);
+        }
+    }
+
+    private byte[] getDigest() throws IOException {
+        try {
+            return ((MessageDigest) digest.clone()).digest();
+        } catch (CloneNotSupportedException e) {
+            throw new IOException(e.getMessage());
+        }
+    }
+
+    /**
+     * @return hex encoded MD5 checksum of the bytes received so far
+     */
+    String getChecksum() throws IOException {
+        return new String(Hex.encodeHex(getDigest()));
+    }
+
+    long getReceived() {
+        return received;
+    }
+
+    private void log(final String message) {
+        if (logger != null) {
+            logger.println(message);
+        } else {
+            LOGGER.fine(message);
+        }
+    }
+
+    private static double toMegabytes(final long bytes) {
+        return bytes / MEGABYTE;
+    }
+}
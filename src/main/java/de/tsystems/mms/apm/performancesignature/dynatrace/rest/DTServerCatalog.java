@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2014 T-Systems Multimedia Solutions GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.tsystems.mms.apm.performancesignature.dynatrace.rest;
+
+import de.tsystems.mms.apm.performancesignature.dynatrace.model.BaseConfiguration;
+import de.tsystems.mms.apm.performancesignature.dynatrace.model.SystemProfile;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Short-lived copies of the session and system profile lists of one Dynatrace server and user.
+ * The REST interface only offers the complete lists, so single lookups are answered from hashed
+ * copies of the last response and only reach the server when the copy is too old or, for sessions,
+ * when the requested session is not known yet. Stored sessions don't disappear while a build waits
+ * for them, so a known session is always answered from the catalog until its TTL expires.
+ */
+final class DTServerCatalog {
+    static final long SESSION_TTL = 60 * 1000;
+    static final long PROFILE_TTL = 5 * 1000;
+    private static final ConcurrentMap<String, DTServerCatalog> CATALOGS = new ConcurrentHashMap<String, DTServerCatalog>();
+
+    private Set<String> sessions = Collections.emptySet();
+    private long sessionsLoaded;
+    private Map<String, SystemProfile> profiles = Collections.emptyMap();
+    private long profilesLoaded;
+    /**
+     * incremented on each invalidation, profile lists fetched before an invalidation are not taken over
+     */
+    private long profilesGeneration;
+
+    private DTServerCatalog() {
+    }
+
+    static DTServerCatalog get(final String address, final String user) {
+        final String key = address + "|" + user;
+        DTServerCatalog catalog = CATALOGS.get(key);
+        if (catalog == null) {
+            catalog = new DTServerCatalog();
+            DTServerCatalog existing = CATALOGS.putIfAbsent(key, catalog);
+            if (existing != null) catalog = existing;
+        }
+        return catalog;
+    }
+
+    static void invalidateAll() {
+        CATALOGS.clear();
+    }
+
+    private static boolean isExpired(final long loaded, final long ttl) {
+        return System.currentTimeMillis() - loaded > ttl;
+    }
+
+    /**
+     * @return true if the session is known and the session list is younger than the TTL,
+     * false means the list has to be refreshed before the session can be declared missing
+     */
+    synchronized boolean containsSession(final String sessionName) {
+        return !isExpired(sessionsLoaded, SESSION_TTL) && sessions.contains(sessionName);
+    }
+
+    synchronized void updateSessions(final Collection<String> sessionNames) {
+        sessions = new HashSet<String>(sessionNames);
+        sessionsLoaded = System.currentTimeMillis();
+    }
+
+    /**
+     * @return the cached profiles or null if they have to be refreshed
+     */
+    synchronized Map<String, SystemProfile> getProfiles() {
+        return isExpired(profilesLoaded, PROFILE_TTL) ? null : profiles;
+    }
+
+    /**
+     * @return the generation to pass to {@link #updateProfiles(Collection, long)}, taken before the profiles are fetched
+     */
+    synchronized long getProfilesGeneration() {
+        return profilesGeneration;
+    }
+
+    /**
+     * takes over the fetched profiles unless the profiles were invalidated after the fetch started
+     *
+     * @param generation the result of {@link #getProfilesGeneration()} when the fetch started
+     */
+    synchronized void updateProfiles(final Collection<BaseConfiguration> configurations, final long generation) {
+        if (generation != profilesGeneration) return;
+        final Map<String, SystemProfile> map = new HashMap<String, SystemProfile>();
+        for (BaseConfiguration configuration : configurations) {
+            if (configuration instanceof SystemProfile) {
+                map.put(configuration.getId(), (SystemProfile) configuration);
+            }
+        }
+        profiles = map;
+        profilesLoaded = System.currentTimeMillis();
+    }
+
+    /**
+     * the recording state of the profiles changes when recording is started or stopped
+     */
+    synchronized void invalidateProfiles() {
+        profilesLoaded = 0;
+        profilesGeneration++;
+    }
+}
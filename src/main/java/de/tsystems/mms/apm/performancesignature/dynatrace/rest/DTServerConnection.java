@@ -32,30 +32,21 @@ import de.tsystems.mms.apm.performancesignature.dynatrace.model.*;
 import de.tsystems.mms.apm.performancesignature.model.CredProfilePair;
 import de.tsystems.mms.apm.performancesignature.model.CustomProxy;
 import de.tsystems.mms.apm.performancesignature.model.DynatraceServerConfiguration;
-import de.tsystems.mms.apm.performancesignature.util.PerfSigUtils;
-import hudson.FilePath;
-import hudson.ProxyConfiguration;
-import hudson.model.Hudson;
 import org.apache.commons.io.IOUtils;
-import org.apache.commons.lang.StringUtils;
-import org.apache.commons.lang.SystemUtils;
 import org.apache.commons.lang.exception.ExceptionUtils;
-import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
-import org.xml.sax.XMLReader;
-import org.xml.sax.helpers.XMLReaderFactory;
+import org.xml.sax.helpers.DefaultHandler;
 
-import javax.net.ssl.*;
 import javax.xml.bind.DatatypeConverter;
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.Marshaller;
 import java.io.*;
-import java.net.*;
-import java.security.KeyManagementException;
-import java.security.NoSuchAlgorithmException;
-import java.security.cert.X509Certificate;
+import java.net.HttpURLConnection;
+import java.net.URL;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
 import java.util.logging.Logger;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.Inflater;
@@ -63,86 +54,41 @@ import java.util.zip.InflaterInputStream;
 
 public class DTServerConnection {
     private static final Logger LOGGER = Logger.getLogger(DTServerConnection.class.getName());
-    private final String address, user, password;
-    private final boolean verifyCertificate;
-    /* Dynatrace is unable to provide proper Certs to trust by default
-     Create a trust manager that does not validate certificate chains */
-    private final HostnameVerifier allHostsValid = new HostnameVerifier() {
-        public boolean verify(final String hostname, final SSLSession session) {
-            return true;
-        }
-    };
+    private final String address, authorization;
     private final String systemProfile;
-    private Proxy proxy;
-    private SSLContext sc;
+    private final DTServerTransport transport;
+    private final DTServerCatalog catalog;
+    private final long maxDownloadRate;
 
     public DTServerConnection(final String protocol, final String host, final int port, final CredProfilePair pair,
                               final boolean verifyCertificate, final CustomProxy customProxy) {
-        this.address = protocol + "://" + host + ":" + port;
-        this.user = pair.getUsername();
-        this.password = pair.getPassword();
-        this.verifyCertificate = verifyCertificate;
-        this.proxy = Proxy.NO_PROXY;
-        this.systemProfile = pair.getProfile();
-
-        // Install the all-trusting trust manager
-        try {
-            if (SystemUtils.IS_JAVA_1_6)
-                sc = SSLContext.getInstance("TLSv1");
-            else
-                sc = SSLContext.getInstance("TLSv1.2");
-            TrustManager[] trustAllCerts = new TrustManager[]{new X509TrustManager() {
-                public X509Certificate[] getAcceptedIssuers() {
-                    return null;
-                }
+        this(DTServerTransport.getTransport(protocol, host, port, verifyCertificate, customProxy, 0), pair, 0);
+    }
 
-                public void checkClientTrusted(final X509Certificate[] certs, final String authType) {
-                }
+    public DTServerConnection(final DynatraceServerConfiguration config, final CredProfilePair pair) {
+        this(DTServerTransport.getTransport(config), pair, config.getMaxDownloadRate() * 1024L);
+    }
 
-                public void checkServerTrusted(final X509Certificate[] certs, final String authType) {
-                }
-            }
-            };
-            sc.init(null, trustAllCerts, new java.security.SecureRandom());
-        } catch (NoSuchAlgorithmException e) {
-            e.printStackTrace();
-        } catch (KeyManagementException e) {
-            LOGGER.severe(ExceptionUtils.getFullStackTrace(e));
-        }
+    private DTServerConnection(final DTServerTransport transport, final CredProfilePair pair, final long maxDownloadRate) {
+        this.transport = transport;
+        this.maxDownloadRate = maxDownloadRate;
+        this.address = transport.getAddress();
+        this.systemProfile = pair.getProfile();
+        this.catalog = DTServerCatalog.get(address, pair.getUsername());
 
-        if (customProxy != null) {
-            Hudson hudson = PerfSigUtils.getInstanceOrDie();
-            if (customProxy.isUseJenkinsProxy() && hudson.proxy != null) {
-                final ProxyConfiguration proxyConfiguration = hudson.proxy;
-                if (StringUtils.isNotBlank(proxyConfiguration.name) && proxyConfiguration.port > 0) {
-                    this.proxy = new java.net.Proxy(java.net.Proxy.Type.HTTP, new InetSocketAddress(proxyConfiguration.name, proxyConfiguration.port));
-                    if (StringUtils.isNotBlank(proxyConfiguration.getUserName())) {
-                        Authenticator authenticator = new Authenticator() {
-                            public PasswordAuthentication getPasswordAuthentication() {
-                                return (new PasswordAuthentication(proxyConfiguration.getUserName(), proxyConfiguration.getPassword().toCharArray()));
-                            }
-                        };
-                        Authenticator.setDefault(authenticator);
-                    }
-                }
-            } else {
-                if (StringUtils.isNotBlank(customProxy.getProxyServer()) && customProxy.getProxyPort() > 0) {
-                    this.proxy = new java.net.Proxy(java.net.Proxy.Type.HTTP, new InetSocketAddress(customProxy.getProxyServer(), customProxy.getProxyPort()));
-                    if (StringUtils.isNotBlank(customProxy.getProxyUser())) {
-                        Authenticator authenticator = new Authenticator() {
-                            public PasswordAuthentication getPasswordAuthentication() {
-                                return (new PasswordAuthentication(customProxy.getProxyUser(), customProxy.getProxyPassword().toCharArray()));
-                            }
-                        };
-                        Authenticator.setDefault(authenticator);
-                    }
-                }
-            }
+        String userPassword = pair.getUsername() + Messages.DTServerConnection_SEPARATORColon() + pair.getPassword();
+        try {
+            this.authorization = Messages.DTServerConnection_PROPERTYBasic() + " " + DatatypeConverter.printBase64Binary(userPassword.getBytes("UTF-8"));
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
         }
     }
 
-    public DTServerConnection(final DynatraceServerConfiguration config, final CredProfilePair pair) {
-        this(config.getProtocol(), config.getHost(), config.getPort(), pair, config.isVerifyCertificate(), config.getCustomProxy());
+    /**
+     * drops the cached session and profile lists of all servers, e.g. after the server configurations have been changed
+     */
+    public static void invalidateCatalogs() {
+        DTServerCatalog.invalidateAll();
     }
 
     public TestRun getTestRunFromXML(final String uuid) {
@@ -150,10 +96,7 @@ public class DTServerConnection {
         builder.setServerAddress(this.address);
         URL url = builder.testRunDetailsURL(systemProfile, uuid);
         try {
-            XMLReader xr = XMLReaderFactory.createXMLReader();
-            TestRunDetailsXMLHandler handler = new TestRunDetailsXMLHandler();
-            xr.setContentHandler(handler);
-            xr.parse(new InputSource(getInputStream(url)));
+            TestRunDetailsXMLHandler handler = getXMLHandler(url, null, new TestRunDetailsXMLHandler());
             return handler.getParsedObjects();
         } catch (Exception ex) {
             throw new ContentRetrievalException(ExceptionUtils.getStackTrace(ex) + "Could not retrieve records from Dynatrace server: " + url.toString(), ex);
@@ -168,10 +111,7 @@ public class DTServerConnection {
         List<ChartDashlet> chartDashlets;
         List<IncidentChart> incidentCharts;
         try {
-            XMLReader xr = XMLReaderFactory.createXMLReader();
-            DashboardXMLHandler handler = new DashboardXMLHandler();
-            xr.setContentHandler(handler);
-            xr.parse(new InputSource(getInputStream(url)));
+            DashboardXMLHandler handler = getXMLHandler(url, null, new DashboardXMLHandler());
             chartDashlets = handler.getParsedObjects();
             incidentCharts = handler.getIncidents();
         } catch (Exception ex) {
@@ -183,35 +123,23 @@ public class DTServerConnection {
         return dashboardReport;
     }
 
-    private InputStream getInputStream(final URL documentURL) throws IOException {
-        URLConnection conn = documentURL.openConnection(proxy);
-        addAuthenticationHeader(conn);
-        return handleInputStream((HttpURLConnection) conn);
-    }
-
-    private void addAuthenticationHeader(final URLConnection conn) throws UnsupportedEncodingException {
-        String userPassword = user + Messages.DTServerConnection_SEPARATORColon() + password;
-        String token = DatatypeConverter.printBase64Binary(userPassword.getBytes("UTF-8"));
-        conn.setRequestProperty(Messages.DTServerConnection_PROPERTYAuthorization(), Messages.DTServerConnection_PROPERTYBasic() + " " + token);
+    private void addAuthenticationHeader(final HttpURLConnection conn) {
+        conn.setRequestProperty(Messages.DTServerConnection_PROPERTYAuthorization(), authorization);
         conn.setUseCaches(false);
         conn.setRequestProperty("Accept-Encoding", "gzip, deflate");
-
-        conn.setConnectTimeout(60 * 1000);
-        conn.setReadTimeout(120 * 1000);
-
-        if (conn instanceof HttpsURLConnection && !verifyCertificate) {
-            HttpsURLConnection httpsConn = (HttpsURLConnection) conn;
-            httpsConn.setHostnameVerifier(allHostsValid);
-            httpsConn.setSSLSocketFactory(sc.getSocketFactory());
-        }
     }
 
-    private void addPostHeaders(final URLConnection conn, final String parameters) throws IOException {
+    private void addPostHeaders(final HttpURLConnection conn, final String parameters) throws IOException {
         if (parameters == null) {
             return;
         }
         conn.setDoOutput(true);
-        IOUtils.write(parameters, conn.getOutputStream());
+        OutputStream out = conn.getOutputStream();
+        try {
+            IOUtils.write(parameters, out);
+        } finally {
+            IOUtils.closeQuietly(out);
+        }
     }
 
     private InputStream handleInputStream(final HttpURLConnection conn) throws IOException {
@@ -227,81 +155,81 @@ public class DTServerConnection {
         return resultingInputStream;
     }
 
-    private RESTResultXMLHandler getResultXMLHandler(final URLConnection conn) throws IOException, SAXException {
-        HttpURLConnection httpURLConnection = (HttpURLConnection) conn;
-        handleHTTPResponseCode(httpURLConnection);
-
-        RESTResultXMLHandler handler = new RESTResultXMLHandler();
-        XMLReader xr = XMLReaderFactory.createXMLReader();
-        xr.setContentHandler(handler);
-        xr.parse(new InputSource(handleInputStream(httpURLConnection)));
-
-        return handler;
+    /**
+     * sends the request over a pooled connection of the server transport and parses the response with the given handler.
+     * The response stream is always closed, so the connection can be kept alive and reused by the next request.
+     */
+    private <T extends DefaultHandler> T getXMLHandler(final URL url, final String postParameters, final T handler) throws IOException, SAXException {
+        HttpURLConnection conn = transport.openConnection(url);
+        int responseCode = -1;
+        boolean completed = false;
+        try {
+            addAuthenticationHeader(conn);
+            addPostHeaders(conn, postParameters);
+            responseCode = conn.getResponseCode();
+            handleHTTPResponseCode(conn);
+            parse(conn, handler);
+            completed = true;
+            return handler;
+        } finally {
+            transport.releaseConnection(conn, isFailed(responseCode, completed));
+        }
     }
 
-    private ProfileXMLHandler getProfileXMLHandler(final URLConnection conn) throws IOException, SAXException {
-        HttpURLConnection httpURLConnection = (HttpURLConnection) conn;
-        handleHTTPResponseCode(httpURLConnection);
-
-        ProfileXMLHandler handler = new ProfileXMLHandler();
-        XMLReader xr = XMLReaderFactory.createXMLReader();
-        xr.setContentHandler(handler);
-        xr.parse(new InputSource(handleInputStream(httpURLConnection)));
-
-        return handler;
+    /**
+     * only unreachable servers, timeouts and server errors count as failures for the circuit breaker of the server,
+     * a rejected request (e.g. an unknown session) says nothing about the health of the server
+     */
+    private static boolean isFailed(final int responseCode, final boolean completed) {
+        return !completed && (responseCode < 0 || responseCode >= 500);
     }
 
-    private AgentXMLHandler getAgentXMLHandler(final URLConnection conn) throws IOException, SAXException {
-        HttpURLConnection httpURLConnection = (HttpURLConnection) conn;
-        handleHTTPResponseCode(httpURLConnection);
-
-        AgentXMLHandler handler = new AgentXMLHandler();
-        XMLReader xr = XMLReaderFactory.createXMLReader();
-        xr.setContentHandler(handler);
-        xr.parse(new InputSource(handleInputStream(httpURLConnection)));
-
-        return handler;
+    /**
+     * like {@link #getXMLHandler(URL, String, DefaultHandler)} for idempotent GET requests, concurrent calls
+     * with the same URL and credentials share one request and its parsed handler, see {@link RequestCoalescer}.
+     * The handler is shared, so its results must not be modified by the caller.
+     */
+    private <T extends DefaultHandler> T getSharedXMLHandler(final URL url, final Callable<T> request) throws Exception {
+        return RequestCoalescer.execute(url.toString() + '|' + authorization, request);
     }
 
-    private RESTStringArrayXMLHandler getStringArrayXMLHandler(final URLConnection conn) throws IOException, SAXException {
-        HttpURLConnection httpURLConnection = (HttpURLConnection) conn;
-        handleHTTPResponseCode(httpURLConnection);
-
-        RESTStringArrayXMLHandler handler = new RESTStringArrayXMLHandler();
-        XMLReader xr = XMLReaderFactory.createXMLReader();
-        xr.setContentHandler(handler);
-        xr.parse(new InputSource(handleInputStream(httpURLConnection)));
-
-        return handler;
+    private void parse(final HttpURLConnection conn, final DefaultHandler handler) throws IOException, SAXException {
+        InputStream in = handleInputStream(conn);
+        try {
+            XMLStreamParser.parse(in, handler);
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
     }
 
-    private RESTDumpStatusXMLHandler getDumpStatusXMLHandler(final URLConnection conn) throws IOException, SAXException {
-        HttpURLConnection httpURLConnection = (HttpURLConnection) conn;
-        handleHTTPResponseCode(httpURLConnection);
-
-        RESTDumpStatusXMLHandler handler = new RESTDumpStatusXMLHandler();
-        XMLReader xr = XMLReaderFactory.createXMLReader();
-        xr.setContentHandler(handler);
-        xr.parse(new InputSource(handleInputStream(httpURLConnection)));
-
-        return handler;
+    /**
+     * downloads the artifact with the {@link ArtifactTransfer}, progress is written to the logger if not null
+     */
+    private void download(final URL url, final File file, final PrintStream logger) throws IOException, SAXException, InterruptedException {
+        new ArtifactTransfer(transport, authorization, maxDownloadRate, logger).transfer(url, file);
     }
 
-    private void handleHTTPResponseCode(final HttpURLConnection httpURLConnection) throws IOException, SAXException {
-        XMLReader xr = XMLReaderFactory.createXMLReader();
+    static void handleHTTPResponseCode(final HttpURLConnection httpURLConnection) throws IOException, SAXException {
         if (httpURLConnection.getResponseCode() >= 300) {
-            if (httpURLConnection.getResponseCode() == 401) {
-                throw new RESTErrorException("invalid username/password. ResponseCode " + httpURLConnection.getResponseCode());
-            }
-            RESTErrorXMLHandler handler = new RESTErrorXMLHandler();
-            xr.setContentHandler(handler);
-            httpURLConnection.setReadTimeout(15000);
+            InputStream errorStream = httpURLConnection.getErrorStream();
             try {
-                xr.parse(new InputSource(httpURLConnection.getErrorStream()));
-            } catch (RuntimeException e) {
-                throw new RESTErrorException("unexpected response code HTTP " + httpURLConnection.getResponseCode());
+                if (httpURLConnection.getResponseCode() == 401) {
+                    throw new RESTErrorException("invalid username/password. ResponseCode " + httpURLConnection.getResponseCode());
+                }
+                if (errorStream == null) {
+                    throw new RESTErrorException("unexpected response code HTTP " + httpURLConnection.getResponseCode());
+                }
+                RESTErrorXMLHandler handler = new RESTErrorXMLHandler();
+                httpURLConnection.setReadTimeout(15000);
+                try {
+                    XMLStreamParser.parse(errorStream, handler);
+                } catch (RuntimeException e) {
+                    throw new RESTErrorException("unexpected response code HTTP " + httpURLConnection.getResponseCode());
+                }
+                throw new RESTErrorException(handler.getReasonString());
+            } finally {
+                IOUtils.closeQuietly(errorStream);
             }
-            throw new RESTErrorException(handler.getReasonString());
         }
     }
 
@@ -319,11 +247,12 @@ public class DTServerConnection {
         try {
             ManagementURLBuilder builder = new ManagementURLBuilder();
             builder.setServerAddress(this.address);
-            URL commandURL = builder.serverVersionURL();
-            URLConnection conn = commandURL.openConnection(proxy);
-            addAuthenticationHeader(conn);
-
-            RESTResultXMLHandler handler = getResultXMLHandler(conn);
+            final URL commandURL = builder.serverVersionURL();
+            RESTResultXMLHandler handler = getSharedXMLHandler(commandURL, new Callable<RESTResultXMLHandler>() {
+                public RESTResultXMLHandler call() throws Exception {
+                    return getXMLHandler(commandURL, null, new RESTResultXMLHandler());
+                }
+            });
             return handler.getResultString();
         } catch (Exception ex) {
             throw new CommandExecutionException("error getting version of server: " + ex.getMessage(), ex);
@@ -335,9 +264,7 @@ public class DTServerConnection {
             ManagementURLBuilder builder = new ManagementURLBuilder();
             builder.setServerAddress(this.address);
             URL commandURL = builder.reanalyzeSessionURL(sessionName);
-            URLConnection conn = commandURL.openConnection(proxy);
-            addAuthenticationHeader(conn);
-            RESTResultXMLHandler handler = getResultXMLHandler(conn);
+            RESTResultXMLHandler handler = getXMLHandler(commandURL, null, new RESTResultXMLHandler());
             return handler.isResultTrue();
         } catch (Exception ex) {
             throw new CommandExecutionException("error reanalyzing session: " + ex.getMessage(), ex);
@@ -349,10 +276,7 @@ public class DTServerConnection {
             ManagementURLBuilder builder = new ManagementURLBuilder();
             builder.setServerAddress(this.address);
             URL commandURL = builder.reanalyzeSessionStatusURL(sessionName);
-            URLConnection conn = commandURL.openConnection(proxy);
-            addAuthenticationHeader(conn);
-
-            RESTResultXMLHandler handler = getResultXMLHandler(conn);
+            RESTResultXMLHandler handler = getXMLHandler(commandURL, null, new RESTResultXMLHandler());
             return handler.isResultTrue();
         } catch (Exception ex) {
             throw new CommandExecutionException("error reanalyzing session: " + ex.getMessage(), ex);
@@ -365,14 +289,12 @@ public class DTServerConnection {
             ManagementURLBuilder builder = new ManagementURLBuilder();
             builder.setServerAddress(this.address);
             URL commandURL = builder.startRecordingURL(systemProfile, sessionName, description, recordingOption, sessionLocked, isNoTimestamp);
-            URLConnection conn = commandURL.openConnection(proxy);
-            addAuthenticationHeader(conn);
-            addPostHeaders(conn, builder.getPostParameters());
-
-            RESTResultXMLHandler handler = getResultXMLHandler(conn);
+            RESTResultXMLHandler handler = getXMLHandler(commandURL, builder.getPostParameters(), new RESTResultXMLHandler());
             return handler.getResultString();
         } catch (Exception ex) {
             throw new CommandExecutionException("error start recording session: " + ex.getMessage(), ex);
+        } finally {
+            catalog.invalidateProfiles();
         }
     }
 
@@ -381,13 +303,12 @@ public class DTServerConnection {
             ManagementURLBuilder builder = new ManagementURLBuilder();
             builder.setServerAddress(this.address);
             URL commandURL = builder.stopRecordingURL(systemProfile);
-            URLConnection conn = commandURL.openConnection(proxy);
-            addAuthenticationHeader(conn);
-
-            RESTResultXMLHandler handler = getResultXMLHandler(conn);
+            RESTResultXMLHandler handler = getXMLHandler(commandURL, null, new RESTResultXMLHandler());
             return handler.getResultString();
         } catch (Exception ex) {
             throw new CommandExecutionException("error stop recording session: " + ex.getMessage(), ex);
+        } finally {
+            catalog.invalidateProfiles();
         }
     }
 
@@ -395,26 +316,36 @@ public class DTServerConnection {
         try {
             ManagementURLBuilder builder = new ManagementURLBuilder();
             builder.setServerAddress(this.address);
-            URL commandURL = builder.listSessionsURL();
-            URLConnection conn = commandURL.openConnection(proxy);
-            addAuthenticationHeader(conn);
-
-            RESTStringArrayXMLHandler handler = getStringArrayXMLHandler(conn);
-            return handler.getObjects();
+            final URL commandURL = builder.listSessionsURL();
+            RESTStringArrayXMLHandler handler = getSharedXMLHandler(commandURL, new Callable<RESTStringArrayXMLHandler>() {
+                public RESTStringArrayXMLHandler call() throws Exception {
+                    RESTStringArrayXMLHandler handler = getXMLHandler(commandURL, null, new RESTStringArrayXMLHandler());
+                    catalog.updateSessions(handler.getObjects());
+                    return handler;
+                }
+            });
+            return new ArrayList<String>(handler.getObjects());
         } catch (Exception ex) {
             throw new CommandExecutionException("error listing sessions: " + ex.getMessage(), ex);
         }
     }
 
+    /**
+     * checks if the server has stored the given session. Known sessions are answered from the session catalog
+     * of this server, the session list is only requested again if the session is unknown or the catalog expired.
+     */
+    public boolean isSessionAvailable(final String sessionName) {
+        if (sessionName == null) return false;
+        if (catalog.containsSession(sessionName)) return true;
+        return getSessions().contains(sessionName);
+    }
+
     public List<String> getDashboards() {
         try {
             ManagementURLBuilder builder = new ManagementURLBuilder();
             builder.setServerAddress(this.address);
             URL commandURL = builder.listDashboardsURL();
-            URLConnection conn = commandURL.openConnection(proxy);
-            addAuthenticationHeader(conn);
-
-            RESTStringArrayXMLHandler handler = getStringArrayXMLHandler(conn);
+            RESTStringArrayXMLHandler handler = getXMLHandler(commandURL, null, new RESTStringArrayXMLHandler());
             return handler.getObjects();
         } catch (Exception ex) {
             throw new CommandExecutionException("error listing profiles: " + ex.getMessage(), ex);
@@ -425,26 +356,51 @@ public class DTServerConnection {
         try {
             ManagementURLBuilder builder = new ManagementURLBuilder();
             builder.setServerAddress(this.address);
-            URL commandURL = builder.listProfilesURL();
-            URLConnection conn = commandURL.openConnection(proxy);
-            addAuthenticationHeader(conn);
-
-            ProfileXMLHandler handler = getProfileXMLHandler(conn);
-            return handler.getConfigurationObjects();
+            final URL commandURL = builder.listProfilesURL();
+            ProfileXMLHandler handler = getSharedXMLHandler(commandURL, new Callable<ProfileXMLHandler>() {
+                public ProfileXMLHandler call() throws Exception {
+                    final long generation = catalog.getProfilesGeneration();
+                    ProfileXMLHandler handler = getXMLHandler(commandURL, null, new ProfileXMLHandler());
+                    catalog.updateProfiles(handler.getConfigurationObjects(), generation);
+                    return handler;
+                }
+            });
+            return new ArrayList<BaseConfiguration>(handler.getConfigurationObjects());
         } catch (Exception ex) {
             throw new CommandExecutionException("error listing profiles: " + ex.getMessage(), ex);
         }
     }
 
+    /**
+     * looks up a single system profile in the profile catalog of this server,
+     * the profile list is requested again once the catalog is older than a few seconds
+     *
+     * @return the system profile or null if the server doesn't know the profile
+     */
+    public SystemProfile getSystemProfile(final String profileName) {
+        Map<String, SystemProfile> profiles = catalog.getProfiles();
+        for (int attempt = 0; profiles == null && attempt < 2; attempt++) {
+            // a shared fetch which started before recording was started or stopped is not taken over, fetch again
+            getSystemProfiles();
+            profiles = catalog.getProfiles();
+        }
+        return profiles == null ? null : profiles.get(profileName);
+    }
+
+    /**
+     * @return true if the system profile of this connection is currently recording a session
+     */
+    public boolean isRecording() {
+        SystemProfile profile = getSystemProfile(systemProfile);
+        return profile != null && profile.isRecording();
+    }
+
     public List<BaseConfiguration> getProfileConfigurations() {
         try {
             ManagementURLBuilder builder = new ManagementURLBuilder();
             builder.setServerAddress(this.address);
             URL commandURL = builder.listConfigurationsURL(systemProfile);
-            URLConnection conn = commandURL.openConnection(proxy);
-            addAuthenticationHeader(conn);
-
-            ProfileXMLHandler handler = getProfileXMLHandler(conn);
+            ProfileXMLHandler handler = getXMLHandler(commandURL, null, new ProfileXMLHandler());
             return handler.getConfigurationObjects();
         } catch (Exception ex) {
             throw new CommandExecutionException("error listing configurations of profile " + systemProfile + ": " + ex.getMessage(), ex);
@@ -456,10 +412,7 @@ public class DTServerConnection {
             ManagementURLBuilder builder = new ManagementURLBuilder();
             builder.setServerAddress(this.address);
             URL commandURL = builder.activateConfigurationURL(systemProfile, configuration);
-            URLConnection conn = commandURL.openConnection(proxy);
-            addAuthenticationHeader(conn);
-
-            RESTResultXMLHandler handler = getResultXMLHandler(conn);
+            RESTResultXMLHandler handler = getXMLHandler(commandURL, null, new RESTResultXMLHandler());
             return handler.isResultTrue();
         } catch (Exception ex) {
             throw new CommandExecutionException("error activating configuration: " + ex.getMessage());
@@ -470,12 +423,13 @@ public class DTServerConnection {
         try {
             ManagementURLBuilder builder = new ManagementURLBuilder();
             builder.setServerAddress(this.address);
-            URL commandURL = builder.listAgentsURL();
-            URLConnection conn = commandURL.openConnection(proxy);
-            addAuthenticationHeader(conn);
-
-            AgentXMLHandler handler = getAgentXMLHandler(conn);
-            return handler.getAgents();
+            final URL commandURL = builder.listAgentsURL();
+            AgentXMLHandler handler = getSharedXMLHandler(commandURL, new Callable<AgentXMLHandler>() {
+                public AgentXMLHandler call() throws Exception {
+                    return getXMLHandler(commandURL, null, new AgentXMLHandler());
+                }
+            });
+            return new ArrayList<Agent>(handler.getAgents());
         } catch (Exception ex) {
             throw new CommandExecutionException("error listing agents: " + ex.getMessage(), ex);
         }
@@ -496,10 +450,7 @@ public class DTServerConnection {
             ManagementURLBuilder builder = new ManagementURLBuilder();
             builder.setServerAddress(this.address);
             URL commandURL = builder.hotSensorPlacementURL(agentId);
-            URLConnection conn = commandURL.openConnection(proxy);
-            addAuthenticationHeader(conn);
-
-            RESTResultXMLHandler handler = getResultXMLHandler(conn);
+            RESTResultXMLHandler handler = getXMLHandler(commandURL, null, new RESTResultXMLHandler());
             return handler.isResultTrue();
         } catch (Exception ex) {
             throw new CommandExecutionException("error doing hot sensor placement: " + ex.getMessage(), ex);
@@ -507,6 +458,14 @@ public class DTServerConnection {
     }
 
     public boolean getPDFReport(final String sessionName, final String comparedSessionName, final String dashboard, final File file) {
+        return getPDFReport(sessionName, comparedSessionName, dashboard, file, null);
+    }
+
+    /**
+     * @param logger build console for the download progress, may be null
+     */
+    public boolean getPDFReport(final String sessionName, final String comparedSessionName, final String dashboard, final File file,
+                                final PrintStream logger) {
         try {
             ReportURLBuilder builder = new ReportURLBuilder();
             builder.setServerAddress(this.address)
@@ -514,8 +473,7 @@ public class DTServerConnection {
                     .setSource(sessionName)
                     .setType("PDF");
             if (comparedSessionName != null) builder.setComparison(comparedSessionName);
-            final FilePath out = new FilePath(file);
-            out.copyFrom(getInputStream(builder.buildURL(true)));
+            download(builder.buildURL(true), file, logger);
             return true;
         } catch (Exception ex) {
             throw new CommandExecutionException("error downloading PDF Report: " + ex.getMessage(), ex);
@@ -523,12 +481,17 @@ public class DTServerConnection {
     }
 
     public boolean downloadSession(final String sessionName, final File outputFile) {
+        return downloadSession(sessionName, outputFile, null);
+    }
+
+    /**
+     * @param logger build console for the download progress, may be null
+     */
+    public boolean downloadSession(final String sessionName, final File outputFile, final PrintStream logger) {
         try {
             ManagementURLBuilder builder = new ManagementURLBuilder();
             builder.setServerAddress(this.address);
-
-            final FilePath out = new FilePath(outputFile);
-            out.copyFrom(getInputStream(builder.downloadSessionURL(sessionName)));
+            download(builder.downloadSessionURL(sessionName), outputFile, logger);
             return true;
         } catch (Exception ex) {
             throw new CommandExecutionException("error downloading session: " + ex.getMessage(), ex);
@@ -540,11 +503,7 @@ public class DTServerConnection {
             ManagementURLBuilder builder = new ManagementURLBuilder();
             builder.setServerAddress(this.address);
             URL commandURL = builder.threadDumpURL(systemProfile, agentName, hostName, processId, sessionLocked);
-            URLConnection conn = commandURL.openConnection(proxy);
-            addAuthenticationHeader(conn);
-            addPostHeaders(conn, builder.getPostParameters());
-
-            RESTResultXMLHandler handler = getResultXMLHandler(conn);
+            RESTResultXMLHandler handler = getXMLHandler(commandURL, builder.getPostParameters(), new RESTResultXMLHandler());
             return handler.getResultString();
         } catch (Exception ex) {
             throw new CommandExecutionException("error with thread dump: " + ex.getMessage(), ex);
@@ -556,10 +515,7 @@ public class DTServerConnection {
             ManagementURLBuilder builder = new ManagementURLBuilder();
             builder.setServerAddress(this.address);
             URL commandURL = builder.threadDumpStatusURL(systemProfile, threadDump);
-            URLConnection conn = commandURL.openConnection(proxy);
-            addAuthenticationHeader(conn);
-
-            RESTDumpStatusXMLHandler handler = getDumpStatusXMLHandler(conn);
+            RESTDumpStatusXMLHandler handler = getXMLHandler(commandURL, null, new RESTDumpStatusXMLHandler());
             return handler.getDumpStatus();
         } catch (Exception ex) {
             throw new CommandExecutionException("error with thread dump status: " + ex.getMessage(), ex);
@@ -572,11 +528,7 @@ public class DTServerConnection {
             ManagementURLBuilder builder = new ManagementURLBuilder();
             builder.setServerAddress(this.address);
             URL commandURL = builder.memoryDumpURL(systemProfile, agentName, hostName, processId, dumpType, sessionLocked, captureStrings, capturePrimitives, autoPostProcess, dogC);
-            URLConnection conn = commandURL.openConnection(proxy);
-            addAuthenticationHeader(conn);
-            addPostHeaders(conn, builder.getPostParameters());
-
-            RESTResultXMLHandler handler = getResultXMLHandler(conn);
+            RESTResultXMLHandler handler = getXMLHandler(commandURL, builder.getPostParameters(), new RESTResultXMLHandler());
             return handler.getResultString();
         } catch (Exception ex) {
             throw new CommandExecutionException("error with memory dump: " + ex.getMessage(), ex);
@@ -588,10 +540,7 @@ public class DTServerConnection {
             ManagementURLBuilder builder = new ManagementURLBuilder();
             builder.setServerAddress(this.address);
             URL commandURL = builder.memoryDumpStatusURL(systemProfile, memoryDump);
-            URLConnection conn = commandURL.openConnection(proxy);
-            addAuthenticationHeader(conn);
-
-            RESTDumpStatusXMLHandler handler = getDumpStatusXMLHandler(conn);
+            RESTDumpStatusXMLHandler handler = getXMLHandler(commandURL, null, new RESTDumpStatusXMLHandler());
             return handler.getDumpStatus();
         } catch (Exception ex) {
             throw new CommandExecutionException("error with memory dump status: " + ex.getMessage(), ex);
@@ -619,21 +568,24 @@ public class DTServerConnection {
             ManagementURLBuilder builder = new ManagementURLBuilder();
             builder.setServerAddress(this.address);
             URL commandURL = builder.registerTestRunURL(systemProfile);
-            HttpURLConnection conn = (HttpURLConnection) commandURL.openConnection(proxy);
-            conn.setRequestMethod("POST");
-            addAuthenticationHeader(conn);
-            conn.setRequestProperty("Content-Type", "text/xml");
-
-            conn.setDoOutput(true);
-            IOUtils.write(testMetaDataPostXml, conn.getOutputStream());
-
-            handleHTTPResponseCode(conn);
-            TestMetaDataXMLHandler handler = new TestMetaDataXMLHandler();
-            XMLReader xr = XMLReaderFactory.createXMLReader();
-            xr.setContentHandler(handler);
-            xr.parse(new InputSource(handleInputStream(conn)));
-
-            return handler.getTestMetaDataUUID();
+            HttpURLConnection conn = transport.openConnection(commandURL);
+            int responseCode = -1;
+            boolean completed = false;
+            try {
+                conn.setRequestMethod("POST");
+                addAuthenticationHeader(conn);
+                conn.setRequestProperty("Content-Type", "text/xml");
+                addPostHeaders(conn, testMetaDataPostXml);
+
+                responseCode = conn.getResponseCode();
+                handleHTTPResponseCode(conn);
+                TestMetaDataXMLHandler handler = new TestMetaDataXMLHandler();
+                parse(conn, handler);
+                completed = true;
+                return handler.getTestMetaDataUUID();
+            } finally {
+                transport.releaseConnection(conn, isFailed(responseCode, completed));
+            }
         } catch (Exception ex) {
             throw new CommandExecutionException("error setting testdata in startTest: " + ex.getMessage(), ex);
         }
@@ -0,0 +1,341 @@
+/*
+ * Copyright (c) 2014 T-Systems Multimedia Solutions GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.tsystems.mms.apm.performancesignature.dynatrace.rest;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Logger;
+
+/**
+ * Admission control for the requests sent to one Dynatrace server. At most maxInFlight requests are
+ * sent at the same time, waiting requests are admitted by {@link RequestPriority}, so form lookups
+ * don't queue up behind PDF downloads. One slot is kept for the interactive lane, which is never taken by
+ * build requests. Interactive requests give up waiting after a short time, build requests wait until a slot
+ * is free unless a queue timeout is configured.
+ * After a number of consecutive failures (connection errors, timeouts, HTTP 5xx) the circuit opens and
+ * every request fails fast until the cool-down is over. Then a single trial request is let through,
+ * its outcome closes or reopens the circuit. Requests admitted before the circuit opened don't change
+ * the state of an open circuit, every admission gets a ticket so the trial request can be told apart.
+ */
+public final class DTServerScheduler {
+    static final int FAILURE_THRESHOLD = Integer.getInteger(DTServerScheduler.class.getName() + ".failureThreshold", 5);
+    static final long COOL_DOWN = Long.getLong(DTServerScheduler.class.getName() + ".coolDown", 30 * 1000);
+    /**
+     * number of slots only interactive requests may use, at least one slot is always left for the other lanes
+     */
+    static final int RESERVED_INTERACTIVE = Integer.getInteger(DTServerScheduler.class.getName() + ".reservedInteractive", 1);
+    /**
+     * maximum time in milliseconds an interactive request waits for a slot
+     */
+    static final long INTERACTIVE_QUEUE_TIMEOUT = Long.getLong(DTServerScheduler.class.getName() + ".interactiveQueueTimeout", 15 * 1000);
+    /**
+     * maximum time in milliseconds a build request waits for a slot, 0 waits until a slot is free
+     */
+    static final long BUILD_QUEUE_TIMEOUT = Long.getLong(DTServerScheduler.class.getName() + ".buildQueueTimeout", 0);
+    private static final Logger LOGGER = Logger.getLogger(DTServerScheduler.class.getName());
+    private static final int LANES = RequestPriority.values().length;
+
+    private final String address;
+    private final int maxInFlight;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition available = lock.newCondition();
+    private final int[] waiting = new int[LANES];
+    private final long[] admitted = new long[LANES];
+    private final long[] totalWait = new long[LANES];
+    private final long[] maxWait = new long[LANES];
+    private int inFlight;
+    private long timeouts, rejected;
+
+    private CircuitState circuitState = CircuitState.CLOSED;
+    private int consecutiveFailures;
+    private long openUntil;
+    private boolean trialRunning;
+    private long trialTicket;
+    private long lastTicket;
+    private long circuitOpened;
+
+    DTServerScheduler(final String address, final int maxInFlight) {
+        this.address = address;
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * @return maximum time in milliseconds a request of the given lane waits for a slot, 0 if it waits until a slot is free
+     */
+    public static long getQueueTimeout(final RequestPriority priority) {
+        return priority == RequestPriority.INTERACTIVE ? INTERACTIVE_QUEUE_TIMEOUT : BUILD_QUEUE_TIMEOUT;
+    }
+
+    /**
+     * waits for a free request slot of the lane at most {@link #getQueueTimeout(RequestPriority)},
+     * has to be paired with {@link #release(long, boolean)}
+     *
+     * @return the ticket of the admitted request
+     * @throws IOException if the circuit is open, the timeout elapsed or the thread was interrupted
+     */
+    long acquire(final RequestPriority priority) throws IOException {
+        final int lane = priority.ordinal();
+        final long timeout = getQueueTimeout(priority);
+        final int slots = getSlots(priority);
+        final long start = System.nanoTime();
+        lock.lock();
+        try {
+            checkCircuit(false);
+            waiting[lane]++;
+            try {
+                long remaining = TimeUnit.MILLISECONDS.toNanos(timeout);
+                while (inFlight >= slots || isHigherLaneWaiting(lane)) {
+                    if (timeout <= 0) {
+                        available.await();
+                        continue;
+                    }
+                    if (remaining <= 0) {
+                        timeouts++;
+                        throw new IOException("timed out waiting for a free connection to " + address);
+                    }
+                    remaining = available.awaitNanos(remaining);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("interrupted while waiting for a free connection to " + address);
+            } finally {
+                waiting[lane]--;
+                // lower lanes may have been waiting for this lane only
+                available.signalAll();
+            }
+            final boolean trial = checkCircuit(true);
+
+            final long waited = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            inFlight++;
+            admitted[lane]++;
+            totalWait[lane] += waited;
+            maxWait[lane] = Math.max(maxWait[lane], waited);
+            final long ticket = ++lastTicket;
+            if (trial) {
+                trialTicket = ticket;
+            }
+            return ticket;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * gives back the slot borrowed by {@link #acquire(RequestPriority)}
+     *
+     * @param ticket the result of {@link #acquire(RequestPriority)}
+     * @param failed true if the server could not be reached, timed out or answered with a server error
+     */
+    void release(final long ticket, final boolean failed) {
+        lock.lock();
+        try {
+            inFlight--;
+            if (circuitState != CircuitState.CLOSED && ticket != trialTicket) {
+                // admitted before the circuit opened, says nothing about the outcome of the trial
+                available.signalAll();
+                return;
+            }
+            trialRunning = false;
+            trialTicket = 0;
+            if (failed) {
+                consecutiveFailures++;
+                if (circuitState != CircuitState.CLOSED || consecutiveFailures >= FAILURE_THRESHOLD) {
+                    if (circuitState == CircuitState.CLOSED) {
+                        LOGGER.warning(String.format("%d consecutive requests to %s failed, rejecting requests for %d seconds",
+                                consecutiveFailures, address, COOL_DOWN / 1000));
+                    }
+                    circuitState = CircuitState.OPEN;
+                    openUntil = System.currentTimeMillis() + COOL_DOWN;
+                    circuitOpened++;
+                }
+            } else {
+                if (circuitState != CircuitState.CLOSED) {
+                    LOGGER.info("requests to " + address + " succeed again, closing the circuit");
+                }
+                consecutiveFailures = 0;
+                circuitState = CircuitState.CLOSED;
+            }
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return number of slots the lane may use, the reserved slots are left to the interactive lane
+     */
+    private int getSlots(final RequestPriority priority) {
+        if (priority == RequestPriority.INTERACTIVE) return maxInFlight;
+        return Math.max(1, maxInFlight - Math.max(0, RESERVED_INTERACTIVE));
+    }
+
+    private boolean isHigherLaneWaiting(final int lane) {
+        for (int i = 0; i < lane; i++) {
+            if (waiting[i] > 0) return true;
+        }
+        return false;
+    }
+
+    /**
+     * @param admit true if the request is about to be sent, in the half open state only one trial request is admitted
+     * @return true if the request is admitted as trial request
+     */
+    private boolean checkCircuit(final boolean admit) throws IOException {
+        if (circuitState == CircuitState.OPEN && System.currentTimeMillis() >= openUntil) {
+            circuitState = CircuitState.HALF_OPEN;
+        }
+        if (circuitState == CircuitState.OPEN || circuitState == CircuitState.HALF_OPEN && trialRunning) {
+            rejected++;
+            throw new IOException(String.format("requests to %s are suspended after %d consecutive failures, retry in %d seconds",
+                    address, consecutiveFailures, Math.max(1, (openUntil - System.currentTimeMillis()) / 1000)));
+        }
+        if (admit && circuitState == CircuitState.HALF_OPEN) {
+            trialRunning = true;
+            return true;
+        }
+        return false;
+    }
+
+    public String getAddress() {
+        return address;
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return number of requests of the given lane waiting for a free slot
+     */
+    public int getQueueDepth(final RequestPriority priority) {
+        lock.lock();
+        try {
+            return waiting[priority.ordinal()];
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return number of requests of the given lane which got a slot
+     */
+    public long getAdmitted(final RequestPriority priority) {
+        lock.lock();
+        try {
+            return admitted[priority.ordinal()];
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return average time in milliseconds the admitted requests of the given lane waited for a slot
+     */
+    public long getAverageWait(final RequestPriority priority) {
+        lock.lock();
+        try {
+            final int lane = priority.ordinal();
+            return admitted[lane] == 0 ? 0 : totalWait[lane] / admitted[lane];
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return longest time in milliseconds an admitted request of the given lane waited for a slot
+     */
+    public long getMaxWait(final RequestPriority priority) {
+        lock.lock();
+        try {
+            return maxWait[priority.ordinal()];
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return number of requests which gave up waiting for a slot
+     */
+    public long getTimeouts() {
+        lock.lock();
+        try {
+            return timeouts;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return number of requests rejected by the open circuit
+     */
+    public long getRejected() {
+        lock.lock();
+        try {
+            return rejected;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return how often the circuit was opened
+     */
+    public long getCircuitOpened() {
+        lock.lock();
+        try {
+            return circuitOpened;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getConsecutiveFailures() {
+        lock.lock();
+        try {
+            return consecutiveFailures;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public CircuitState getCircuitState() {
+        lock.lock();
+        try {
+            if (circuitState == CircuitState.OPEN && System.currentTimeMillis() >= openUntil) {
+                return CircuitState.HALF_OPEN;
+            }
+            return circuitState;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public enum CircuitState {
+        CLOSED, OPEN, HALF_OPEN
+    }
+}
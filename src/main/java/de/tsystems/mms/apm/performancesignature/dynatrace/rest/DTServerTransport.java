@@ -0,0 +1,249 @@
+/*
+ * Copyright (c) 2014 T-Systems Multimedia Solutions GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.tsystems.mms.apm.performancesignature.dynatrace.rest;
+
+import de.tsystems.mms.apm.performancesignature.model.CustomProxy;
+import de.tsystems.mms.apm.performancesignature.model.DynatraceServerConfiguration;
+import de.tsystems.mms.apm.performancesignature.util.PerfSigUtils;
+import hudson.ProxyConfiguration;
+import hudson.model.Hudson;
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.SystemUtils;
+import org.apache.commons.lang.exception.ExceptionUtils;
+
+import javax.net.ssl.*;
+import java.io.IOException;
+import java.net.*;
+import java.security.KeyManagementException;
+import java.security.NoSuchAlgorithmException;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Logger;
+
+/**
+ * HTTP transport shared by all {@link DTServerConnection}s talking to the same Dynatrace server.
+ * The SSL socket factory is created once, so TLS sessions can be resumed, and response streams are
+ * closed instead of disconnected, so the JDK keep-alive cache can reuse the underlying sockets.
+ * The requests are admitted by the {@link DTServerScheduler} of the transport, which bounds the number of
+ * connections in use at the same time and stops sending requests to a failing server for a while.
+ */
+public final class DTServerTransport {
+    static final int CONNECT_TIMEOUT = 60 * 1000;
+    static final int READ_TIMEOUT = 120 * 1000;
+    private static final Logger LOGGER = Logger.getLogger(DTServerTransport.class.getName());
+    private static final ConcurrentMap<String, DTServerTransport> TRANSPORTS = new ConcurrentHashMap<String, DTServerTransport>();
+    /* Dynatrace is unable to provide proper Certs to trust by default
+     Create a trust manager that does not validate certificate chains */
+    private static final HostnameVerifier ALL_HOSTS_VALID = new HostnameVerifier() {
+        public boolean verify(final String hostname, final SSLSession session) {
+            return true;
+        }
+    };
+    private static SSLSocketFactory trustAllSocketFactory;
+
+    private final String address;
+    private final boolean verifyCertificate;
+    private final int maxConnections;
+    private final DTServerScheduler scheduler;
+    /**
+     * scheduler tickets of the open connections
+     */
+    private final Map<HttpURLConnection, Long> tickets = new ConcurrentHashMap<HttpURLConnection, Long>();
+    private Proxy proxy;
+
+    private DTServerTransport(final String address, final boolean verifyCertificate, final CustomProxy customProxy, final int maxConnections) {
+        this.address = address;
+        this.verifyCertificate = verifyCertificate;
+        this.maxConnections = maxConnections;
+        this.scheduler = new DTServerScheduler(address, maxConnections);
+        this.proxy = Proxy.NO_PROXY;
+
+        if (customProxy != null) {
+            Hudson hudson = PerfSigUtils.getInstanceOrDie();
+            if (customProxy.isUseJenkinsProxy() && hudson.proxy != null) {
+                final ProxyConfiguration proxyConfiguration = hudson.proxy;
+                if (StringUtils.isNotBlank(proxyConfiguration.name) && proxyConfiguration.port > 0) {
+                    this.proxy = new Proxy(Proxy.Type.HTTP, new InetSocketAddress(proxyConfiguration.name, proxyConfiguration.port));
+                    if (StringUtils.isNotBlank(proxyConfiguration.getUserName())) {
+                        Authenticator authenticator = new Authenticator() {
+                            public PasswordAuthentication getPasswordAuthentication() {
+                                return (new PasswordAuthentication(proxyConfiguration.getUserName(), proxyConfiguration.getPassword().toCharArray()));
+                            }
+                        };
+                        Authenticator.setDefault(authenticator);
+                    }
+                }
+            } else {
+                if (StringUtils.isNotBlank(customProxy.getProxyServer()) && customProxy.getProxyPort() > 0) {
+                    this.proxy = new Proxy(Proxy.Type.HTTP, new InetSocketAddress(customProxy.getProxyServer(), customProxy.getProxyPort()));
+                    if (StringUtils.isNotBlank(customProxy.getProxyUser())) {
+                        Authenticator authenticator = new Authenticator() {
+                            public PasswordAuthentication getPasswordAuthentication() {
+                                return (new PasswordAuthentication(customProxy.getProxyUser(), customProxy.getProxyPassword().toCharArray()));
+                            }
+                        };
+                        Authenticator.setDefault(authenticator);
+                    }
+                }
+            }
+        }
+    }
+
+    public static DTServerTransport getTransport(final DynatraceServerConfiguration config) {
+        return getTransport(config.getProtocol(), config.getHost(), config.getPort(), config.isVerifyCertificate(),
+                config.getCustomProxy(), config.getMaxConnections());
+    }
+
+    public static DTServerTransport getTransport(final String protocol, final String host, final int port, final boolean verifyCertificate,
+                                                 final CustomProxy customProxy, final int maxConnections) {
+        final String address = protocol + "://" + host + ":" + port;
+        final int connectionCount = maxConnections > 0 ? maxConnections : DynatraceServerConfiguration.DescriptorImpl.defaultMaxConnections;
+        final String key = address + "|" + verifyCertificate + "|" + connectionCount + "|" + getProxyKey(customProxy);
+
+        DTServerTransport transport = TRANSPORTS.get(key);
+        if (transport == null) {
+            transport = new DTServerTransport(address, verifyCertificate, customProxy, connectionCount);
+            DTServerTransport existing = TRANSPORTS.putIfAbsent(key, transport);
+            if (existing != null) transport = existing;
+        }
+        return transport;
+    }
+
+    /**
+     * drops all registered transports, e.g. after the server configurations have been changed.
+     * Connections currently in use are not affected.
+     */
+    public static void invalidateAll() {
+        TRANSPORTS.clear();
+    }
+
+    /**
+     * @return all registered transports, e.g. to report the state of their schedulers
+     */
+    public static Collection<DTServerTransport> getTransports() {
+        return new ArrayList<DTServerTransport>(TRANSPORTS.values());
+    }
+
+    private static String getProxyKey(final CustomProxy customProxy) {
+        if (customProxy == null) return "direct";
+        if (customProxy.isUseJenkinsProxy()) return "hudson";
+        return customProxy.getProxyServer() + ":" + customProxy.getProxyPort() + ":" + customProxy.getProxyUser();
+    }
+
+    private static synchronized SSLSocketFactory getTrustAllSocketFactory() {
+        if (trustAllSocketFactory == null) {
+            // Install the all-trusting trust manager
+            try {
+                SSLContext sc;
+                if (SystemUtils.IS_JAVA_1_6)
+                    sc = SSLContext.getInstance("TLSv1");
+                else
+                    sc = SSLContext.getInstance("TLSv1.2");
+                TrustManager[] trustAllCerts = new TrustManager[]{new X509TrustManager() {
+                    public X509Certificate[] getAcceptedIssuers() {
+                        return null;
+                    }
+
+                    public void checkClientTrusted(final X509Certificate[] certs, final String authType) {
+                    }
+
+                    public void checkServerTrusted(final X509Certificate[] certs, final String authType) {
+                    }
+                }
+                };
+                sc.init(null, trustAllCerts, new java.security.SecureRandom());
+                trustAllSocketFactory = sc.getSocketFactory();
+            } catch (NoSuchAlgorithmException e) {
+                LOGGER.severe(ExceptionUtils.getFullStackTrace(e));
+            } catch (KeyManagementException e) {
+                LOGGER.severe(ExceptionUtils.getFullStackTrace(e));
+            }
+        }
+        return trustAllSocketFactory;
+    }
+
+    public String getAddress() {
+        return address;
+    }
+
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    public int getAvailableConnections() {
+        return maxConnections - scheduler.getInFlight();
+    }
+
+    public DTServerScheduler getScheduler() {
+        return scheduler;
+    }
+
+    /**
+     * like {@link #openConnection(URL, RequestPriority)}, requests sent for a web request are interactive, all others normal
+     */
+    public HttpURLConnection openConnection(final URL url) throws IOException {
+        return openConnection(url, RequestPriority.current(RequestPriority.NORMAL));
+    }
+
+    /**
+     * borrows a connection slot in the given lane and opens a connection to the given URL.
+     * Every successful call has to be paired with {@link #releaseConnection(HttpURLConnection, boolean)} once the
+     * response streams are closed.
+     */
+    public HttpURLConnection openConnection(final URL url, final RequestPriority priority) throws IOException {
+        final long ticket = scheduler.acquire(priority);
+
+        try {
+            HttpURLConnection conn = (HttpURLConnection) url.openConnection(proxy);
+            conn.setConnectTimeout(CONNECT_TIMEOUT);
+            conn.setReadTimeout(READ_TIMEOUT);
+            conn.setRequestProperty("Connection", "keep-alive");
+
+            if (conn instanceof HttpsURLConnection && !verifyCertificate) {
+                HttpsURLConnection httpsConn = (HttpsURLConnection) conn;
+                httpsConn.setHostnameVerifier(ALL_HOSTS_VALID);
+                httpsConn.setSSLSocketFactory(getTrustAllSocketFactory());
+            }
+            tickets.put(conn, ticket);
+            return conn;
+        } catch (IOException e) {
+            scheduler.release(ticket, true);
+            throw e;
+        } catch (RuntimeException e) {
+            scheduler.release(ticket, false);
+            throw e;
+        }
+    }
+
+    /**
+     * gives back the connection slot borrowed by {@link #openConnection(URL, RequestPriority)}.
+     * The connection itself is not disconnected, the keep-alive cache takes care of the socket.
+     *
+     * @param failed true if the server could not be reached, timed out or answered with a server error,
+     *               consecutive failures suspend all requests to the server for a while
+     */
+    public void releaseConnection(final HttpURLConnection conn, final boolean failed) {
+        final Long ticket = tickets.remove(conn);
+        if (ticket != null) {
+            scheduler.release(ticket, failed);
+        }
+    }
+}
@@ -36,6 +36,10 @@ import java.util.ArrayList;
 import java.util.List;
 
 public class DashboardXMLHandler extends DefaultHandler {
+    private static final String INCIDENT_CHART = "incidentchart";
+    private static final String CHART_DASHLET = Messages.DashboardXMLHandler_AttrChartDashlet();
+    private static final String MEASURE = Messages.DashboardXMLHandler_AttrMeasure();
+    private static final String MEASUREMENT = Messages.DashboardXMLHandler_AttrMeasurement();
     private final List<ChartDashlet> chartDashlets;
     private final List<IncidentChart> incidents;
     private ChartDashlet chartDashlet;
@@ -48,25 +52,27 @@ public class DashboardXMLHandler extends DefaultHandler {
     }
 
     public void startElement(final String namespaceURI, final String localName, final String qName, final Attributes attr) {
-        if (localName.equals("incidentchart") && attr.getLength() == 3) {
+        // measurements are by far the most frequent elements, check them first
+        if (localName.equals(MEASUREMENT)) {
+            measure.addMeasurement(attr);
+        } else if (localName.equals(MEASURE)) {
+            measure = new Measure(attr);
+        } else if (localName.equals(CHART_DASHLET)) {
+            chartDashlet = new ChartDashlet(attr);
+        } else if (localName.equals(INCIDENT_CHART) && attr.getLength() == 3) {
             incidentChart = new IncidentChart(attr);
-        } else if (localName.equals("incidentchart") && attr.getLength() > 3) {
+        } else if (localName.equals(INCIDENT_CHART) && attr.getLength() > 3) {
             incidentChart.add(new IncidentViolation(attr));
-        } else if (localName.equals(Messages.DashboardXMLHandler_AttrChartDashlet())) {
-            chartDashlet = new ChartDashlet(attr);
-        } else if (localName.equals(Messages.DashboardXMLHandler_AttrMeasure())) {
-            measure = new Measure(attr);
-        } else if (localName.equals(Messages.DashboardXMLHandler_AttrMeasurement())) {
-            measure.addMeasurement(new Measurement(attr));
         }
     }
 
     public void endElement(final String uri, final String localName, final String qName) {
-        if (localName.equals("incidentchart") && incidentChart != null && incidentChart.getViolations() != null && !incidents.contains(incidentChart)) {
+        if (localName.equals(INCIDENT_CHART) && incidentChart != null && incidentChart.getViolations() != null && !incidents.contains(incidentChart)) {
             incidents.add(incidentChart);
-        } else if (localName.equals(Messages.DashboardXMLHandler_AttrChartDashlet())) {
+        } else if (localName.equals(CHART_DASHLET)) {
             chartDashlets.add(chartDashlet);
-        } else if (localName.equals(Messages.DashboardXMLHandler_AttrMeasure())) {
+        } else if (localName.equals(MEASURE)) {
+            measure.trimMeasurements();
             chartDashlet.addMeasure(measure);
         }
     }
@@ -38,6 +38,8 @@ import java.util.ArrayList;
 import java.util.List;
 
 public class ProfileXMLHandler extends DefaultHandler {
+    private static final String SYSTEM_PROFILE = Messages.ProfileXMLHandler_AttrSystemProfile();
+    private static final String CONFIGURATION = Messages.ProfileXMLHandler_AttrConfiguration();
     private final List<BaseConfiguration> configObjects;
 
     public ProfileXMLHandler() {
@@ -49,10 +51,10 @@ public class ProfileXMLHandler extends DefaultHandler {
     }
 
     public void startElement(final String namespaceURI, final String localName, final String qName, final Attributes attr) {
-        if (localName.equals(Messages.ProfileXMLHandler_AttrSystemProfile())) {
+        if (localName.equals(SYSTEM_PROFILE)) {
             this.configObjects.add(new SystemProfile(attr));
         }
-        if (localName.equals(Messages.ProfileXMLHandler_AttrConfiguration())) {
+        if (localName.equals(CONFIGURATION)) {
             this.configObjects.add(new Configuration(attr));
         }
     }
@@ -24,6 +24,8 @@ import java.util.ArrayList;
 import java.util.List;
 
 public class RESTStringArrayXMLHandler extends DefaultHandler {
+    private static final String SESSION = Messages.RESTStringArrayXMLHandler_AttrSession();
+    private static final String DASHBOARD = Messages.RESTStringArrayXMLHandler_AttrDashboard();
     private final CharArrayWriter contents = new CharArrayWriter();
     private final List<String> objects = new ArrayList<String>();
 
@@ -32,10 +34,10 @@ public class RESTStringArrayXMLHandler extends DefaultHandler {
     }
 
     public void startElement(final String namespaceURI, final String localName, final String qName, final Attributes attr) {
-        if (localName.equals(Messages.RESTStringArrayXMLHandler_AttrSession())) {
+        if (localName.equals(SESSION)) {
             this.objects.add(contents.toString());
         }
-        if (localName.equals(Messages.RESTStringArrayXMLHandler_AttrDashboard())) {
+        if (localName.equals(DASHBOARD)) {
             this.objects.add(attr.getValue("id"));
         }
         this.contents.reset();
@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2014 T-Systems Multimedia Solutions GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.tsystems.mms.apm.performancesignature.dynatrace.rest;
+
+import java.io.InterruptedIOException;
+import java.nio.channels.ClosedByInterruptException;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lets concurrent identical read requests share one call to the Dynatrace server.
+ * The first caller of a key sends the request, every caller arriving while it is in flight waits
+ * for the same result (or exception) instead of sending the request again. Nothing is kept once the
+ * request completed, so a later caller always gets a fresh answer.
+ * If the request fails because the thread of the first caller was interrupted, e.g. its build was aborted,
+ * the waiting callers don't get that failure, one of them sends the request again.
+ */
+public final class RequestCoalescer {
+    private static final ConcurrentMap<String, FutureTask<?>> IN_FLIGHT = new ConcurrentHashMap<String, FutureTask<?>>();
+    private static final AtomicLong EXECUTED = new AtomicLong();
+    private static final AtomicLong SHARED = new AtomicLong();
+
+    private RequestCoalescer() {
+    }
+
+    /**
+     * @return number of requests which were sent to a server
+     */
+    public static long getExecuted() {
+        return EXECUTED.get();
+    }
+
+    /**
+     * @return number of calls which were answered by a request of another caller
+     */
+    public static long getShared() {
+        return SHARED.get();
+    }
+
+    /**
+     * @return number of requests currently in flight
+     */
+    public static int getInFlight() {
+        return IN_FLIGHT.size();
+    }
+
+    /**
+     * @param key identifies the request, must contain the server, the credentials and the complete URL
+     * @return the result of the call, possibly computed for another caller
+     */
+    @SuppressWarnings("unchecked")
+    static <T> T execute(final String key, final Callable<T> call) throws Exception {
+        while (true) {
+            final FutureTask<T> task = new FutureTask<T>(new Callable<T>() {
+                public T call() throws Exception {
+                    try {
+                        return call.call();
+                    } catch (Exception e) {
+                        if (isInterruption(e)) throw new InterruptedCallException(e);
+                        throw e;
+                    }
+                }
+            });
+            final FutureTask<T> running = (FutureTask<T>) IN_FLIGHT.putIfAbsent(key, task);
+            if (running != null) {
+                SHARED.incrementAndGet();
+                try {
+                    return get(running);
+                } catch (InterruptedCallException e) {
+                    // the failure belongs to the interrupted caller only, send the request again
+                    IN_FLIGHT.remove(key, running);
+                    continue;
+                }
+            }
+            EXECUTED.incrementAndGet();
+            try {
+                task.run();
+            } finally {
+                IN_FLIGHT.remove(key, task);
+            }
+            try {
+                return get(task);
+            } catch (InterruptedCallException e) {
+                throw (Exception) e.getCause();
+            }
+        }
+    }
+
+    /**
+     * @return true if the call failed because the calling thread was interrupted
+     */
+    private static boolean isInterruption(final Exception e) {
+        return Thread.currentThread().isInterrupted() || e instanceof InterruptedException || e instanceof InterruptedIOException
+                || e instanceof ClosedByInterruptException || e instanceof CancellationException;
+    }
+
+    private static <T> T get(final Future<T> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof Exception) throw (Exception) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw e;
+        }
+    }
+
+    /**
+     * marks the failure of a call which was interrupted, only rethrown to the caller which sent the request
+     */
+    private static final class InterruptedCallException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        private InterruptedCallException(final Exception cause) {
+            super(cause);
+        }
+    }
+}
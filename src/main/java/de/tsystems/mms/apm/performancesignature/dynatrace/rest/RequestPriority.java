@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2014 T-Systems Multimedia Solutions GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.tsystems.mms.apm.performancesignature.dynatrace.rest;
+
+import org.kohsuke.stapler.Stapler;
+
+/**
+ * lanes of the {@link DTServerScheduler}, a free connection is always given to the highest waiting lane
+ */
+public enum RequestPriority {
+    /**
+     * requests sent while a user waits for a web page, e.g. the doFill* lookups of the configuration forms
+     */
+    INTERACTIVE,
+    /**
+     * the REST calls of the build steps
+     */
+    NORMAL,
+    /**
+     * PDF reports and session downloads, which take long and are expensive for the server
+     */
+    BULK;
+
+    /**
+     * requests sent while handling a web request are always interactive
+     *
+     * @param fallback priority of the request if it is not sent for a web request
+     */
+    static RequestPriority current(final RequestPriority fallback) {
+        return Stapler.getCurrentRequest() != null ? INTERACTIVE : fallback;
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2014 T-Systems Multimedia Solutions GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.tsystems.mms.apm.performancesignature.dynatrace.rest;
+
+import de.tsystems.mms.apm.performancesignature.dynatrace.util.StreamAttributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Pull parser for the XML responses of the Dynatrace server. The events are read with StAX while the
+ * response streams off the socket and are passed to the existing SAX handlers, so the handlers and
+ * model classes stay the same. Attributes are not copied, see {@link StreamAttributes}.
+ * One configured factory is shared by all threads, creating readers on a configured factory is thread-safe.
+ * StAX readers can't be reset, so a new reader is created per response.
+ */
+public final class XMLStreamParser {
+    private static final XMLInputFactory FACTORY = createFactory();
+
+    private XMLStreamParser() {
+    }
+
+    private static XMLInputFactory createFactory() {
+        final XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.TRUE);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+        return factory;
+    }
+
+    public static void parse(final InputStream in, final DefaultHandler handler) throws IOException, SAXException {
+        final StreamAttributes attributes = new StreamAttributes();
+        XMLStreamReader reader = null;
+        try {
+            reader = FACTORY.createXMLStreamReader(in);
+            attributes.setReader(reader);
+            handler.startDocument();
+            while (reader.hasNext()) {
+                switch (reader.next()) {
+                    case XMLStreamConstants.START_ELEMENT:
+                        handler.startElement(getNamespaceURI(reader), reader.getLocalName(), getQName(reader), attributes);
+                        break;
+                    case XMLStreamConstants.END_ELEMENT:
+                        handler.endElement(getNamespaceURI(reader), reader.getLocalName(), getQName(reader));
+                        break;
+                    case XMLStreamConstants.CHARACTERS:
+                    case XMLStreamConstants.CDATA:
+                    case XMLStreamConstants.SPACE:
+                        handler.characters(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+                        break;
+                    default:
+                        break;
+                }
+            }
+            handler.endDocument();
+        } catch (XMLStreamException e) {
+            if (e.getNestedException() instanceof IOException) {
+                throw (IOException) e.getNestedException();
+            }
+            throw new SAXException(e.getMessage(), e);
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (XMLStreamException ignored) {
+                }
+            }
+        }
+    }
+
+    private static String getNamespaceURI(final XMLStreamReader reader) {
+        final String uri = reader.getNamespaceURI();
+        return uri == null ? "" : uri;
+    }
+
+    private static String getQName(final XMLStreamReader reader) {
+        final String prefix = reader.getPrefix();
+        return prefix == null || prefix.length() == 0 ? reader.getLocalName() : prefix + ':' + reader.getLocalName();
+    }
+}
@@ -32,45 +32,99 @@ import org.xml.sax.Attributes;
 
 import java.util.Date;
 
+/**
+ * Reads typed values from the attributes of an element.
+ * Numbers are decoded directly from the attribute value without intermediate objects.
+ */
 public final class AttributeUtils {
+    private static final double[] POWERS_OF_TEN = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
     private AttributeUtils() {
     }
 
     public static double getDoubleAttribute(final String attributeName, final Attributes attr) {
-        double val = 0.0D;
         final String strgVal = attr.getValue(attributeName);
-        if (strgVal != null) {
-            if (strgVal.equals("INF")) return Double.POSITIVE_INFINITY;
-            val = Double.parseDouble(strgVal);
-        }
-        return val;
+        if (strgVal == null) return 0.0D;
+        if (strgVal.equals("INF")) return Double.POSITIVE_INFINITY;
+        return parseDouble(strgVal);
     }
 
     public static String getStringAttribute(final String attributeName, final Attributes attr) {
-        if (attr.getValue(attributeName) != null)
-            return attr.getValue(attributeName);
-        return "";
+        final String value = attr instanceof StreamAttributes ? ((StreamAttributes) attr).getPooledValue(attributeName) : attr.getValue(attributeName);
+        return value == null ? "" : value;
     }
 
     public static int getIntAttribute(final String attributeName, final Attributes attr) {
-        int val = 0;
         final String strgVal = attr.getValue(attributeName);
-        if (strgVal != null) {
-            val = Integer.parseInt(strgVal);
-        }
-        return val;
+        if (strgVal == null) return 0;
+        final long val = parseLong(strgVal);
+        if (val < Integer.MIN_VALUE || val > Integer.MAX_VALUE) throw new NumberFormatException("For input string: \"" + strgVal + "\"");
+        return (int) val;
     }
 
     public static long getLongAttribute(final String attributeName, final Attributes attr) {
-        long val = 0L;
         final String strgVal = attr.getValue(attributeName);
-        if (strgVal != null) {
-            val = Long.parseLong(strgVal);
-        }
-        return val;
+        if (strgVal == null) return 0L;
+        return parseLong(strgVal);
     }
 
     public static Date getDateAttribute(final String attributeName, final Attributes attr) {
-        return new Date(Long.parseLong(attr.getValue(attributeName)));
+        return new Date(parseLong(attr.getValue(attributeName)));
+    }
+
+    static long parseLong(final String value) {
+        final int length = value.length();
+        int i = 0;
+        boolean negative = false;
+        if (length > 0 && (value.charAt(0) == '-' || value.charAt(0) == '+')) {
+            negative = value.charAt(0) == '-';
+            i++;
+        }
+        // 18 digits always fit into a long, longer values take the checked path
+        if (i == length || length - i > 18) return Long.parseLong(value);
+        long result = 0;
+        for (; i < length; i++) {
+            final int digit = value.charAt(i) - '0';
+            if (digit < 0 || digit > 9) return Long.parseLong(value);
+            result = result * 10 + digit;
+        }
+        return negative ? -result : result;
+    }
+
+    /**
+     * plain decimals with up to 15 significant digits are decoded as mantissa / 10^n, both values are exact doubles
+     * so the single division is correctly rounded and gives the same result as {@link Double#parseDouble(String)}.
+     * All other notations are passed to {@link Double#parseDouble(String)}.
+     */
+    static double parseDouble(final String value) {
+        final int length = value.length();
+        int i = 0;
+        boolean negative = false;
+        if (length > 0 && (value.charAt(0) == '-' || value.charAt(0) == '+')) {
+            negative = value.charAt(0) == '-';
+            i++;
+        }
+        if (i == length || length - i > 16) return Double.parseDouble(value);
+
+        long mantissa = 0;
+        int fractionDigits = 0;
+        boolean dot = false, digits = false;
+        for (; i < length; i++) {
+            final char c = value.charAt(i);
+            if (c >= '0' && c <= '9') {
+                mantissa = mantissa * 10 + (c - '0');
+                digits = true;
+                if (dot) fractionDigits++;
+            } else if (c == '.' && !dot) {
+                dot = true;
+            } else {
+                return Double.parseDouble(value);
+            }
+        }
+        if (!digits || mantissa >= MAX_EXACT_MANTISSA) return Double.parseDouble(value);
+        final double result = mantissa / POWERS_OF_TEN[fractionDigits];
+        return negative ? -result : result;
     }
 }
@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2014 T-Systems Multimedia Solutions GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.tsystems.mms.apm.performancesignature.dynatrace.util;
+
+import org.xml.sax.Attributes;
+
+import javax.xml.stream.XMLStreamReader;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * SAX {@link Attributes} view of the current start element of a {@link XMLStreamReader}, so the model classes
+ * can be created by the streaming parser without copying the attributes.
+ * String values read through {@link AttributeUtils#getStringAttribute(String, Attributes)} are pooled,
+ * the names, units and colors repeated thousands of times in a dashboard share one instance.
+ */
+public final class StreamAttributes implements Attributes {
+    private static final int MAX_POOL_SIZE = 8192;
+    private static final int MAX_POOLED_LENGTH = 256;
+    private final Map<String, String> pool = new HashMap<String, String>();
+    private XMLStreamReader reader;
+
+    public void setReader(final XMLStreamReader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * forgets the reader and the pooled strings of the last document
+     */
+    public void reset() {
+        this.reader = null;
+        this.pool.clear();
+    }
+
+    String getPooledValue(final String qName) {
+        final String value = getValue(qName);
+        if (value == null || value.length() > MAX_POOLED_LENGTH) return value;
+        final String pooled = pool.get(value);
+        if (pooled != null) return pooled;
+        if (pool.size() < MAX_POOL_SIZE) pool.put(value, value);
+        return value;
+    }
+
+    public int getLength() {
+        return reader.getAttributeCount();
+    }
+
+    public String getURI(final int index) {
+        final String uri = reader.getAttributeNamespace(index);
+        return uri == null ? "" : uri;
+    }
+
+    public String getLocalName(final int index) {
+        return reader.getAttributeLocalName(index);
+    }
+
+    public String getQName(final int index) {
+        final String prefix = reader.getAttributePrefix(index);
+        final String localName = reader.getAttributeLocalName(index);
+        return prefix == null || prefix.length() == 0 ? localName : prefix + ':' + localName;
+    }
+
+    public String getType(final int index) {
+        return reader.getAttributeType(index);
+    }
+
+    public String getValue(final int index) {
+        return reader.getAttributeValue(index);
+    }
+
+    public int getIndex(final String uri, final String localName) {
+        for (int i = 0, count = reader.getAttributeCount(); i < count; i++) {
+            if (reader.getAttributeLocalName(i).equals(localName) && getURI(i).equals(uri)) return i;
+        }
+        return -1;
+    }
+
+    public int getIndex(final String qName) {
+        for (int i = 0, count = reader.getAttributeCount(); i < count; i++) {
+            final String prefix = reader.getAttributePrefix(i);
+            if (prefix == null || prefix.length() == 0) {
+                if (reader.getAttributeLocalName(i).equals(qName)) return i;
+            } else if (getQName(i).equals(qName)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public String getType(final String uri, final String localName) {
+        final int index = getIndex(uri, localName);
+        return index < 0 ? null : getType(index);
+    }
+
+    public String getType(final String qName) {
+        final int index = getIndex(qName);
+        return index < 0 ? null : getType(index);
+    }
+
+    public String getValue(final String uri, final String localName) {
+        final int index = getIndex(uri, localName);
+        return index < 0 ? null : getValue(index);
+    }
+
+    public String getValue(final String qName) {
+        final int index = getIndex(qName);
+        return index < 0 ? null : getValue(index);
+    }
+}
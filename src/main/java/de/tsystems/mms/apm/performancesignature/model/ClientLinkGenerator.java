@@ -34,6 +34,30 @@ public class ClientLinkGenerator {
         this.target = target;
     }
 
+    public int getPort() {
+        return port;
+    }
+
+    public String getProtocol() {
+        return protocol;
+    }
+
+    public String getServer() {
+        return server;
+    }
+
+    public String getDashboardName() {
+        return dashboardName;
+    }
+
+    public String getSessionName() {
+        return sessionName;
+    }
+
+    public String getTarget() {
+        return target;
+    }
+
     public String generateLink() {
         String webstartTemplate = "%s://%s:%d/webstart/Client/client.jnlp?argument=-reuse&argument=-dashboard&argument=online://%s/%s?source=%s";
         String clientRESTTemplate = "http://localhost:8030/rest/integration/opendashboard?dashboardname=%s&server=%s&secure=true&source=stored:%s";
@@ -33,13 +33,14 @@ public class DynatraceServerConfiguration extends AbstractDescribableImpl<Dynatr
     private final String name, protocol, host;
     private final int port;
     private final boolean verifyCertificate;
-    private final int delay, retryCount;
+    private final int delay, retryCount, dumpTimeout, maxConnections, parallelRequests, maxDownloadRate;
     private final CustomProxy customProxy;
     private final List<CredProfilePair> credProfilePairs;
 
     @DataBoundConstructor
     public DynatraceServerConfiguration(final String name, final String protocol, final String host, final int port, final List<CredProfilePair> credProfilePairs,
-                                        final boolean verifyCertificate, final int delay, final int retryCount, final boolean proxy, final CustomProxy proxySource) {
+                                        final boolean verifyCertificate, final int delay, final int retryCount, final int dumpTimeout, final int maxConnections,
+                                        final int parallelRequests, final int maxDownloadRate, final boolean proxy, final CustomProxy proxySource) {
         this.name = name;
         this.protocol = protocol;
         this.host = host;
@@ -48,6 +49,10 @@ public class DynatraceServerConfiguration extends AbstractDescribableImpl<Dynatr
         this.verifyCertificate = verifyCertificate;
         this.delay = delay;
         this.retryCount = retryCount;
+        this.dumpTimeout = dumpTimeout;
+        this.maxConnections = maxConnections;
+        this.parallelRequests = parallelRequests;
+        this.maxDownloadRate = maxDownloadRate;
         this.customProxy = proxy ? proxySource : null;
     }
 
@@ -92,6 +97,37 @@ public class DynatraceServerConfiguration extends AbstractDescribableImpl<Dynatr
         return retryCount;
     }
 
+    /**
+     * the session is probed right away, the delay and the retries only make up the deadline
+     *
+     * @return maximum time in seconds to wait for a session
+     */
+    public int getSessionTimeout() {
+        return Math.max(0, delay) + Math.max(0, retryCount) * DescriptorImpl.retryInterval;
+    }
+
+    /**
+     * @return maximum time in seconds to wait for thread dumps, memory dumps and session reanalysis
+     */
+    public int getDumpTimeout() {
+        return dumpTimeout > 0 ? dumpTimeout : DescriptorImpl.defaultDumpTimeout;
+    }
+
+    public int getMaxConnections() {
+        return maxConnections > 0 ? maxConnections : DescriptorImpl.defaultMaxConnections;
+    }
+
+    public int getParallelRequests() {
+        return parallelRequests > 0 ? parallelRequests : DescriptorImpl.defaultParallelRequests;
+    }
+
+    /**
+     * @return limit for the transfer rate of PDF reports and session downloads in KB/s, 0 for no limit
+     */
+    public int getMaxDownloadRate() {
+        return Math.max(0, maxDownloadRate);
+    }
+
     public CustomProxy getCustomProxy() {
         return customProxy;
     }
@@ -103,6 +139,11 @@ public class DynatraceServerConfiguration extends AbstractDescribableImpl<Dynatr
         public static final int defaultPort = 8021;
         public static final int defaultDelay = 10;
         public static final int defaultRetryCount = 5;
+        public static final int retryInterval = 10;
+        public static final int defaultDumpTimeout = 60;
+        public static final int defaultMaxConnections = 5;
+        public static final int defaultParallelRequests = 1;
+        public static final int defaultMaxDownloadRate = 0;
         public static final boolean defaultVerifyCertificate = false;
 
         private static boolean checkNotNullOrEmpty(final String string) {
@@ -181,5 +222,45 @@ public class DynatraceServerConfiguration extends AbstractDescribableImpl<Dynatr
             }
             return validationResult;
         }
+
+        public FormValidation doCheckDumpTimeout(@QueryParameter final String dumpTimeout) {
+            FormValidation validationResult;
+            if (checkNotEmptyAndIsNumber(dumpTimeout) && NumberUtils.toInt(dumpTimeout) > 0) {
+                validationResult = FormValidation.ok();
+            } else {
+                validationResult = FormValidation.error(Messages.PerfSigRecorder_DumpTimeoutNotValid());
+            }
+            return validationResult;
+        }
+
+        public FormValidation doCheckMaxConnections(@QueryParameter final String maxConnections) {
+            FormValidation validationResult;
+            if (checkNotEmptyAndIsNumber(maxConnections) && NumberUtils.toInt(maxConnections) > 0) {
+                validationResult = FormValidation.ok();
+            } else {
+                validationResult = FormValidation.error(Messages.PerfSigRecorder_MaxConnectionsNotValid());
+            }
+            return validationResult;
+        }
+
+        public FormValidation doCheckParallelRequests(@QueryParameter final String parallelRequests) {
+            FormValidation validationResult;
+            if (checkNotEmptyAndIsNumber(parallelRequests) && NumberUtils.toInt(parallelRequests) > 0) {
+                validationResult = FormValidation.ok();
+            } else {
+                validationResult = FormValidation.error(Messages.PerfSigRecorder_ParallelRequestsNotValid());
+            }
+            return validationResult;
+        }
+
+        public FormValidation doCheckMaxDownloadRate(@QueryParameter final String maxDownloadRate) {
+            FormValidation validationResult;
+            if (checkNotEmptyAndIsNumber(maxDownloadRate) && NumberUtils.toInt(maxDownloadRate, -1) >= 0) {
+                validationResult = FormValidation.ok();
+            } else {
+                validationResult = FormValidation.error(Messages.PerfSigRecorder_MaxDownloadRateNotValid());
+            }
+            return validationResult;
+        }
     }
 }
@@ -18,6 +18,7 @@ package de.tsystems.mms.apm.performancesignature.model;
 
 import de.tsystems.mms.apm.performancesignature.PerfSigTestAction;
 import de.tsystems.mms.apm.performancesignature.PerfSigTestDataWrapper;
+import de.tsystems.mms.apm.performancesignature.dynatrace.model.TestResult;
 import de.tsystems.mms.apm.performancesignature.dynatrace.model.TestRun;
 import hudson.model.Run;
 import hudson.tasks.junit.CaseResult;
@@ -26,11 +27,18 @@ import hudson.tasks.junit.TestObject;
 import hudson.tasks.junit.TestResultAction;
 
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 
 public class PerfSigTestData extends TestResultAction.Data {
     private final Run<?, ?> run;
     private final List<TestRun> testRuns;
+    /**
+     * test results by package and name, built on first access
+     */
+    private transient volatile Map<String, IndexedTestResult> testResultIndex;
 
     public PerfSigTestData(final Run<?, ?> run, final List<TestRun> testRuns) {
         this.run = run;
@@ -41,6 +49,40 @@ public class PerfSigTestData extends TestResultAction.Data {
         return testRuns == null ? Collections.<TestRun>emptyList() : testRuns;
     }
 
+    private static String getIndexKey(final String packageName, final String name) {
+        return (packageName == null ? "" : packageName.toLowerCase(Locale.ENGLISH)) + '\u0000'
+                + (name == null ? "" : name.toLowerCase(Locale.ENGLISH));
+    }
+
+    /**
+     * finds the test result with the given package and name (case insensitive),
+     * if the test is contained in more than one test run, the last one wins
+     *
+     * @return the test result and its test run or null if there is no such test result
+     */
+    public IndexedTestResult getTestResult(final String packageName, final String name) {
+        return getTestResultIndex().get(getIndexKey(packageName, name));
+    }
+
+    private Map<String, IndexedTestResult> getTestResultIndex() {
+        Map<String, IndexedTestResult> index = testResultIndex;
+        if (index == null) {
+            synchronized (this) {
+                index = testResultIndex;
+                if (index == null) {
+                    index = new HashMap<String, IndexedTestResult>();
+                    for (TestRun testRun : getTestRuns()) {
+                        for (TestResult testResult : testRun.getTestResults()) {
+                            index.put(getIndexKey(testResult.getPackageName(), testResult.getName()), new IndexedTestResult(testRun, testResult));
+                        }
+                    }
+                    testResultIndex = index;
+                }
+            }
+        }
+        return index;
+    }
+
     public PerfSigTestData getPreviousData() {
         PerfSigTestData previousData = null;
         Run previousRun = run.getPreviousNotFailedBuild();
@@ -68,4 +110,22 @@ public class PerfSigTestData extends TestResultAction.Data {
             return Collections.emptyList();
         }
     }
+
+    public static final class IndexedTestResult {
+        private final TestRun testRun;
+        private final TestResult testResult;
+
+        private IndexedTestResult(final TestRun testRun, final TestResult testResult) {
+            this.testRun = testRun;
+            this.testResult = testResult;
+        }
+
+        public TestRun getTestRun() {
+            return testRun;
+        }
+
+        public TestResult getTestResult() {
+            return testResult;
+        }
+    }
 }
@@ -22,25 +22,31 @@ import de.tsystems.mms.apm.performancesignature.dynatrace.model.BaseConfiguratio
 import de.tsystems.mms.apm.performancesignature.dynatrace.rest.CommandExecutionException;
 import de.tsystems.mms.apm.performancesignature.model.CredProfilePair;
 import de.tsystems.mms.apm.performancesignature.model.DynatraceServerConfiguration;
-import hudson.FilePath;
 import hudson.Functions;
 import hudson.model.Hudson;
 import hudson.model.Run;
 import hudson.util.Area;
 import hudson.util.ListBoxModel;
+import net.sf.json.JSON;
+import net.sf.json.JSONNull;
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.io.FilenameUtils;
-import org.apache.commons.io.filefilter.RegexFileFilter;
 import org.apache.commons.lang.StringUtils;
+import org.kohsuke.stapler.StaplerResponse;
 
+import java.awt.*;
 import java.io.File;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.math.BigDecimal;
 import java.net.URLEncoder;
 import java.util.List;
+import java.util.logging.Logger;
 
 public final class PerfSigUtils {
+    private static final int[] DEFAULT_CHART_WIDTHS = {250, 500};
+    private static final Logger LOGGER = Logger.getLogger(PerfSigUtils.class.getName());
+
     private PerfSigUtils() {
     }
 
@@ -105,11 +111,6 @@ public final class PerfSigUtils {
         return null;
     }
 
-    public static List<FilePath> getDownloadFiles(final String testCase, final Run<?, ?> build) throws IOException, InterruptedException {
-        FilePath filePath = new FilePath(PerfSigUtils.getReportDirectory(build));
-        return filePath.list(new RegexFileFilter(testCase));
-    }
-
     public static String removeExtension(final String fileName) {
         return FilenameUtils.removeExtension(fileName);
     }
@@ -140,6 +141,17 @@ public final class PerfSigUtils {
         return minutes + " min " + (int) rest + " s";
     }
 
+    /**
+     * @return number of points to draw on a chart of this width, one per pixel. Widths up to the sizes of
+     * {@link #calcDefaultSize()} are rounded up to them, so the usual chart sizes share their downsampled series.
+     */
+    public static int getDownsampleThreshold(final int width) {
+        for (int defaultWidth : DEFAULT_CHART_WIDTHS) {
+            if (width <= defaultWidth) return defaultWidth;
+        }
+        return width;
+    }
+
     public static Area calcDefaultSize() {
         Area res = Functions.getScreenResolution();
         if (res != null && res.width <= 800)
@@ -147,4 +159,77 @@ public final class PerfSigUtils {
         else
             return new Area(500, 200);
     }
+
+    /**
+     * @return the value for a json document, NaN and infinite values are written as null
+     */
+    public static Object toJSONValue(final double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) return JSONNull.getInstance();
+        return value;
+    }
+
+    public static String toHex(final Color color) {
+        return String.format("#%06X", color.getRGB() & 0xFFFFFF);
+    }
+
+    /**
+     * weak comparison of an If-None-Match header with the entity tag of a resource
+     *
+     * @param ifNoneMatch list of entity tags or *
+     * @param etag        quoted entity tag of the resource
+     */
+    public static boolean matchesETag(final String ifNoneMatch, final String etag) {
+        if (ifNoneMatch == null || etag == null) return false;
+        final String opaqueTag = StringUtils.removeStart(etag.trim(), "W/");
+        for (String tag : ifNoneMatch.split(",")) {
+            tag = tag.trim();
+            if (tag.equals("*") || StringUtils.removeStart(tag, "W/").equals(opaqueTag)) return true;
+        }
+        return false;
+    }
+
+    public static void writeJSON(final StaplerResponse rsp, final JSON json) throws IOException {
+        rsp.setContentType("application/json;charset=UTF-8");
+        json.write(rsp.getWriter());
+        rsp.flushBuffer();
+    }
+
+    /**
+     * replaces the file with the completely written temporary file. The rename replaces the file atomically where
+     * the platform supports it, otherwise the previous file is kept as backup until the replacement is in place,
+     * see {@link #restoreReplacedFile(File)}.
+     */
+    public static void replaceFile(final File tmp, final File file) throws IOException {
+        if (tmp.renameTo(file)) return;
+
+        final File backup = new File(file.getPath() + ".bak");
+        if (backup.exists() && !backup.delete()) {
+            throw new IOException("failed to delete " + backup);
+        }
+        if (file.exists() && !file.renameTo(backup)) {
+            throw new IOException("failed to replace " + file);
+        }
+        if (!tmp.renameTo(file)) {
+            if (backup.exists() && !backup.renameTo(file)) {
+                throw new IOException("failed to rename " + tmp + " to " + file + ", the previous file is kept as " + backup);
+            }
+            throw new IOException("failed to rename " + tmp + " to " + file);
+        }
+        if (backup.exists() && !backup.delete()) {
+            backup.deleteOnExit();
+        }
+    }
+
+    /**
+     * restores the previous file if the process stopped while {@link #replaceFile(File, File)} had moved it aside
+     *
+     * @return the file
+     */
+    public static File restoreReplacedFile(final File file) {
+        final File backup = new File(file.getPath() + ".bak");
+        if (!file.exists() && backup.exists() && !backup.renameTo(file)) {
+            LOGGER.warning("could not restore " + file + " from " + backup);
+        }
+        return file;
+    }
 }
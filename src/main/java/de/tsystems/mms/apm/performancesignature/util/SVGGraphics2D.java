@@ -0,0 +1,715 @@
+/*
+ * Copyright (c) 2014 T-Systems Multimedia Solutions GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.tsystems.mms.apm.performancesignature.util;
+
+import org.apache.commons.lang.StringEscapeUtils;
+
+import javax.imageio.ImageIO;
+import javax.xml.bind.DatatypeConverter;
+import java.awt.*;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
+import java.awt.geom.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.BufferedImageOp;
+import java.awt.image.ImageObserver;
+import java.awt.image.RenderedImage;
+import java.awt.image.renderable.RenderableImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.text.AttributedCharacterIterator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Graphics2D which writes the drawing operations as SVG document, used to draw JFreeChart charts as vector images.
+ * Shapes are written as paths in device coordinates, texts as text elements, so the browser renders the fonts.
+ * Supported are solid colors, gradients, alpha composites, basic strokes and clipping; the font metrics are taken
+ * from an image graphics, so the layout is the same as in the PNG images.
+ */
+public class SVGGraphics2D extends Graphics2D {
+    private final Document document;
+    private final Graphics2D metrics;
+    private final BufferedImage metricsImage;
+    private AffineTransform transform = new AffineTransform();
+    private Shape clip;
+    private Paint paint = Color.BLACK;
+    private Color background = Color.WHITE;
+    private Stroke stroke = new BasicStroke(1f);
+    private Composite composite = AlphaComposite.SrcOver;
+    private Font font = new Font(Font.SANS_SERIF, Font.PLAIN, 12);
+    private final RenderingHints hints = new RenderingHints(null);
+
+    public SVGGraphics2D(final int width, final int height) {
+        this.document = new Document(width, height);
+        this.metricsImage = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
+        this.metrics = metricsImage.createGraphics();
+    }
+
+    private SVGGraphics2D(final SVGGraphics2D parent) {
+        this.document = parent.document;
+        this.metricsImage = parent.metricsImage;
+        this.metrics = (Graphics2D) parent.metrics.create();
+        this.transform = new AffineTransform(parent.transform);
+        this.clip = parent.clip;
+        this.paint = parent.paint;
+        this.background = parent.background;
+        this.stroke = parent.stroke;
+        this.composite = parent.composite;
+        this.font = parent.font;
+        this.hints.putAll(parent.hints);
+    }
+
+    /**
+     * @return the complete SVG document with everything drawn so far
+     */
+    public String getSVGDocument() {
+        final StringBuilder svg = new StringBuilder(document.defs.length() + document.body.length() + 256);
+        svg.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
+                .append("<svg xmlns=\"http://www.w3.org/2000/svg\" xmlns:xlink=\"http://www.w3.org/1999/xlink\" width=\"")
+                .append(document.width).append("\" height=\"").append(document.height).append("\" viewBox=\"0 0 ")
+                .append(document.width).append(' ').append(document.height).append("\">\n");
+        if (document.defs.length() > 0) {
+            svg.append("<defs>\n").append(document.defs).append("</defs>\n");
+        }
+        return svg.append(document.body).append("</svg>\n").toString();
+    }
+
+    private static String format(final double value) {
+        return format(value, 2);
+    }
+
+    private static String format(final double value, final int digits) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) return "0";
+        return new BigDecimal(value).setScale(digits, BigDecimal.ROUND_HALF_UP).stripTrailingZeros().toPlainString();
+    }
+
+    private static String getFontFamily(final Font font) {
+        final String family = font.getFamily();
+        if (Font.SANS_SERIF.equals(family) || Font.DIALOG.equals(family)) return "sans-serif";
+        if (Font.SERIF.equals(family)) return "serif";
+        if (Font.MONOSPACED.equals(family) || Font.DIALOG_INPUT.equals(family)) return "monospace";
+        return '\'' + StringEscapeUtils.escapeXml(family) + "', sans-serif";
+    }
+
+    /**
+     * @return style class of the current font, the font styles are written once into the definitions
+     */
+    private String getFontClass() {
+        final String style = "font-family:" + getFontFamily(font) + ";font-size:" + format(font.getSize2D()) + "px"
+                + (font.isBold() ? ";font-weight:bold" : "") + (font.isItalic() ? ";font-style:italic" : "");
+        String id = document.fontClasses.get(style);
+        if (id == null) {
+            id = "f" + document.nextId++;
+            document.defs.append("<style type=\"text/css\">.").append(id).append('{').append(style).append("}</style>\n");
+            document.fontClasses.put(style, id);
+        }
+        return id;
+    }
+
+    private float getAlpha() {
+        return composite instanceof AlphaComposite ? ((AlphaComposite) composite).getAlpha() : 1f;
+    }
+
+    private String getPath(final Shape shape) {
+        final StringBuilder path = new StringBuilder();
+        final double[] c = new double[6];
+        for (PathIterator iterator = shape.getPathIterator(transform); !iterator.isDone(); iterator.next()) {
+            switch (iterator.currentSegment(c)) {
+                case PathIterator.SEG_MOVETO:
+                    path.append('M').append(format(c[0])).append(',').append(format(c[1]));
+                    break;
+                case PathIterator.SEG_LINETO:
+                    path.append('L').append(format(c[0])).append(',').append(format(c[1]));
+                    break;
+                case PathIterator.SEG_QUADTO:
+                    path.append('Q').append(format(c[0])).append(',').append(format(c[1])).append(' ')
+                            .append(format(c[2])).append(',').append(format(c[3]));
+                    break;
+                case PathIterator.SEG_CUBICTO:
+                    path.append('C').append(format(c[0])).append(',').append(format(c[1])).append(' ')
+                            .append(format(c[2])).append(',').append(format(c[3])).append(' ')
+                            .append(format(c[4])).append(',').append(format(c[5]));
+                    break;
+                case PathIterator.SEG_CLOSE:
+                    path.append('Z');
+                    break;
+                default:
+                    break;
+            }
+        }
+        return path.toString();
+    }
+
+    /**
+     * @param shape the shape the paint is used for, null for texts
+     * @return fill or stroke attribute for the current paint, gradients are added to the definitions
+     */
+    private String getPaintAttributes(final String attribute, final Shape shape) {
+        final Color color;
+        if (paint instanceof Color) {
+            color = (Color) paint;
+        } else if (paint instanceof GradientPaint) {
+            final GradientPaint gradient = (GradientPaint) paint;
+            final Point2D p1 = transform.transform(gradient.getPoint1(), null), p2 = transform.transform(gradient.getPoint2(), null);
+            final Rectangle2D bounds = shape == null ? null : transform.createTransformedShape(shape).getBounds2D();
+            final String units;
+            if (bounds != null && bounds.getWidth() > 0 && bounds.getHeight() > 0 && (p1.getX() == p2.getX() || p1.getY() == p2.getY())) {
+                // relative to the shape, so the gradients of equally painted bars are the same
+                final boolean horizontal = p1.getY() == p2.getY(), vertical = p1.getX() == p2.getX();
+                units = " x1=\"" + (vertical ? "0" : format((p1.getX() - bounds.getX()) / bounds.getWidth(), 3))
+                        + "\" y1=\"" + (horizontal ? "0" : format((p1.getY() - bounds.getY()) / bounds.getHeight(), 3))
+                        + "\" x2=\"" + (vertical ? "0" : format((p2.getX() - bounds.getX()) / bounds.getWidth(), 3))
+                        + "\" y2=\"" + (horizontal ? "0" : format((p2.getY() - bounds.getY()) / bounds.getHeight(), 3)) + '"';
+            } else {
+                units = " gradientUnits=\"userSpaceOnUse\" x1=\"" + format(p1.getX()) + "\" y1=\"" + format(p1.getY())
+                        + "\" x2=\"" + format(p2.getX()) + "\" y2=\"" + format(p2.getY()) + '"';
+            }
+            final String definition = units
+                    + (gradient.isCyclic() ? " spreadMethod=\"reflect\"" : "") + '>'
+                    + getStop(0, gradient.getColor1()) + getStop(1, gradient.getColor2());
+            // the bar painters create a new gradient for each bar, most of them are equal
+            String id = document.gradientIds.get(definition);
+            if (id == null) {
+                id = "g" + document.nextId++;
+                document.defs.append("<linearGradient id=\"").append(id).append('"').append(definition).append("</linearGradient>\n");
+                document.gradientIds.put(definition, id);
+            }
+            return ' ' + attribute + "=\"url(#" + id + ")\"" + getOpacity(attribute, 255);
+        } else {
+            color = Color.GRAY;
+        }
+        return ' ' + attribute + "=\"" + PerfSigUtils.toHex(color) + '"' + getOpacity(attribute, color.getAlpha());
+    }
+
+    private static String getStop(final double offset, final Color color) {
+        return "<stop offset=\"" + format(offset) + "\" stop-color=\"" + PerfSigUtils.toHex(color) + "\""
+                + (color.getAlpha() < 255 ? " stop-opacity=\"" + format(color.getAlpha() / 255d) + "\"" : "") + "/>";
+    }
+
+    private String getOpacity(final String attribute, final int colorAlpha) {
+        final double opacity = colorAlpha / 255d * getAlpha();
+        return opacity < 1 ? ' ' + attribute + "-opacity=\"" + format(opacity) + '"' : "";
+    }
+
+    private String getClipAttribute() {
+        if (clip == null) return "";
+        String id = document.clipIds.get(clip);
+        if (id == null && clip.contains(0, 0, document.width, document.height)) {
+            // clips nothing
+            document.clipIds.put(clip, "");
+            return "";
+        }
+        if (id == null) {
+            id = "c" + document.nextId++;
+            final AffineTransform saved = transform;
+            transform = new AffineTransform();
+            document.defs.append("<clipPath id=\"").append(id).append("\"><path d=\"").append(getPath(clip)).append("\"/></clipPath>\n");
+            transform = saved;
+            document.clipIds.put(clip, id);
+        }
+        return id.length() == 0 ? "" : " clip-path=\"url(#" + id + ")\"";
+    }
+
+    private String getStrokeAttributes(final BasicStroke basicStroke, final Shape shape) {
+        final double scale = Math.sqrt(Math.abs(transform.getDeterminant()));
+        final StringBuilder attributes = new StringBuilder(getPaintAttributes("stroke", shape));
+        attributes.append(" stroke-width=\"").append(format(Math.max(basicStroke.getLineWidth() * scale, 0.01))).append('"');
+        if (basicStroke.getEndCap() == BasicStroke.CAP_ROUND) attributes.append(" stroke-linecap=\"round\"");
+        else if (basicStroke.getEndCap() == BasicStroke.CAP_SQUARE) attributes.append(" stroke-linecap=\"square\"");
+        if (basicStroke.getLineJoin() == BasicStroke.JOIN_ROUND) attributes.append(" stroke-linejoin=\"round\"");
+        else if (basicStroke.getLineJoin() == BasicStroke.JOIN_BEVEL) attributes.append(" stroke-linejoin=\"bevel\"");
+        final float[] dashes = basicStroke.getDashArray();
+        if (dashes != null && dashes.length > 0) {
+            attributes.append(" stroke-dasharray=\"");
+            for (int i = 0; i < dashes.length; i++) {
+                if (i > 0) attributes.append(',');
+                attributes.append(format(dashes[i] * scale));
+            }
+            attributes.append('"');
+        }
+        return attributes.toString();
+    }
+
+    @Override
+    public void draw(final Shape s) {
+        if (!(stroke instanceof BasicStroke)) {
+            fill(stroke.createStrokedShape(s));
+            return;
+        }
+        final String path = getPath(s);
+        if (path.length() == 0) return;
+        document.body.append("<path d=\"").append(path).append("\" fill=\"none\"")
+                .append(getStrokeAttributes((BasicStroke) stroke, s)).append(getClipAttribute()).append("/>\n");
+    }
+
+    @Override
+    public void fill(final Shape s) {
+        if (s instanceof Rectangle2D && (transform.getType() & ~AffineTransform.TYPE_TRANSLATION) == 0) {
+            final Rectangle2D r = (Rectangle2D) s;
+            if (r.isEmpty()) return;
+            document.body.append("<rect x=\"").append(format(r.getX() + transform.getTranslateX())).append("\" y=\"")
+                    .append(format(r.getY() + transform.getTranslateY())).append("\" width=\"").append(format(r.getWidth()))
+                    .append("\" height=\"").append(format(r.getHeight())).append('"').append(getPaintAttributes("fill", s))
+                    .append(getClipAttribute()).append("/>\n");
+            return;
+        }
+        final String path = getPath(s);
+        if (path.length() == 0) return;
+        document.body.append("<path d=\"").append(path).append('"').append(getPaintAttributes("fill", s))
+                .append(getClipAttribute()).append("/>\n");
+    }
+
+    @Override
+    public void drawString(final String str, final float x, final float y) {
+        if (str == null || str.length() == 0) return;
+        document.body.append("<text xml:space=\"preserve\"");
+        if (transform.getType() == AffineTransform.TYPE_TRANSLATION || transform.isIdentity()) {
+            document.body.append(" x=\"").append(format(x + transform.getTranslateX())).append("\" y=\"")
+                    .append(format(y + transform.getTranslateY())).append('"');
+        } else {
+            final double[] m = new double[6];
+            transform.getMatrix(m);
+            document.body.append(" x=\"").append(format(x)).append("\" y=\"").append(format(y)).append("\" transform=\"matrix(")
+                    .append(format(m[0])).append(' ').append(format(m[1])).append(' ').append(format(m[2])).append(' ')
+                    .append(format(m[3])).append(' ').append(format(m[4])).append(' ').append(format(m[5])).append(")\"");
+        }
+        document.body.append(" class=\"").append(getFontClass()).append('"');
+        document.body.append(getPaintAttributes("fill", null)).append(getClipAttribute()).append('>')
+                .append(StringEscapeUtils.escapeXml(str)).append("</text>\n");
+    }
+
+    @Override
+    public void drawString(final String str, final int x, final int y) {
+        drawString(str, (float) x, (float) y);
+    }
+
+    @Override
+    public void drawString(final AttributedCharacterIterator iterator, final float x, final float y) {
+        final StringBuilder str = new StringBuilder();
+        for (char c = iterator.first(); c != AttributedCharacterIterator.DONE; c = iterator.next()) {
+            str.append(c);
+        }
+        drawString(str.toString(), x, y);
+    }
+
+    @Override
+    public void drawString(final AttributedCharacterIterator iterator, final int x, final int y) {
+        drawString(iterator, (float) x, (float) y);
+    }
+
+    @Override
+    public void drawGlyphVector(final GlyphVector g, final float x, final float y) {
+        fill(g.getOutline(x, y));
+    }
+
+    @Override
+    public boolean drawImage(final Image img, final AffineTransform xform, final ImageObserver obs) {
+        final int width = img.getWidth(obs), height = img.getHeight(obs);
+        if (width <= 0 || height <= 0) return false;
+        final BufferedImage image;
+        if (img instanceof BufferedImage) {
+            image = (BufferedImage) img;
+        } else {
+            image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+            final Graphics2D g2 = image.createGraphics();
+            g2.drawImage(img, 0, 0, obs);
+            g2.dispose();
+        }
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            ImageIO.write(image, "PNG", out);
+        } catch (IOException e) {
+            return false;
+        }
+        final AffineTransform t = new AffineTransform(transform);
+        if (xform != null) t.concatenate(xform);
+        final double[] m = new double[6];
+        t.getMatrix(m);
+        document.body.append("<image width=\"").append(width).append("\" height=\"").append(height)
+                .append("\" transform=\"matrix(").append(format(m[0])).append(' ').append(format(m[1])).append(' ')
+                .append(format(m[2])).append(' ').append(format(m[3])).append(' ').append(format(m[4])).append(' ')
+                .append(format(m[5])).append(")\"").append(getClipAttribute()).append(" xlink:href=\"data:image/png;base64,")
+                .append(DatatypeConverter.printBase64Binary(out.toByteArray())).append("\"/>\n");
+        return true;
+    }
+
+    @Override
+    public void drawImage(final BufferedImage img, final BufferedImageOp op, final int x, final int y) {
+        drawImage(op == null ? img : op.filter(img, null), x, y, null);
+    }
+
+    @Override
+    public void drawRenderedImage(final RenderedImage img, final AffineTransform xform) {
+        if (img instanceof BufferedImage) drawImage((BufferedImage) img, xform, null);
+    }
+
+    @Override
+    public void drawRenderableImage(final RenderableImage img, final AffineTransform xform) {
+        drawRenderedImage(img.createDefaultRendering(), xform);
+    }
+
+    @Override
+    public boolean drawImage(final Image img, final int x, final int y, final ImageObserver observer) {
+        return drawImage(img, AffineTransform.getTranslateInstance(x, y), observer);
+    }
+
+    @Override
+    public boolean drawImage(final Image img, final int x, final int y, final int width, final int height, final ImageObserver observer) {
+        final int w = img.getWidth(observer), h = img.getHeight(observer);
+        if (w <= 0 || h <= 0) return false;
+        final AffineTransform xform = AffineTransform.getTranslateInstance(x, y);
+        xform.scale((double) width / w, (double) height / h);
+        return drawImage(img, xform, observer);
+    }
+
+    @Override
+    public boolean drawImage(final Image img, final int x, final int y, final Color bgcolor, final ImageObserver observer) {
+        return drawImage(img, x, y, observer);
+    }
+
+    @Override
+    public boolean drawImage(final Image img, final int x, final int y, final int width, final int height, final Color bgcolor,
+                             final ImageObserver observer) {
+        return drawImage(img, x, y, width, height, observer);
+    }
+
+    @Override
+    public boolean drawImage(final Image img, final int dx1, final int dy1, final int dx2, final int dy2, final int sx1, final int sy1,
+                             final int sx2, final int sy2, final ImageObserver observer) {
+        if (sx2 <= sx1 || sy2 <= sy1) return false;
+        final BufferedImage part = new BufferedImage(sx2 - sx1, sy2 - sy1, BufferedImage.TYPE_INT_ARGB);
+        final Graphics2D g2 = part.createGraphics();
+        g2.drawImage(img, 0, 0, sx2 - sx1, sy2 - sy1, sx1, sy1, sx2, sy2, observer);
+        g2.dispose();
+        return drawImage(part, Math.min(dx1, dx2), Math.min(dy1, dy2), Math.abs(dx2 - dx1), Math.abs(dy2 - dy1), observer);
+    }
+
+    @Override
+    public boolean drawImage(final Image img, final int dx1, final int dy1, final int dx2, final int dy2, final int sx1, final int sy1,
+                             final int sx2, final int sy2, final Color bgcolor, final ImageObserver observer) {
+        return drawImage(img, dx1, dy1, dx2, dy2, sx1, sy1, sx2, sy2, observer);
+    }
+
+    @Override
+    public boolean hit(final Rectangle rect, final Shape s, final boolean onStroke) {
+        final Shape shape = onStroke ? stroke.createStrokedShape(s) : s;
+        return transform.createTransformedShape(shape).intersects(rect);
+    }
+
+    @Override
+    public GraphicsConfiguration getDeviceConfiguration() {
+        return metrics.getDeviceConfiguration();
+    }
+
+    @Override
+    public void setComposite(final Composite comp) {
+        if (comp != null) composite = comp;
+    }
+
+    @Override
+    public void setPaint(final Paint paint) {
+        if (paint != null) this.paint = paint;
+    }
+
+    @Override
+    public void setStroke(final Stroke s) {
+        if (s != null) stroke = s;
+    }
+
+    @Override
+    public void setRenderingHint(final RenderingHints.Key hintKey, final Object hintValue) {
+        hints.put(hintKey, hintValue);
+    }
+
+    @Override
+    public Object getRenderingHint(final RenderingHints.Key hintKey) {
+        return hints.get(hintKey);
+    }
+
+    @Override
+    public void setRenderingHints(final Map<?, ?> hints) {
+        this.hints.clear();
+        this.hints.putAll(hints);
+    }
+
+    @Override
+    public void addRenderingHints(final Map<?, ?> hints) {
+        this.hints.putAll(hints);
+    }
+
+    @Override
+    public RenderingHints getRenderingHints() {
+        return (RenderingHints) hints.clone();
+    }
+
+    @Override
+    public void translate(final int x, final int y) {
+        transform.translate(x, y);
+    }
+
+    @Override
+    public void translate(final double tx, final double ty) {
+        transform.translate(tx, ty);
+    }
+
+    @Override
+    public void rotate(final double theta) {
+        transform.rotate(theta);
+    }
+
+    @Override
+    public void rotate(final double theta, final double x, final double y) {
+        transform.rotate(theta, x, y);
+    }
+
+    @Override
+    public void scale(final double sx, final double sy) {
+        transform.scale(sx, sy);
+    }
+
+    @Override
+    public void shear(final double shx, final double shy) {
+        transform.shear(shx, shy);
+    }
+
+    @Override
+    public void transform(final AffineTransform tx) {
+        transform.concatenate(tx);
+    }
+
+    @Override
+    public void setTransform(final AffineTransform tx) {
+        transform = new AffineTransform(tx);
+    }
+
+    @Override
+    public AffineTransform getTransform() {
+        return new AffineTransform(transform);
+    }
+
+    @Override
+    public Paint getPaint() {
+        return paint;
+    }
+
+    @Override
+    public Composite getComposite() {
+        return composite;
+    }
+
+    @Override
+    public void setBackground(final Color color) {
+        if (color != null) background = color;
+    }
+
+    @Override
+    public Color getBackground() {
+        return background;
+    }
+
+    @Override
+    public Stroke getStroke() {
+        return stroke;
+    }
+
+    @Override
+    public void clip(final Shape s) {
+        if (s == null) {
+            setClip(null);
+            return;
+        }
+        final Area area = new Area(transform.createTransformedShape(s));
+        if (clip != null) area.intersect(new Area(clip));
+        clip = area;
+    }
+
+    @Override
+    public FontRenderContext getFontRenderContext() {
+        return metrics.getFontRenderContext();
+    }
+
+    @Override
+    public Graphics create() {
+        return new SVGGraphics2D(this);
+    }
+
+    @Override
+    public Color getColor() {
+        return paint instanceof Color ? (Color) paint : Color.BLACK;
+    }
+
+    @Override
+    public void setColor(final Color c) {
+        setPaint(c);
+    }
+
+    @Override
+    public void setPaintMode() {
+        composite = AlphaComposite.SrcOver;
+    }
+
+    @Override
+    public void setXORMode(final Color c1) {
+        // not supported in SVG
+    }
+
+    @Override
+    public Font getFont() {
+        return font;
+    }
+
+    @Override
+    public void setFont(final Font font) {
+        if (font != null) this.font = font;
+    }
+
+    @Override
+    public FontMetrics getFontMetrics(final Font f) {
+        return metrics.getFontMetrics(f);
+    }
+
+    @Override
+    public Rectangle getClipBounds() {
+        final Shape userClip = getClip();
+        return userClip == null ? null : userClip.getBounds();
+    }
+
+    @Override
+    public void clipRect(final int x, final int y, final int width, final int height) {
+        clip(new Rectangle(x, y, width, height));
+    }
+
+    @Override
+    public void setClip(final int x, final int y, final int width, final int height) {
+        setClip(new Rectangle(x, y, width, height));
+    }
+
+    @Override
+    public Shape getClip() {
+        if (clip == null) return null;
+        try {
+            return transform.createInverse().createTransformedShape(clip);
+        } catch (NoninvertibleTransformException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void setClip(final Shape s) {
+        clip = s == null ? null : transform.createTransformedShape(s);
+    }
+
+    @Override
+    public void copyArea(final int x, final int y, final int width, final int height, final int dx, final int dy) {
+        // not supported in SVG
+    }
+
+    @Override
+    public void drawLine(final int x1, final int y1, final int x2, final int y2) {
+        draw(new Line2D.Double(x1, y1, x2, y2));
+    }
+
+    @Override
+    public void fillRect(final int x, final int y, final int width, final int height) {
+        fill(new Rectangle(x, y, width, height));
+    }
+
+    @Override
+    public void clearRect(final int x, final int y, final int width, final int height) {
+        final Paint saved = paint;
+        paint = background;
+        fillRect(x, y, width, height);
+        paint = saved;
+    }
+
+    @Override
+    public void drawRoundRect(final int x, final int y, final int width, final int height, final int arcWidth, final int arcHeight) {
+        draw(new RoundRectangle2D.Double(x, y, width, height, arcWidth, arcHeight));
+    }
+
+    @Override
+    public void fillRoundRect(final int x, final int y, final int width, final int height, final int arcWidth, final int arcHeight) {
+        fill(new RoundRectangle2D.Double(x, y, width, height, arcWidth, arcHeight));
+    }
+
+    @Override
+    public void drawOval(final int x, final int y, final int width, final int height) {
+        draw(new Ellipse2D.Double(x, y, width, height));
+    }
+
+    @Override
+    public void fillOval(final int x, final int y, final int width, final int height) {
+        fill(new Ellipse2D.Double(x, y, width, height));
+    }
+
+    @Override
+    public void drawArc(final int x, final int y, final int width, final int height, final int startAngle, final int arcAngle) {
+        draw(new Arc2D.Double(x, y, width, height, startAngle, arcAngle, Arc2D.OPEN));
+    }
+
+    @Override
+    public void fillArc(final int x, final int y, final int width, final int height, final int startAngle, final int arcAngle) {
+        fill(new Arc2D.Double(x, y, width, height, startAngle, arcAngle, Arc2D.PIE));
+    }
+
+    @Override
+    public void drawPolyline(final int[] xPoints, final int[] yPoints, final int nPoints) {
+        if (nPoints < 1) return;
+        final Path2D.Double path = new Path2D.Double();
+        path.moveTo(xPoints[0], yPoints[0]);
+        for (int i = 1; i < nPoints; i++) {
+            path.lineTo(xPoints[i], yPoints[i]);
+        }
+        draw(path);
+    }
+
+    @Override
+    public void drawPolygon(final int[] xPoints, final int[] yPoints, final int nPoints) {
+        draw(new Polygon(xPoints, yPoints, nPoints));
+    }
+
+    @Override
+    public void fillPolygon(final int[] xPoints, final int[] yPoints, final int nPoints) {
+        fill(new Polygon(xPoints, yPoints, nPoints));
+    }
+
+    @Override
+    public void dispose() {
+        metrics.dispose();
+    }
+
+    /**
+     * the output shared by a graphics and the graphics created from it
+     */
+    private static final class Document {
+        private final int width, height;
+        private final StringBuilder defs = new StringBuilder();
+        private final StringBuilder body = new StringBuilder(32 * 1024);
+        private final Map<Shape, String> clipIds = new IdentityHashMap<Shape, String>();
+        private final Map<String, String> gradientIds = new HashMap<String, String>();
+        private final Map<String, String> fontClasses = new HashMap<String, String>();
+        private int nextId;
+
+        private Document(final int width, final int height) {
+            this.width = width;
+            this.height = height;
+        }
+    }
+}
@@ -15,8 +15,12 @@
  */
 
 define(['./common'], function () {
-    require(['jquery', 'bootstrap'], function ($) {
+    require(['jquery', 'charts', 'bootstrap'], function ($, charts) {
         $(document).ready(function () {
+            $("canvas.perfsig-chart").each(function () {
+                charts.load(this);
+            });
+
             var hash = window.location.hash;
             if (!hash) $('#tabList').find('a:first').tab('show'); // Select first tab
             hash && $('ul.nav a[href="' + hash + '"]').tab('show');
@@ -0,0 +1,250 @@
+/*
+ * Copyright (c) 2014 T-Systems Multimedia Solutions GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/*
+ * Renders the series data of the summarizerData, testRunData and gridData endpoints into canvas elements.
+ * Category charts (builds) are drawn as bars, stacked if the data has more than one series,
+ * timestamp or percentile charts as line or bar chart.
+ */
+define(['jquery'], function ($) {
+    var PADDING = {top: 30, right: 15, bottom: 45, left: 55};
+    var FONT = '11px sans-serif', TITLE_FONT = 'bold 13px sans-serif';
+
+    function niceStep(range, count) {
+        var step = Math.pow(10, Math.floor(Math.log(range / count) / Math.LN10)), err = count / range * step;
+        if (err <= 0.15) step *= 10;
+        else if (err <= 0.35) step *= 5;
+        else if (err <= 0.75) step *= 2;
+        return step;
+    }
+
+    function formatValue(value) {
+        if (Math.abs(value) >= 1000000) return (value / 1000000).toFixed(1) + 'M';
+        if (Math.abs(value) >= 10000) return (value / 1000).toFixed(0) + 'k';
+        return Math.round(value * 100) / 100 + '';
+    }
+
+    function pad(value) {
+        return value < 10 ? '0' + value : value;
+    }
+
+    function formatTime(timestamp) {
+        var date = new Date(timestamp);
+        return pad(date.getHours()) + ':' + pad(date.getMinutes()) + ':' + pad(date.getSeconds());
+    }
+
+    function drawFrame(ctx, canvas, data, max, plot) {
+        ctx.fillStyle = '#fff';
+        ctx.fillRect(0, 0, canvas.width, canvas.height);
+
+        ctx.fillStyle = '#000';
+        ctx.font = TITLE_FONT;
+        ctx.textAlign = 'center';
+        ctx.textBaseline = 'middle';
+        ctx.fillText(data.title || '', canvas.width / 2, PADDING.top / 2, canvas.width - 10);
+
+        var step = niceStep(max, 5);
+        ctx.font = FONT;
+        ctx.textAlign = 'right';
+        ctx.strokeStyle = '#ccc';
+        ctx.lineWidth = 1;
+        for (var tick = 0; tick <= max + step / 1000; tick += step) {
+            var y = Math.round(plot.y(tick)) + 0.5;
+            ctx.beginPath();
+            ctx.moveTo(plot.left, y);
+            ctx.lineTo(plot.right, y);
+            ctx.stroke();
+            ctx.fillText(formatValue(tick), plot.left - 4, y);
+        }
+
+        ctx.save();
+        ctx.translate(10, (plot.top + plot.bottom) / 2);
+        ctx.rotate(-Math.PI / 2);
+        ctx.textAlign = 'center';
+        ctx.fillText(data.unit || '', 0, 0);
+        ctx.restore();
+    }
+
+    function createPlot(canvas, max, bottom) {
+        var plot = {
+            left: PADDING.left, right: canvas.width - PADDING.right,
+            top: PADDING.top, bottom: canvas.height - bottom
+        };
+        plot.y = function (value) {
+            return plot.bottom - (plot.bottom - plot.top) * value / max;
+        };
+        return plot;
+    }
+
+    function maxValue(series, stacked) {
+        var max = 0;
+        for (var i = 0; i < series[0].values.length; i++) {
+            var sum = 0;
+            for (var s = 0; s < series.length; s++) {
+                var value = series[s].values[i] || 0;
+                sum = stacked ? sum + value : Math.max(sum, value);
+            }
+            max = Math.max(max, sum);
+        }
+        return max > 0 ? max * 1.05 : 1;
+    }
+
+    function drawCategoryChart(canvas, data) {
+        var ctx = canvas.getContext('2d');
+        var series = data.series || [{name: data.title, color: data.color, values: data.values}];
+        var legend = series.length > 1;
+        var max = maxValue(series, true);
+        var plot = createPlot(canvas, max, PADDING.bottom + (legend ? 18 : 0));
+        drawFrame(ctx, canvas, data, max, plot);
+
+        var count = data.builds.length, width = (plot.right - plot.left) / Math.max(count, 1);
+        var labelEvery = Math.ceil(count * 14 / (plot.right - plot.left));
+        for (var i = 0; i < count; i++) {
+            var x = plot.left + i * width, base = 0;
+            for (var s = 0; s < series.length; s++) {
+                var value = series[s].values[i];
+                if (!value) continue;
+                ctx.fillStyle = series[s].color;
+                ctx.fillRect(x + width * 0.1, plot.y(base + value), width * 0.8, plot.y(base) - plot.y(base + value));
+                base += value;
+            }
+            if (i % labelEvery === 0) {
+                ctx.save();
+                ctx.fillStyle = '#000';
+                ctx.translate(x + width / 2, plot.bottom + 4);
+                ctx.rotate(-Math.PI / 2);
+                ctx.textAlign = 'right';
+                ctx.fillText('#' + data.builds[i], 0, 0);
+                ctx.restore();
+            }
+        }
+
+        if (legend) {
+            var lx = plot.left, ly = canvas.height - 9;
+            ctx.textAlign = 'left';
+            for (var l = 0; l < series.length; l++) {
+                ctx.fillStyle = series[l].color;
+                ctx.fillRect(lx, ly - 4, 8, 8);
+                ctx.fillStyle = '#000';
+                ctx.fillText(series[l].name, lx + 11, ly);
+                lx += ctx.measureText(series[l].name).width + 22;
+            }
+        }
+    }
+
+    function drawSeriesChart(canvas, data) {
+        var ctx = canvas.getContext('2d');
+        var max = maxValue([{values: data.values}], false);
+        var plot = createPlot(canvas, max, PADDING.bottom);
+        drawFrame(ctx, canvas, data, max, plot);
+
+        var count = data.x.length;
+        if (count === 0) return;
+        var min = data.x[0], range = (data.x[count - 1] - min) || 1;
+        var xPos = function (value) {
+            return plot.left + (plot.right - plot.left) * (value - min) / range;
+        };
+
+        ctx.fillStyle = '#000';
+        ctx.textAlign = 'center';
+        ctx.textBaseline = 'top';
+        for (var t = 0; t <= 4; t++) {
+            var tick = min + range * t / 4;
+            ctx.fillText(data.percentile ? formatValue(tick) : formatTime(tick), xPos(tick), plot.bottom + 4);
+        }
+        ctx.fillText(data.percentile ? '%' : 'time', (plot.left + plot.right) / 2, plot.bottom + 20);
+
+        ctx.fillStyle = ctx.strokeStyle = data.color;
+        if (data.bar) {
+            var width = Math.max((plot.right - plot.left) / count * 0.8, 1);
+            for (var i = 0; i < count; i++) {
+                if (data.values[i] === null) continue;
+                ctx.fillRect(xPos(data.x[i]) - width / 2, plot.y(data.values[i]), width, plot.bottom - plot.y(data.values[i]));
+            }
+        } else {
+            ctx.lineWidth = 2;
+            ctx.beginPath();
+            var open = false;
+            for (var j = 0; j < count; j++) {
+                if (data.values[j] === null) {
+                    open = false;
+                    continue;
+                }
+                if (open) ctx.lineTo(xPos(data.x[j]), plot.y(data.values[j]));
+                else ctx.moveTo(xPos(data.x[j]), plot.y(data.values[j]));
+                open = true;
+            }
+            ctx.stroke();
+        }
+    }
+
+    function render(canvas, data) {
+        if (data.builds) drawCategoryChart(canvas, data);
+        else drawSeriesChart(canvas, data);
+    }
+
+    function load(canvas) {
+        if (!canvas.getContext) return;
+        $.getJSON($(canvas).attr('data-src'), function (data) {
+            render(canvas, data);
+        });
+    }
+
+    function getId(canvas) {
+        var match = /[?&]id=([^&]*)/.exec($(canvas).attr('data-src'));
+        return match ? decodeURIComponent(match[1]) : null;
+    }
+
+    /*
+     * loads the data of all canvases with one request to the batch url, canvases missing in the answer are loaded
+     * one by one from their data-src url
+     */
+    function loadAll(canvases, batchUrl) {
+        var byId = {}, ids = [];
+        $(canvases).each(function () {
+            var id = getId(this);
+            if (!this.getContext || id === null) return;
+            if (!byId[id]) {
+                byId[id] = [];
+                ids.push(id);
+            }
+            byId[id].push(this);
+        });
+        if (ids.length === 0) return;
+        $.getJSON(batchUrl + '?' + $.param({id: ids}, true), function (data) {
+            $.each(data.charts, function (index, chart) {
+                $.each(byId[chart.id] || [], function () {
+                    render(this, chart);
+                });
+                delete byId[chart.id];
+            });
+            $.each(byId, function (id, remaining) {
+                $.each(remaining, function () {
+                    load(this);
+                });
+            });
+        });
+    }
+
+    return {
+        /**
+         * loads the data of the canvas' data-src url and draws the chart
+         */
+        load: load,
+        loadAll: loadAll,
+        render: render
+    };
+});
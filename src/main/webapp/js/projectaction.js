@@ -15,7 +15,7 @@
  */
 
 define(['./common'], function () {
-    require(['jquery', 'bootstrap', 'datatables.bootstrap', 'gridster', 'lightbox'], function ($) {
+    require(['jquery', 'charts', 'bootstrap', 'datatables.bootstrap', 'gridster', 'lightbox'], function ($, charts) {
         $(document).ready(function () {
             var grid = [];
             $.fn.dataTableExt.sErrMode = 'none';
@@ -76,19 +76,21 @@ define(['./common'], function () {
                 });
 
                 $("#addbutton", this).click(function () {
-                    var request_parameter = '&amp;width=410&amp;height=300&amp;customName=' + encode($("#customName", page).val()) +
+                    var request_parameter = '&amp;customName=' + encode($("#customName", page).val()) +
                         '&amp;customBuildCount=' + $("#customBuildCount", page).val() + '&amp;aggregation=' + $("#aggregation", page).val();
+                    var widget;
                     if ($("#measureGroup", page).val() === 'UnitTest overview') {
-                        grid[pageIndex].add_widget('<li><img class="img-thumbnail" height="300" width="410" ' +
-                            'src="./testRunGraph?id=unittest_overview' + request_parameter + '">' +
+                        widget = grid[pageIndex].add_widget('<li><canvas class="img-thumbnail perfsig-chart" height="300" width="410" ' +
+                            'data-src="./testRunData?id=unittest_overview' + request_parameter + '"></canvas>' +
                             '<span class="del_img glyphicon glyphicon-remove"></span>' +
                             '<span class="chk_show"><input type="checkbox" title="show in project overview" checked="checked"/></span></li>', 1, 1);
                     } else {
-                        grid[pageIndex].add_widget('<li><img class="img-thumbnail" height="300" width="410" ' +
-                            'src="./summarizerGraph?id=' + $("#measure", page).val() + request_parameter + '">' +
+                        widget = grid[pageIndex].add_widget('<li><canvas class="img-thumbnail perfsig-chart" height="300" width="410" ' +
+                            'data-src="./summarizerData?id=' + $("#measure", page).val() + request_parameter + '"></canvas>' +
                             '<span class="del_img glyphicon glyphicon-remove"></span>' +
                             '<span class="chk_show"><input type="checkbox" title="show in project overview" checked="checked"/></span></li>', 1, 1);
                     }
+                    charts.load($("canvas", widget)[0]);
                     $(".del_img", page).click(function () {
                         grid[pageIndex].remove_widget($(this).parent());
                     });
@@ -110,14 +112,14 @@ define(['./common'], function () {
                             return {
                                 col: wgd.col,
                                 row: wgd.row,
-                                id: url("?id", $("img", $w).attr("src")),
+                                id: url("?id", $("canvas", $w).attr("data-src")),
                                 dashboard: $(page).attr('id'),
-                                chartDashlet: getURLParameter($("img", $w), "chartDashlet"),
-                                measure: getURLParameter($("img", $w), "measure"),
-                                customName: getURLParameter($("img", $w), "customName"),
-                                customBuildCount: getURLParameter($("img", $w), "customBuildCount"),
+                                chartDashlet: getURLParameter($("canvas", $w), "chartDashlet"),
+                                measure: getURLParameter($("canvas", $w), "measure"),
+                                customName: getURLParameter($("canvas", $w), "customName"),
+                                customBuildCount: getURLParameter($("canvas", $w), "customBuildCount"),
                                 show: $("input[type='checkbox']", $w).prop('checked'),
-                                aggregation: getURLParameter($("img", $w), "aggregation")
+                                aggregation: getURLParameter($("canvas", $w), "aggregation")
                             };
                         }
                     }).data('gridster').disable();
@@ -127,22 +129,23 @@ define(['./common'], function () {
                             if (json[index].dashboard == $(page).attr('id')) {
                                 if (json[index].id === 'unittest_overview') {
                                     grid[pageIndex].add_widget('<li><a href="./testRunGraph?width=800&amp;height=585&amp;id=unittest_overview" ' +
-                                        'data-lightbox="' + $(page).attr('id') + '"><img class="img-thumbnail" height="300" width="410" ' +
-                                        'src="./testRunGraph?width=410&amp;height=300&amp;id=unittest_overview"></a>' +
+                                        'data-lightbox="' + $(page).attr('id') + '"><canvas class="img-thumbnail perfsig-chart" height="300" width="410" ' +
+                                        'data-src="./testRunData?id=unittest_overview"></canvas></a>' +
                                         '<span class="del_img glyphicon glyphicon-remove"></span>' +
                                         '<span class="chk_show"><input type="checkbox" title="show in project overview" checked="checked"/></span></li>', 1, 1,
                                         json[index].col, json[index].row);
                                 } else {
                                     grid[pageIndex].add_widget('<li><a href="./summarizerGraph?width=800&amp;height=585&amp;id=' + json[index].id + '" ' +
                                         'data-lightbox="' + $(page).attr('id') + '" data-title="' + json[index].description + '">' +
-                                        '<img class="img-thumbnail" height="300" width="410" src="./summarizerGraph?width=410&amp;height=300&amp;id=' + json[index].id + '' +
-                                        '" title="source: ' + json[index].chartDashlet + '-' + json[index].measure + ' (' + json[index].aggregation + ')\n' + json[index].description + '"></a>' +
+                                        '<canvas class="img-thumbnail perfsig-chart" height="300" width="410" data-src="./summarizerData?id=' + json[index].id + '' +
+                                        '" title="source: ' + json[index].chartDashlet + '-' + json[index].measure + ' (' + json[index].aggregation + ')\n' + json[index].description + '"></canvas></a>' +
                                         '<span class="del_img glyphicon glyphicon-remove"></span><span class="chk_show">' +
                                         '<input type="checkbox" title="show in project overview" ' + (json[index].show ? "checked='checked'" : "") +
                                         '/></span></li>', 1, 1, json[index].col, json[index].row);
                                 }
                             }
                         });
+                        charts.loadAll($("canvas.perfsig-chart", page), "gridData");
                         $(".chk_show", page).hide();
                         $(".del_img", page).hide().click(function () {
                             grid[pageIndex].remove_widget($(this).parent());
@@ -169,7 +172,7 @@ define(['./common'], function () {
 });
 
 function getURLParameter(obj, parameter) {
-    return $(obj).attr("src").indexOf(parameter) > -1 ? wurl("?" + parameter, $(obj).attr("src")) : ""
+    return $(obj).attr("data-src").indexOf(parameter) > -1 ? wurl("?" + parameter, $(obj).attr("data-src")) : ""
 }
 
 function sort_by_row_and_col_asc(widgets) {